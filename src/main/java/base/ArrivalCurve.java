@@ -0,0 +1,23 @@
+package base;
+
+// How ride times spread over the ski day, as a relative weight per minute since opening.
+public enum ArrivalCurve {
+    // Every minute equally busy.
+    FLAT {
+        @Override
+        public double getWeight(int minute) {
+            return 1;
+        }
+    },
+    // A rush after opening and a second one after lunch, quiet towards closing.
+    PEAKED {
+        @Override
+        public double getWeight(int minute) {
+            double morning = (minute - 60) / 45.0;
+            double afternoon = (minute - 270) / 60.0;
+            return 0.5 + 3 * Math.exp(-morning * morning) + 2 * Math.exp(-afternoon * afternoon);
+        }
+    };
+
+    public abstract double getWeight(int minute);
+}
@@ -0,0 +1,52 @@
+package base;
+
+import lombok.NonNull;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+// Request engine on the client's commons-httpclient pool, the future is already complete when send returns.
+public class BlockingRequestEngine implements RequestEngine {
+    private final HttpClient client;
+
+    public BlockingRequestEngine(@NonNull final HttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public CompletableFuture<Integer> send(String targetUrl, byte[] body, int bodyLength) {
+        HttpMethod httpMethod;
+        int statusCode = -1;
+
+        if (body == null) {
+            httpMethod = new GetMethod(targetUrl);
+        } else {
+            PostMethod httpPost = new PostMethod(targetUrl);
+            httpPost.setRequestEntity(new ByteArrayJsonRequestEntity(body, bodyLength));
+            httpMethod = httpPost;
+        }
+
+        try {
+            statusCode = this.client.executeMethod(httpMethod);
+        } catch (IOException e) {
+            System.out.printf("Failed to send request to %s, with error: %s\n\n", targetUrl, e);
+        } finally {
+            httpMethod.releaseConnection();
+        }
+
+        return CompletableFuture.completedFuture(statusCode);
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
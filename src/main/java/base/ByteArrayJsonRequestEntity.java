@@ -0,0 +1,37 @@
+package base;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// JSON request entity over the first length bytes of a buffer, without copying them.
+public class ByteArrayJsonRequestEntity implements RequestEntity {
+    private final byte[] buffer;
+    private final int length;
+
+    public ByteArrayJsonRequestEntity(byte[] buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+        out.write(this.buffer, 0, this.length);
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=UTF-8";
+    }
+}
@@ -0,0 +1,57 @@
+package base;
+
+import lombok.NonNull;
+
+// Produces one thread's GET URLs on demand: requestCount skier day vertical URLs, then requestCount skier resort total
+// URLs, cycling through the thread's skiers. The fixed parts of each URL are built once.
+public class GETRequestGenerator {
+    private final int requestCount;
+    private final int[] skierSplit;
+    private final String dayVerticalUrlPrefix;
+    private final String resortTotalsUrlPrefix;
+    private final String resortTotalsUrlSuffix;
+    private final StringBuilder url;
+
+    private int generatedCount;
+    private int skierIndex;
+
+    public GETRequestGenerator(int requestCount,
+                               @NonNull final int[] skierSplit,
+                               @NonNull final String dayVerticalUrlPrefix,
+                               @NonNull final String resortTotalsUrlPrefix,
+                               @NonNull final String resortTotalsUrlSuffix) {
+        this.requestCount = requestCount;
+        this.skierSplit = skierSplit;
+        this.dayVerticalUrlPrefix = dayVerticalUrlPrefix;
+        this.resortTotalsUrlPrefix = resortTotalsUrlPrefix;
+        this.resortTotalsUrlSuffix = resortTotalsUrlSuffix;
+        this.url = new StringBuilder(Math.max(dayVerticalUrlPrefix.length(), resortTotalsUrlPrefix.length() + resortTotalsUrlSuffix.length()) + 11);
+    }
+
+    // Both URL kinds.
+    public int getRequestCount() {
+        return this.requestCount * 2;
+    }
+
+    // Returns the next URL, or null once all requests have been generated.
+    public String next() {
+        if (this.generatedCount >= getRequestCount()) {
+            return null;
+        }
+
+        // Each kind starts over from the first skier.
+        if (this.generatedCount == this.requestCount || this.skierIndex >= this.skierSplit.length) {
+            this.skierIndex = 0;
+        }
+
+        this.url.setLength(0);
+        if (this.generatedCount < this.requestCount) {
+            this.url.append(this.dayVerticalUrlPrefix).append(this.skierSplit[this.skierIndex++]);
+        } else {
+            this.url.append(this.resortTotalsUrlPrefix).append(this.skierSplit[this.skierIndex++]).append(this.resortTotalsUrlSuffix);
+        }
+        this.generatedCount++;
+
+        return this.url.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package base;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts POSTs sent while another POST for the same (SkierID, ResortID) item is still in flight. Those are the writes
+// that race on the item's LastUpdateTime condition on the server, so the share of them is the conflict rate the
+// workload puts on the table.
+class KeyContentionTracker {
+    private final AtomicIntegerArray inFlightWrites;
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+
+    KeyContentionTracker(int keyCount) {
+        this.inFlightWrites = new AtomicIntegerArray(keyCount);
+    }
+
+    void onWriteStarted(int key) {
+        this.writeCount.increment();
+        if (this.inFlightWrites.getAndIncrement(key) > 0) {
+            this.conflictCount.increment();
+        }
+    }
+
+    void onWriteCompleted(int key) {
+        this.inFlightWrites.decrementAndGet(key);
+    }
+
+    long getWriteCount() {
+        return this.writeCount.sum();
+    }
+
+    long getConflictCount() {
+        return this.conflictCount.sum();
+    }
+}
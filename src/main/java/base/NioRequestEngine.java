@@ -0,0 +1,179 @@
+package base;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import org.apache.log4j.Logger;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Non-blocking request engine on Netty, which is already on the classpath for the async DynamoDB client.
+// Each host gets a fixed pool of keep-alive connections serviced by a few event loop threads. A request borrows a
+// connection, writes, and gives the connection back when the response arrives, so the number of requests in flight is
+// bounded by maxConnectionsPerHost and not by threads. Requests beyond that wait for a connection without holding one.
+public class NioRequestEngine implements RequestEngine {
+    private final static Logger logger = Logger.getLogger(NioRequestEngine.class);
+
+    private final static int maxResponseBytes = 1024 * 1024;
+    private final static int connectTimeoutMS = 10_000;
+    private final static AttributeKey<PendingResponse> pendingResponseKey = AttributeKey.valueOf("pendingResponse");
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Bootstrap bootstrap;
+    private final int maxConnectionsPerHost;
+    private final Map<String, ChannelPool> channelPools;
+
+    public NioRequestEngine(int ioThreadCount, int maxConnectionsPerHost) {
+        this.eventLoopGroup = new NioEventLoopGroup(ioThreadCount);
+        this.bootstrap = new Bootstrap()
+                .group(this.eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMS);
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.channelPools = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompletableFuture<Integer> send(String targetUrl, byte[] body, int bodyLength) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        URI uri;
+        try {
+            uri = URI.create(targetUrl);
+        } catch (IllegalArgumentException e) {
+            System.out.printf("Failed to prepare request to %s, with error: %s\n\n", targetUrl, e);
+            result.complete(-1);
+            return result;
+        }
+
+        String host = uri.getHost();
+        int port = uri.getPort() < 0 ? 80 : uri.getPort();
+        String pathAndQuery = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+
+        ChannelPool channelPool = this.channelPools.computeIfAbsent(host + ":" + port,
+                k -> new FixedChannelPool(this.bootstrap.clone().remoteAddress(host, port),
+                        new ChannelInitializer(),
+                        this.maxConnectionsPerHost));
+
+        channelPool.acquire().addListener((Future<Channel> acquired) -> {
+            if (!acquired.isSuccess()) {
+                System.out.printf("Failed to send request to %s, with error: %s\n\n", targetUrl, acquired.cause());
+                result.complete(-1);
+                return;
+            }
+
+            Channel channel = acquired.getNow();
+            channel.attr(pendingResponseKey).set(new PendingResponse(result, channelPool));
+            channel.writeAndFlush(toHttpRequest(host, pathAndQuery, body, bodyLength)).addListener(written -> {
+                if (!written.isSuccess()) {
+                    System.out.printf("Failed to send request to %s, with error: %s\n\n", targetUrl, written.cause());
+                    channel.close();
+                }
+            });
+        });
+
+        return result;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for (ChannelPool channelPool : this.channelPools.values()) {
+            channelPool.close();
+        }
+        this.eventLoopGroup.shutdownGracefully().awaitUninterruptibly();
+    }
+
+    private static FullHttpRequest toHttpRequest(String host, String pathAndQuery, byte[] body, int bodyLength) {
+        FullHttpRequest request;
+
+        if (body == null) {
+            request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, pathAndQuery);
+        } else {
+            // Wrapped rather than copied, the caller keeps the body unchanged until the response arrives.
+            ByteBuf content = Unpooled.wrappedBuffer(body, 0, bodyLength);
+            request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, pathAndQuery, content);
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        }
+        request.headers().set(HttpHeaderNames.HOST, host);
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, request.content().readableBytes());
+
+        return request;
+    }
+
+    // Hands the connection back and completes the request, at most once per request.
+    private static void completePending(Channel channel, int statusCode) {
+        PendingResponse pending = channel.attr(pendingResponseKey).getAndSet(null);
+        if (pending == null) {
+            return;
+        }
+
+        pending.channelPool.release(channel);
+        pending.result.complete(statusCode);
+    }
+
+    private static class PendingResponse {
+        private final CompletableFuture<Integer> result;
+        private final ChannelPool channelPool;
+
+        PendingResponse(CompletableFuture<Integer> result, ChannelPool channelPool) {
+            this.result = result;
+            this.channelPool = channelPool;
+        }
+    }
+
+    private static class ChannelInitializer extends AbstractChannelPoolHandler {
+        @Override
+        public void channelCreated(Channel channel) {
+            channel.pipeline().addLast(new HttpClientCodec(),
+                    new HttpObjectAggregator(maxResponseBytes),
+                    new ResponseHandler());
+        }
+    }
+
+    private static class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            // A connection the server is closing goes back to the pool closed, the pool drops it on the next acquire.
+            if (!HttpUtil.isKeepAlive(response)) {
+                ctx.channel().close();
+            }
+            completePending(ctx.channel(), response.status().code());
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            completePending(ctx.channel(), -1);
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.error("Request connection to " + ctx.channel().remoteAddress() + " failed.", cause);
+            ctx.channel().close();
+            completePending(ctx.channel(), -1);
+        }
+    }
+}
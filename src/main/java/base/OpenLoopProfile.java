@@ -0,0 +1,62 @@
+package base;
+
+import lombok.Builder;
+import lombok.Data;
+import utility.SkierCmdLineHelper;
+
+import java.util.concurrent.TimeUnit;
+
+// Arrival schedule for the open-loop load mode: the rate ramps linearly from startRPS to targetRPS over rampSeconds,
+// then holds targetRPS for holdSeconds. Send times depend only on the request's sequence number, never on how fast
+// the server answers.
+@Data
+@Builder
+public class OpenLoopProfile {
+    private final double startRPS;
+    private final double targetRPS;
+    private final long rampSeconds;
+    private final long holdSeconds;
+    // Share of requests sent as GETs, the rest are POSTs.
+    private final int getPercent;
+
+    // Null when the open-loop mode is off.
+    public static OpenLoopProfile from(SkierCmdLineHelper.CommandLineArgs args) {
+        if (args.openLoopRPS <= 0) {
+            return null;
+        }
+
+        return OpenLoopProfile.builder()
+                .startRPS(args.openLoopStartRPS < 0 ? args.openLoopRPS : args.openLoopStartRPS)
+                .targetRPS(args.openLoopRPS)
+                .rampSeconds(args.openLoopRampSeconds)
+                .holdSeconds(args.openLoopDurationSeconds)
+                .getPercent(args.openLoopGetPercent)
+                .build();
+    }
+
+    public long getTotalRequestCount() {
+        return (long) (getRampRequestCount() + this.targetRPS * this.holdSeconds);
+    }
+
+    // Intended send time of the n-th request, in nanoseconds from the start of the run.
+    public long getIntendedOffsetNS(long n) {
+        double rampRequestCount = getRampRequestCount();
+        double seconds;
+
+        if (n < rampRequestCount) {
+            // Solve n = startRPS * t + acceleration * t^2 / 2 for t.
+            double acceleration = (this.targetRPS - this.startRPS) / this.rampSeconds;
+            seconds = acceleration == 0
+                    ? n / this.startRPS
+                    : (Math.sqrt(this.startRPS * this.startRPS + 2 * acceleration * n) - this.startRPS) / acceleration;
+        } else {
+            seconds = this.rampSeconds + (n - rampRequestCount) / this.targetRPS;
+        }
+
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private double getRampRequestCount() {
+        return (this.startRPS + this.targetRPS) / 2 * this.rampSeconds;
+    }
+}
@@ -0,0 +1,120 @@
+package base;
+
+import lombok.NonNull;
+
+import java.util.SplittableRandom;
+
+// Produces one thread's POST bodies on demand, cycling through its skiers, the phase's time slides and the lifts the
+// same way the bodies used to be prepared up front, or drawing every ride from a WorkloadSampler. Each body is encoded
+// into the same buffer, so the buffer holds the current body only until the next call to next().
+public class POSTRequestGenerator {
+    private final SkierRequestEncoder encoder;
+    private final int requestCount;
+    private final int[] skierSplit;
+    private final int[] timeSlides;
+    private final int[] skiLifts;
+    private final byte[] body;
+
+    // Set when rides are sampled instead of cycled.
+    private final WorkloadSampler sampler;
+    private final SplittableRandom rand;
+    private final int startMinute;
+    private final int endMinute;
+    // Skier ID and resort index of the current ride.
+    private final int[] rideHolder = new int[2];
+
+    private int bodyLength;
+    private int generatedCount;
+    private int skierIndex;
+    private int timeIndex;
+    private int liftIndex;
+
+    public POSTRequestGenerator(@NonNull final SkierRequestEncoder encoder,
+                                int requestCount,
+                                @NonNull final int[] skierSplit,
+                                @NonNull final int[] timeSlides,
+                                @NonNull final int[] skiLifts) {
+        this.encoder = encoder;
+        this.requestCount = requestCount;
+        this.skierSplit = skierSplit;
+        this.timeSlides = timeSlides;
+        this.skiLifts = skiLifts;
+        this.body = new byte[encoder.getMaxBodyLength()];
+        this.sampler = null;
+        this.rand = null;
+        this.startMinute = 0;
+        this.endMinute = 0;
+    }
+
+    // Rides with times in [startMinute, endMinute], drawn with rand which must not be shared with other threads.
+    public POSTRequestGenerator(@NonNull final WorkloadSampler sampler,
+                                @NonNull final SplittableRandom rand,
+                                int requestCount,
+                                int startMinute,
+                                int endMinute) {
+        this.encoder = null;
+        this.requestCount = requestCount;
+        this.skierSplit = null;
+        this.timeSlides = null;
+        this.skiLifts = null;
+        this.body = new byte[sampler.getMaxBodyLength()];
+        this.sampler = sampler;
+        this.rand = rand;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    public int getRequestCount() {
+        return this.requestCount;
+    }
+
+    // Encodes the next body, returns false once all requests have been generated.
+    public boolean next() {
+        if (this.generatedCount >= this.requestCount) {
+            return false;
+        }
+
+        if (this.sampler != null) {
+            this.bodyLength = this.sampler.encodeRide(this.body, this.rand, this.startMinute, this.endMinute, this.rideHolder);
+            this.generatedCount++;
+
+            return true;
+        }
+
+        if (this.skierIndex >= this.skierSplit.length) {
+            this.skierIndex = 0;
+        }
+        if (this.timeIndex >= this.timeSlides.length) {
+            this.timeIndex = 0;
+        }
+        if (this.liftIndex >= this.skiLifts.length) {
+            this.liftIndex = 0;
+        }
+
+        this.rideHolder[0] = this.skierSplit[this.skierIndex++];
+        this.bodyLength = this.encoder.encode(this.body,
+                this.rideHolder[0],
+                this.timeSlides[this.timeIndex++],
+                this.skiLifts[this.liftIndex++]);
+        this.generatedCount++;
+
+        return true;
+    }
+
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    public int getBodyLength() {
+        return this.bodyLength;
+    }
+
+    public int getSkierID() {
+        return this.rideHolder[0];
+    }
+
+    // Always 0 unless rides are sampled across several resorts.
+    public int getResortIndex() {
+        return this.rideHolder[1];
+    }
+}
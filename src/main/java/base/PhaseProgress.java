@@ -0,0 +1,49 @@
+package base;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts the threads of one running phase that have sent their POSTs, and completes the start triggers of the phases
+// waiting on it as the count reaches their thresholds. Triggers are registered before any phase starts, after that
+// the only shared state is the counter.
+class PhaseProgress {
+    private final int threadCount;
+    private final AtomicInteger completedThreadCount;
+    private final Map<Integer, CompletableFuture<Void>> triggers;
+
+    PhaseProgress(int threadCount) {
+        this.threadCount = threadCount;
+        this.completedThreadCount = new AtomicInteger();
+        this.triggers = new HashMap<>();
+    }
+
+    int getThreadCount() {
+        return this.threadCount;
+    }
+
+    // Completes once completedShare of the phase's threads are done. Only call before the phase starts.
+    CompletableFuture<Void> getTrigger(double completedShare) {
+        int threshold = Math.min(this.threadCount, (int) Math.ceil(completedShare * this.threadCount));
+        if (threshold == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.triggers.computeIfAbsent(threshold, k -> new CompletableFuture<>());
+    }
+
+    void onThreadCompleted() {
+        CompletableFuture<Void> trigger = this.triggers.get(this.completedThreadCount.incrementAndGet());
+        if (trigger != null) {
+            trigger.complete(null);
+        }
+    }
+
+    // Releases every waiting phase, also when this one ended early.
+    void onPhaseCompleted() {
+        for (CompletableFuture<Void> trigger : this.triggers.values()) {
+            trigger.complete(null);
+        }
+    }
+}
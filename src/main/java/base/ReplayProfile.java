@@ -0,0 +1,33 @@
+package base;
+
+import lombok.Builder;
+import lombok.Data;
+import utility.SkierCmdLineHelper;
+
+// Replay of a traffic capture written by the servlet's TrafficCapture. Requests keep their captured spacing divided by
+// speed, so 2.0 replays twice as fast, and a speed of 0 sends them as fast as the concurrency allows.
+@Data
+@Builder
+public class ReplayProfile {
+    private final String capturePath;
+    private final double speed;
+    // Most requests in flight at once.
+    private final int concurrency;
+
+    // Null when the replay mode is off.
+    public static ReplayProfile from(SkierCmdLineHelper.CommandLineArgs args) {
+        if (args.replayPath == null) {
+            return null;
+        }
+
+        return ReplayProfile.builder()
+                .capturePath(args.replayPath)
+                .speed(args.replaySpeed)
+                .concurrency(args.replayConcurrency > 0 ? args.replayConcurrency : args.maxThreadCount)
+                .build();
+    }
+
+    public boolean isMaxSpeed() {
+        return this.speed <= 0;
+    }
+}
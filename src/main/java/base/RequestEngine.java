@@ -0,0 +1,14 @@
+package base;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+// Sends single HTTP requests for the load generator. A blocking engine ties up the calling thread for the whole
+// request, a non-blocking one returns right away and completes the future from its own I/O threads.
+public interface RequestEngine extends Closeable {
+    // POSTs the first bodyLength bytes of body to targetUrl as JSON, or GETs it when body is null. Completes with the
+    // status code, or -1 if the request could not be sent. The body must stay unchanged until the future completes.
+    CompletableFuture<Integer> send(String targetUrl, byte[] body, int bodyLength);
+
+    boolean isBlocking();
+}
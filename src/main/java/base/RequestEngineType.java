@@ -0,0 +1,8 @@
+package base;
+
+public enum RequestEngineType {
+    // commons-httpclient, one thread per request in flight.
+    BLOCKING,
+    // Netty event loops, requests in flight are bounded by connections instead of threads.
+    NIO
+}
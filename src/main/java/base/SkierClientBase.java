@@ -2,23 +2,37 @@ package base;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import model.SkierPOSTRequest;
+import lombok.NonNull;
+import model.CapturedRequest;
+import model.PhasePlan;
+import model.PhaseSpec;
+import model.RequestType;
 import model.TaskResponseStat;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.log4j.Logger;
 import utility.AWSUtil;
+import utility.LatencyRecorder;
+import utility.LiveStatsReporter;
 
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public abstract class SkierClientBase {
     final Logger logger = Logger.getLogger(this.getClass());
@@ -26,23 +40,30 @@ public abstract class SkierClientBase {
     protected final AtomicInteger totalRequestSent;
     protected final AtomicInteger successfulRequestCount;
     protected final AtomicInteger failedRequestCount;
+    protected final AtomicInteger inFlightRequestCount;
+    // Attempts after the first one of a request.
+    protected final LongAdder retryCount = new LongAdder();
     protected final int maxRetries = 7;
     protected final long retryWaitTimeBaseMS = 400;
     protected final HttpClient client;
 
     private static final int skiDayLenInMin = 420;
-
-    private final static CountDownLatch shouldStartPhaseTwo = new CountDownLatch(1);
-    private final static CountDownLatch shouldStartPhaseThree = new CountDownLatch(1);
+    // Open-loop requests that start later than this after their intended send time count as missed.
+    private static final long openLoopScheduleToleranceMS = 10;
+    // Scheduled requests waiting for a free thread, beyond this the schedule is skipped instead of queued.
+    private static final int openLoopMaxBacklog = 100_000;
+    // How far a captured request may sit behind later ones in the capture file, a POST is written once handled.
+    private static final long replayReorderWindowMS = 10_000;
 
     private final MultiThreadedHttpConnectionManager connectionManager;
-    private final ObjectMapper mapper;
+    private final SkierRequestEncoder requestEncoder;
     private final String serverAddr;
     private final String apiPath;
     private final int serverPort;
 
     // Fields with default values.
     private int maxThreadCount;
+    private int firstSkierID = 1;
     private int skierCount;
     private int skiLiftCount;
     private int skiDayNum;
@@ -51,6 +72,40 @@ public abstract class SkierClientBase {
     private final int[] skiLifts;
     private final String targetUrl;
 
+    // Blocking commons-httpclient engine unless another one is set.
+    private RequestEngine requestEngine;
+    private final ScheduledExecutorService retryScheduler;
+
+    // Closed-loop phases, the bundled plan unless another one is set.
+    private PhasePlan phasePlan;
+
+    // Open-loop mode, null runs the phase plan.
+    private OpenLoopProfile openLoopProfile;
+    private final LongAdder missedScheduleCount = new LongAdder();
+    private final LongAdder skippedScheduleCount = new LongAdder();
+    private final AtomicLong maxStartLagNS = new AtomicLong();
+    // The dispatcher counts as one in flight until it has scheduled every request, so the count only drops to zero, and
+    // opens the latch, once the last request after it has completed.
+    private final AtomicInteger openLoopInFlightCount = new AtomicInteger();
+    private volatile CountDownLatch openLoopDrainedLatch;
+
+    // Replay mode, takes precedence over the open-loop mode and the phase plan.
+    private ReplayProfile replayProfile;
+
+    // Shape of the generated rides, the original uniform splits unless another one is set.
+    private WorkloadDistribution workloadDistribution = WorkloadDistribution.uniform();
+    // Per run: the source every thread splits its own random from, the sampler for non-uniform distributions, and the
+    // same-key write tracker.
+    private SplittableRandom workloadRandom;
+    private WorkloadSampler workloadSampler;
+    private KeyContentionTracker keyContentionTracker;
+    private final ThreadLocal<SplittableRandom> localWorkloadRandom = ThreadLocal.withInitial(this::newWorkloadRandom);
+
+    private volatile long lastWallTimeMS;
+
+    private long liveReportIntervalMS;
+    private String liveReportFilePath;
+
     public SkierClientBase(final String serverAddr,
                            final String apiPath,
                            int serverPort,
@@ -61,7 +116,6 @@ public abstract class SkierClientBase {
                            final String resortName) {
         this.connectionManager = new MultiThreadedHttpConnectionManager();
         this.client = new HttpClient(this.connectionManager);
-        this.mapper = new ObjectMapper();
         this.serverAddr = serverAddr;
         this.apiPath = apiPath;
         this.serverPort = serverPort;
@@ -74,20 +128,113 @@ public abstract class SkierClientBase {
         this.resortName = resortName;
 
         this.skiLifts = getLiftRides();
+        this.requestEncoder = new SkierRequestEncoder(this.resortName, this.skiDayNum);
         this.targetUrl = this.serverAddr + ":" + this.serverPort + this.apiPath;
 
         this.totalRequestSent = new AtomicInteger();
         this.successfulRequestCount = new AtomicInteger();
         this.failedRequestCount = new AtomicInteger();
+        this.inFlightRequestCount = new AtomicInteger();
 
         // Overriding the default HTTP connection pool thresholds as they are too low:
         // https://hc.apache.org/httpclient-3.x/threading.html
         // Each thread will have a dedicated slot reserved in the pool (for threads across all phases).
-        int desiredConcurrentConnectionsCount = this.maxThreadCount / 2 + this.maxThreadCount;
+        int desiredConcurrentConnectionsCount = getDesiredConcurrentConnectionsCount();
         HttpConnectionManagerParams connectionManagerParams = this.client.getHttpConnectionManager().getParams();
         connectionManagerParams.setMaxTotalConnections(desiredConcurrentConnectionsCount);
         connectionManagerParams.setDefaultMaxConnectionsPerHost(desiredConcurrentConnectionsCount);
         connectionManagerParams.setMaxConnectionsPerHost(this.client.getHostConfiguration(), desiredConcurrentConnectionsCount);
+
+        this.requestEngine = new BlockingRequestEngine(this.client);
+        try {
+            this.phasePlan = PhasePlan.load(null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load the default phase plan.", e);
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "request-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // With the NIO engine maxThreadCount sets requests in flight instead of threads, and they share the same number
+    // of connections the blocking pool would open.
+    public void useRequestEngine(RequestEngineType requestEngineType, int ioThreadCount) {
+        try {
+            this.requestEngine.close();
+        } catch (IOException e) {
+            System.out.printf("Failed to close request engine, with error: %s\n", e);
+        }
+
+        switch (requestEngineType) {
+            case BLOCKING:
+                this.requestEngine = new BlockingRequestEngine(this.client);
+                break;
+            case NIO:
+                this.requestEngine = new NioRequestEngine(ioThreadCount, getDesiredConcurrentConnectionsCount());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported request engine: " + requestEngineType);
+        }
+    }
+
+    // Same contract as the blocking executeSingle*Request methods: retries on failure with the same backoff, counts
+    // the final outcome once, and completes with true on a 200 or 204. The calling thread is never blocked. A null
+    // body sends a GET. The body must stay unchanged until the returned future completes.
+    public CompletableFuture<Boolean> executeSingleRequestAsync(String targetUrl, byte[] body, int bodyLength) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        RequestType requestType = body != null
+                ? RequestType.POST
+                : targetUrl.contains("vertical") ? RequestType.GET_SKIER_RESORT_TOTALS : RequestType.GET_SKIER_DAY_VERTICAL;
+
+        attemptRequestAsync(targetUrl, body, bodyLength, requestType, 0, result);
+
+        return result;
+    }
+
+    private void attemptRequestAsync(String targetUrl,
+                                     byte[] body,
+                                     int bodyLength,
+                                     RequestType requestType,
+                                     int attempt,
+                                     CompletableFuture<Boolean> result) {
+        long startTime = System.currentTimeMillis();
+        long startTimeNS = System.nanoTime();
+
+        this.inFlightRequestCount.incrementAndGet();
+        this.requestEngine.send(targetUrl, body, bodyLength).whenComplete((sentStatusCode, error) -> {
+            this.inFlightRequestCount.decrementAndGet();
+            int statusCode = sentStatusCode == null ? -1 : sentStatusCode;
+            if (statusCode != -1) {
+                recordResponse(requestType, startTime, System.nanoTime() - startTimeNS, statusCode);
+            }
+
+            if (statusCode == 200 || statusCode == 204) {
+                updateStatCounts(statusCode, targetUrl);
+                result.complete(true);
+            } else if (attempt + 1 >= maxRetries) {
+                updateStatCounts(statusCode, targetUrl);
+                result.complete(false);
+            } else {
+                // Like the blocking path, a request that never got an answer is retried right away.
+                long retryDelayMS = statusCode == -1 ? 0 : Math.max(1, this.retryWaitTimeBaseMS * 2 * attempt);
+                this.retryCount.increment();
+                this.retryScheduler.schedule(() -> attemptRequestAsync(targetUrl, body, bodyLength, requestType, attempt + 1, result),
+                        retryDelayMS,
+                        TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    // Executes the request on the blocking client, counted as in flight while it runs.
+    protected int executeMethod(HttpMethod httpMethod) throws IOException {
+        this.inFlightRequestCount.incrementAndGet();
+        try {
+            return this.client.executeMethod(httpMethod);
+        } finally {
+            this.inFlightRequestCount.decrementAndGet();
+        }
     }
 
     public boolean executeSingleGetRequest(String targetUrl) {
@@ -95,9 +242,13 @@ public abstract class SkierClientBase {
         int statusCode = -1;
 
         for (int i = 0; i < maxRetries; i++) {
+            if (i > 0) {
+                this.retryCount.increment();
+            }
+
             try {
                 // Execute HTTP GET request.
-                statusCode = this.client.executeMethod(httpGet);
+                statusCode = executeMethod(httpGet);
 
                 // Get HTTP response.
 //                String responseBody = httpGet.getResponseBodyAsString();
@@ -128,18 +279,21 @@ public abstract class SkierClientBase {
         return false;
     }
 
-    public boolean executeSinglePOSTRequest(String targetUrl, String bodyJsonStr) {
+    public boolean executeSinglePOSTRequest(String targetUrl, byte[] body, int bodyLength) {
         PostMethod httpPost = new PostMethod(targetUrl);
         int statusCode = -1;
 
         for (int i = 0; i < maxRetries; i++) {
+            if (i > 0) {
+                this.retryCount.increment();
+            }
+
             try {
                 // Set request body content.
-                StringRequestEntity entity = new StringRequestEntity(bodyJsonStr, "application/json", "UTF-8");
-                httpPost.setRequestEntity(entity);
+                httpPost.setRequestEntity(new ByteArrayJsonRequestEntity(body, bodyLength));
 
                 // Execute HTTP POST request.
-                statusCode = this.client.executeMethod(httpPost);
+                statusCode = executeMethod(httpPost);
 
                 // Get HTTP response.
 //                String responseBody = httpPost.getResponseBodyAsString();
@@ -170,113 +324,484 @@ public abstract class SkierClientBase {
         return false;
     }
 
+    // Per-interval report during each run, an interval of 0 turns it off.
+    public void setLiveReport(long liveReportIntervalMS, String liveReportFilePath) {
+        this.liveReportIntervalMS = liveReportIntervalMS;
+        this.liveReportFilePath = liveReportFilePath;
+    }
+
+    public void setWorkloadDistribution(@NonNull final WorkloadDistribution workloadDistribution) {
+        this.workloadDistribution = workloadDistribution;
+    }
+
+    public void setReplayProfile(ReplayProfile replayProfile) {
+        this.replayProfile = replayProfile;
+    }
+
+    public void setOpenLoopProfile(OpenLoopProfile openLoopProfile) {
+        this.openLoopProfile = openLoopProfile;
+    }
+
+    public void setPhasePlan(@NonNull final PhasePlan phasePlan) {
+        this.phasePlan = phasePlan;
+    }
+
+    // Skier IDs run from firstSkierID to firstSkierID + skierCount - 1, so that clients can split the skiers.
+    public void setFirstSkierID(int firstSkierID) {
+        this.firstSkierID = firstSkierID;
+    }
+
+    public int getTotalRequestSent() {
+        return this.totalRequestSent.get();
+    }
+
+    public int getSuccessfulRequestCount() {
+        return this.successfulRequestCount.get();
+    }
+
+    public int getFailedRequestCount() {
+        return this.failedRequestCount.get();
+    }
+
+    public long getLastWallTimeMS() {
+        return this.lastWallTimeMS;
+    }
+
+    // Runs can be repeated on the same client, every run starts from zeroed counters.
     public void startLoadSimulation() throws JsonProcessingException, InterruptedException, ExecutionException {
         System.out.printf("Start skier client load simulator\n");
 
+        resetStatCounts();
+        prepareWorkload();
+        LiveStatsReporter liveStatsReporter = startLiveStatsReporter();
         long startTime = System.currentTimeMillis();
 
-        Thread phaseOne = new Thread(() -> {
-            try {
-                executePhaseOne();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-        Thread phaseTwo = new Thread(() -> {
-            try {
-                executePhaseTwo();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-        Thread phaseThree = new Thread(() -> {
-            try {
-                executePhaseThree();
-            } catch (Exception e) {
-                e.printStackTrace();
+        try {
+            if (this.replayProfile != null) {
+                executeReplay();
+            } else if (this.openLoopProfile != null) {
+                executeOpenLoop();
+            } else {
+                executePhases();
             }
-        });
-
-        phaseOne.start();
-        phaseTwo.start();
-        phaseThree.start();
-
-        phaseOne.join();
-        phaseTwo.join();
-        phaseThree.join();
+        } finally {
+            closeLiveStatsReporter(liveStatsReporter);
+        }
 
         long endTime = System.currentTimeMillis();
+        this.lastWallTimeMS = endTime - startTime;
 
         // Output summaries.
-        System.out.printf("\n[Execution Summary]\nTotal Requests: %d\nSuccessful Requests: %d\nFailed Requests: %d\nWall Time: %d seconds\nThroughput: %d rps\n",
+        System.out.printf("\n[Execution Summary]\nTotal Requests: %d\nSuccessful Requests: %d\nFailed Requests: %d\nWall Time: %.1f seconds\nThroughput: %.0f rps\n",
                 this.totalRequestSent.get(),
                 this.successfulRequestCount.get(),
                 this.failedRequestCount.get(),
-                (endTime - startTime) / 1000,
-                (this.totalRequestSent.get()) / ((endTime - startTime) / 1000));
+                this.lastWallTimeMS / 1000.0,
+                this.lastWallTimeMS == 0 ? 0.0 : this.totalRequestSent.get() * 1000.0 / this.lastWallTimeMS);
+
+        if (this.replayProfile == null) {
+            long writeCount = this.keyContentionTracker.getWriteCount();
+            System.out.printf("\n[Workload]\nDistribution: %s\nPOST Writes: %d\nSame-Key Conflicts: %d (%.2f%% of writes)\nRetries: %d (%.2f%% of requests)\n",
+                    this.workloadDistribution.describe(),
+                    writeCount,
+                    this.keyContentionTracker.getConflictCount(),
+                    writeCount == 0 ? 0.0 : this.keyContentionTracker.getConflictCount() * 100.0 / writeCount,
+                    this.retryCount.sum(),
+                    this.totalRequestSent.get() == 0 ? 0.0 : this.retryCount.sum() * 100.0 / this.totalRequestSent.get());
+        }
+
+        if (this.replayProfile == null && this.openLoopProfile != null) {
+            System.out.printf("\n[Open-Loop Schedule]\nScheduled Requests: %d\nMissed Schedule (started over %d ms late): %d\nSkipped (backlog full): %d\nMax Start Lag: %d ms\n",
+                    this.openLoopProfile.getTotalRequestCount(),
+                    openLoopScheduleToleranceMS,
+                    this.missedScheduleCount.sum(),
+                    this.skippedScheduleCount.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(this.maxStartLagNS.get()));
+        }
     }
 
-    private void executePhaseOne() throws JsonProcessingException, InterruptedException, ExecutionException {
-        // Setup requirements in phase 1.
-        int targetThreadCount = this.maxThreadCount / 4;
-        int[][] skierSplits = getSkierIdsSplits(targetThreadCount);
-        int[] timeSlides = getTimeSlides(1);
+    // Releases the request engine and connections once the client is done with all runs.
+    public void close() {
+        try {
+            this.requestEngine.close();
+        } catch (IOException e) {
+            System.out.printf("Failed to close request engine, with error: %s\n", e);
+        }
+        this.retryScheduler.shutdown();
+        this.connectionManager.shutdown();
+    }
 
-        // Shuffle the inputs.
-        shuffleInputs(skierSplits, timeSlides);
+    // Interval latencies for the live report, null when the client does not record latencies.
+    protected LatencyRecorder getIntervalLatencyRecorder() {
+        return null;
+    }
+
+    private LiveStatsReporter startLiveStatsReporter() {
+        if (this.liveReportIntervalMS <= 0) {
+            return null;
+        }
 
-        executePhase(1, targetThreadCount, skierSplits, timeSlides, 1000, 5);
+        try {
+            LiveStatsReporter liveStatsReporter = new LiveStatsReporter(this.liveReportFilePath,
+                    this.liveReportIntervalMS,
+                    this.totalRequestSent::get,
+                    this.failedRequestCount::get,
+                    this.inFlightRequestCount::get,
+                    getIntervalLatencyRecorder());
+            liveStatsReporter.start();
+            return liveStatsReporter;
+        } catch (IOException e) {
+            System.out.printf("Failed to start live stats report to %s, with error: %s\n", this.liveReportFilePath, e);
+            return null;
+        }
     }
 
-    private void executePhaseTwo() throws InterruptedException, ExecutionException, JsonProcessingException {
-        shouldStartPhaseTwo.await(1, TimeUnit.SECONDS);
+    private void closeLiveStatsReporter(LiveStatsReporter liveStatsReporter) {
+        if (liveStatsReporter == null) {
+            return;
+        }
 
-        // Setup requirements in phase 2.
-        int targetThreadCount = this.maxThreadCount;
-        int[][] skierSplits = getSkierIdsSplits(targetThreadCount);
-        int[] timeSlides = getTimeSlides(2);
+        try {
+            liveStatsReporter.close();
+        } catch (IOException e) {
+            System.out.printf("Failed to write live stats report to %s, with error: %s\n", this.liveReportFilePath, e);
+        }
+    }
 
-        // Shuffle the inputs.
-        shuffleInputs(skierSplits, timeSlides);
+    // Called for every answered request sent through the request engine: each attempt made by
+    // executeSingleRequestAsync, and each open-loop request with latency measured from its intended send time so that
+    // time spent waiting behind slow responses is included.
+    protected void recordResponse(RequestType requestType, long startTime, long latencyNS, int statusCode) {
+    }
+
+    // Each phase runs on its own thread, waiting without polling until its start trigger completes.
+    private void executePhases() throws InterruptedException {
+        Map<String, PhaseProgress> phaseProgresses = new HashMap<>();
+        for (PhaseSpec phase : this.phasePlan.getPhases()) {
+            int threadCount = Math.max(1, (int) (phase.getThreadShare() * this.maxThreadCount));
+            phaseProgresses.put(phase.getName(), new PhaseProgress(threadCount));
+        }
+
+        // All triggers are registered before any phase starts.
+        Map<String, CompletableFuture<Void>> startTriggers = new HashMap<>();
+        for (PhaseSpec phase : this.phasePlan.getPhases()) {
+            startTriggers.put(phase.getName(), phase.getStartAfter() == null
+                    ? CompletableFuture.completedFuture(null)
+                    : phaseProgresses.get(phase.getStartAfter()).getTrigger(phase.getStartAfterCompletedShare()));
+        }
+
+        List<Thread> phaseThreads = new ArrayList<>();
+        for (PhaseSpec phase : this.phasePlan.getPhases()) {
+            PhaseProgress phaseProgress = phaseProgresses.get(phase.getName());
+            Thread phaseThread = new Thread(() -> {
+                try {
+                    startTriggers.get(phase.getName()).get();
+                    executePhase(phase, phaseProgress);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    phaseProgress.onPhaseCompleted();
+                }
+            });
+            phaseThreads.add(phaseThread);
+            phaseThread.start();
+        }
 
-        executePhase(2, targetThreadCount, skierSplits, timeSlides, 1000, 5);
+        for (Thread phaseThread : phaseThreads) {
+            phaseThread.join();
+        }
     }
 
-    private void executePhaseThree() throws InterruptedException, ExecutionException, JsonProcessingException {
-        shouldStartPhaseTwo.await(1, TimeUnit.SECONDS);
-        shouldStartPhaseThree.await(1, TimeUnit.SECONDS);
+    // Sends requests at the times the profile schedules them, whether or not earlier requests have been answered.
+    // A request that cannot start on time waits for a thread and its latency still counts from the intended time.
+    private void executeOpenLoop() throws InterruptedException {
+        long totalRequestCount = this.openLoopProfile.getTotalRequestCount();
+        int getPercent = this.openLoopProfile.getGetPercent();
+        System.out.printf("Executing open-loop schedule of %d requests\n", totalRequestCount);
+
+        // A blocking engine needs a thread per request in flight, a non-blocking one sends from the dispatcher.
+        ExecutorService executorService = !this.requestEngine.isBlocking() ? null : new ThreadPoolExecutor(this.maxThreadCount,
+                this.maxThreadCount,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(openLoopMaxBacklog));
+        Random rand = new Random();
 
-        // Setup requirements in phase 3.
-        int targetThreadCount = this.maxThreadCount / 4;
-        int[][] skierSplits = getSkierIdsSplits(targetThreadCount);
-        int[] timeSlides = getTimeSlides(3);
+        this.openLoopDrainedLatch = new CountDownLatch(1);
+        this.openLoopInFlightCount.set(1);
+        long startTimeNS = System.nanoTime();
+        long startTime = System.currentTimeMillis();
 
-        // Shuffle the inputs.
-        shuffleInputs(skierSplits, timeSlides);
+        for (long n = 0; n < totalRequestCount; n++) {
+            long intendedStartTimeNS = startTimeNS + this.openLoopProfile.getIntendedOffsetNS(n);
+            long intendedStartTime = startTime + TimeUnit.NANOSECONDS.toMillis(intendedStartTimeNS - startTimeNS);
+
+            long waitNS;
+            while ((waitNS = intendedStartTimeNS - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNS);
+            }
+
+            boolean isGetRequest = rand.nextInt(100) < getPercent;
+            if (executorService == null) {
+                if (this.openLoopInFlightCount.get() > openLoopMaxBacklog) {
+                    this.skippedScheduleCount.increment();
+                } else {
+                    sendScheduledRequest(intendedStartTimeNS, intendedStartTime, isGetRequest);
+                }
+                continue;
+            }
+            try {
+                executorService.execute(() -> sendScheduledRequest(intendedStartTimeNS, intendedStartTime, isGetRequest));
+            } catch (RejectedExecutionException e) {
+                this.skippedScheduleCount.increment();
+            }
+        }
 
-        executePhase(3, targetThreadCount, skierSplits, timeSlides, 1000, 10);
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        onOpenLoopRequestDone();
+        this.openLoopDrainedLatch.await();
     }
 
-    private void executePhase(int phaseNum,
-                              int targetThreadCount,
-                              int[][] skierSplits,
-                              int[] timeSlides,
-                              int targetPOSTRequestCount,
-                              int targetGETRequestCount) throws InterruptedException, ExecutionException, JsonProcessingException {
-        System.out.printf("Executing phase %d\n", phaseNum);
+    // Each scheduled request is sent once, inline retries would hold the thread and delay the requests behind it.
+    private void sendScheduledRequest(long intendedStartTimeNS, long intendedStartTime, boolean isGetRequest) {
+        long startLagNS = System.nanoTime() - intendedStartTimeNS;
+        if (startLagNS > TimeUnit.MILLISECONDS.toNanos(openLoopScheduleToleranceMS)) {
+            this.missedScheduleCount.increment();
+        }
+        this.maxStartLagNS.accumulateAndGet(startLagNS, Math::max);
+
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int skierID = rand.nextInt(this.firstSkierID, this.firstSkierID + this.skierCount);
+        RequestType requestType;
+        String requestUrl;
+        byte[] body = null;
+        int bodyLength = 0;
+
+        int writeKey = -1;
+
+        if (!isGetRequest && this.workloadSampler != null) {
+            requestType = RequestType.POST;
+            requestUrl = this.targetUrl;
+            body = new byte[this.workloadSampler.getMaxBodyLength()];
+            int[] rideHolder = new int[2];
+            bodyLength = this.workloadSampler.encodeRide(body, this.localWorkloadRandom.get(), 1, skiDayLenInMin, rideHolder);
+            writeKey = getWriteKey(rideHolder[0], rideHolder[1]);
+        } else if (!isGetRequest) {
+            // Several scheduled requests can be in flight per thread, so each gets its own body.
+            requestType = RequestType.POST;
+            requestUrl = this.targetUrl;
+            body = new byte[this.requestEncoder.getMaxBodyLength()];
+            bodyLength = this.requestEncoder.encode(body,
+                    skierID,
+                    rand.nextInt(1, skiDayLenInMin + 1),
+                    this.skiLifts[rand.nextInt(this.skiLifts.length)]);
+            writeKey = getWriteKey(skierID, 0);
+        } else if (rand.nextBoolean()) {
+            requestType = RequestType.GET_SKIER_DAY_VERTICAL;
+            requestUrl = getSkierDayVerticalUrl(skierID);
+        } else {
+            requestType = RequestType.GET_SKIER_RESORT_TOTALS;
+            requestUrl = getSkierResortTotalsUrl(skierID);
+        }
+
+        int finalWriteKey = writeKey;
+        if (finalWriteKey >= 0) {
+            this.keyContentionTracker.onWriteStarted(finalWriteKey);
+        }
+        this.openLoopInFlightCount.incrementAndGet();
+        this.inFlightRequestCount.incrementAndGet();
+        this.requestEngine.send(requestUrl, body, bodyLength).whenComplete((sentStatusCode, error) -> {
+            this.inFlightRequestCount.decrementAndGet();
+            if (finalWriteKey >= 0) {
+                this.keyContentionTracker.onWriteCompleted(finalWriteKey);
+            }
+            int statusCode = sentStatusCode == null ? -1 : sentStatusCode;
+            long latencyNS = System.nanoTime() - intendedStartTimeNS;
+
+            updateStatCounts(statusCode, requestUrl);
+            recordResponse(requestType, intendedStartTime, latencyNS, statusCode);
+            onOpenLoopRequestDone();
+        });
+    }
+
+    private void onOpenLoopRequestDone() {
+        if (this.openLoopInFlightCount.decrementAndGet() == 0) {
+            this.openLoopDrainedLatch.countDown();
+        }
+    }
+
+    // Re-issues a traffic capture, streamed from the file in arrival order. Timed replays send each request at its
+    // captured offset divided by the speed and count latency from that intended time like the open-loop mode does, a
+    // request that finds all concurrency slots taken waits for one. Every request is sent once, as captured.
+    private void executeReplay() throws InterruptedException {
+        String capturePath = this.replayProfile.getCapturePath();
+        int concurrency = this.replayProfile.getConcurrency();
+        System.out.printf("Replaying %s at %s with up to %d requests in flight\n",
+                capturePath,
+                this.replayProfile.isMaxSpeed() ? "max speed" : this.replayProfile.getSpeed() + "x speed",
+                concurrency);
+
+        Semaphore replayPermits = new Semaphore(concurrency);
+        // A blocking engine needs a thread per request in flight, a non-blocking one sends from the dispatcher.
+        ExecutorService executorService = this.requestEngine.isBlocking() ? Executors.newFixedThreadPool(concurrency) : null;
+        ObjectMapper mapper = new ObjectMapper();
+        String contextUrl = getContextUrl();
+        long replayedCount = 0;
+        long malformedLineCount = 0;
+        long firstOffsetNS = -1;
+
+        long startTimeNS = System.nanoTime();
+        long startTime = System.currentTimeMillis();
+
+        // POSTs are written to the capture once handled, so lines are only roughly in arrival order. Requests are held
+        // back until the capture has moved replayReorderWindowMS past them and sent in offset order.
+        PriorityQueue<CapturedRequest> pendingRequests = new PriorityQueue<>(Comparator.comparingLong(CapturedRequest::getOffsetNS));
+        long reorderWindowNS = TimeUnit.MILLISECONDS.toNanos(replayReorderWindowMS);
+        long newestOffsetNS = Long.MIN_VALUE;
+        boolean isEndOfCapture = false;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(capturePath), StandardCharsets.UTF_8))) {
+            while (!isEndOfCapture || !pendingRequests.isEmpty()) {
+                if (!isEndOfCapture) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        isEndOfCapture = true;
+                    } else {
+                        CapturedRequest capturedRequest;
+                        try {
+                            capturedRequest = mapper.readValue(line, CapturedRequest.class);
+                        } catch (IOException e) {
+                            malformedLineCount++;
+                            continue;
+                        }
+                        if (capturedRequest.getMethod() == null || capturedRequest.getPath() == null) {
+                            malformedLineCount++;
+                            continue;
+                        }
+                        pendingRequests.add(capturedRequest);
+                        newestOffsetNS = Math.max(newestOffsetNS, capturedRequest.getOffsetNS());
+                    }
+                }
 
-        // Setup the ExecutorService for requests.
-        ExecutorService executorService = Executors.newFixedThreadPool(targetThreadCount);
+                while (!pendingRequests.isEmpty()
+                        && (isEndOfCapture || pendingRequests.peek().getOffsetNS() <= newestOffsetNS - reorderWindowNS)) {
+                    CapturedRequest capturedRequest = pendingRequests.poll();
+
+                    long intendedStartTimeNS = 0;
+                    if (!this.replayProfile.isMaxSpeed()) {
+                        if (firstOffsetNS < 0) {
+                            firstOffsetNS = capturedRequest.getOffsetNS();
+                        }
+                        intendedStartTimeNS = startTimeNS + (long) ((capturedRequest.getOffsetNS() - firstOffsetNS) / this.replayProfile.getSpeed());
+
+                        long waitNS;
+                        while ((waitNS = intendedStartTimeNS - System.nanoTime()) > 0) {
+                            LockSupport.parkNanos(waitNS);
+                        }
+                    }
+
+                    replayPermits.acquire();
+                    if (this.replayProfile.isMaxSpeed()) {
+                        intendedStartTimeNS = System.nanoTime();
+                    }
+                    long finalIntendedStartTimeNS = intendedStartTimeNS;
+                    long intendedStartTime = startTime + TimeUnit.NANOSECONDS.toMillis(intendedStartTimeNS - startTimeNS);
+                    Runnable sender = () -> sendReplayedRequest(contextUrl,
+                            capturedRequest,
+                            finalIntendedStartTimeNS,
+                            intendedStartTime,
+                            replayPermits::release);
+
+                    if (executorService == null) {
+                        sender.run();
+                    } else {
+                        executorService.execute(sender);
+                    }
+                    replayedCount++;
+                }
+            }
+        } catch (IOException e) {
+            System.out.printf("Failed to read traffic capture %s, with error: %s\n", capturePath, e);
+        }
+
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        replayPermits.acquire(concurrency);
+
+        System.out.printf("\n[Replay]\nReplayed Requests: %d\nMalformed Capture Lines: %d\nMissed Schedule (started over %d ms late): %d\nMax Start Lag: %d ms\n",
+                replayedCount,
+                malformedLineCount,
+                openLoopScheduleToleranceMS,
+                this.missedScheduleCount.sum(),
+                TimeUnit.NANOSECONDS.toMillis(this.maxStartLagNS.get()));
+    }
+
+    private void sendReplayedRequest(String contextUrl,
+                                     CapturedRequest capturedRequest,
+                                     long intendedStartTimeNS,
+                                     long intendedStartTime,
+                                     Runnable onCompleted) {
+        long startLagNS = System.nanoTime() - intendedStartTimeNS;
+        if (startLagNS > TimeUnit.MILLISECONDS.toNanos(openLoopScheduleToleranceMS)) {
+            this.missedScheduleCount.increment();
+        }
+        this.maxStartLagNS.accumulateAndGet(startLagNS, Math::max);
+
+        String requestUrl = contextUrl + capturedRequest.getPath()
+                + (capturedRequest.getQuery() == null ? "" : "?" + capturedRequest.getQuery());
+        byte[] body = null;
+        RequestType requestType;
+
+        if ("POST".equals(capturedRequest.getMethod())) {
+            requestType = RequestType.POST;
+            body = capturedRequest.getBody() == null
+                    ? new byte[0]
+                    : capturedRequest.getBody().getBytes(StandardCharsets.UTF_8);
+        } else if (capturedRequest.getPath().contains("/top10vert")) {
+            requestType = RequestType.GET_TOP_VERTICALS;
+        } else if (capturedRequest.getPath().endsWith("/vertical")) {
+            requestType = RequestType.GET_SKIER_RESORT_TOTALS;
+        } else {
+            requestType = RequestType.GET_SKIER_DAY_VERTICAL;
+        }
 
-        // Send desired POST requests.
+        this.inFlightRequestCount.incrementAndGet();
+        this.requestEngine.send(requestUrl, body, body == null ? 0 : body.length).whenComplete((sentStatusCode, error) -> {
+            this.inFlightRequestCount.decrementAndGet();
+            int statusCode = sentStatusCode == null ? -1 : sentStatusCode;
+
+            updateStatCounts(statusCode, requestUrl);
+            recordResponse(requestType, intendedStartTime, System.nanoTime() - intendedStartTimeNS, statusCode);
+            onCompleted.run();
+        });
+    }
+
+    private void executePhase(PhaseSpec phase, PhaseProgress phaseProgress) throws InterruptedException, ExecutionException {
+        System.out.printf("Executing phase %s\n", phase.getName());
+
+        // Setup requirements for the phase.
+        int targetThreadCount = phaseProgress.getThreadCount();
+        int[][] skierSplits = getSkierIdsSplits(targetThreadCount);
+        int[] timeSlides = getTimeSlides(phase.getStartMinute(), phase.getEndMinute());
+
+        // Shuffle the inputs.
+        shuffleInputs(skierSplits, timeSlides);
+
+        // Setup the ExecutorService for requests, a non-blocking engine needs no thread per request.
+        ExecutorService executorService = this.requestEngine.isBlocking() ? Executors.newFixedThreadPool(targetThreadCount) : null;
+
+        // Send desired POST requests, every thread that finishes counts toward the phases waiting on this one.
         sendLoads(targetThreadCount,
                 skierSplits,
                 timeSlides,
                 executorService,
                 true,
-                targetPOSTRequestCount,
-                (phaseNum == 1) ? true : false,
-                (phaseNum == 2) ? true : false);
+                phase.getPostRequestsPerThread(),
+                phaseProgress::onThreadCompleted);
 
         // Send desired GET requests.
         sendLoads(targetThreadCount,
@@ -284,170 +809,180 @@ public abstract class SkierClientBase {
                 timeSlides,
                 executorService,
                 false,
-                targetGETRequestCount,
-                (phaseNum == 1) ? true : false,
-                (phaseNum == 2) ? true : false);
+                phase.getGetRequestsPerThread(),
+                () -> {});
 
         // Close out ExecutorService.
-        executorService.shutdown();
+        if (executorService != null) {
+            executorService.shutdown();
+        }
     }
 
+    // Returns once every thread has sent its requests.
     private void sendLoads(int targetThreadCount,
                            int[][] skierSplits,
                            int[] timeSlides,
                            ExecutorService executorService,
                            boolean isPostRequest,
                            int targetRequestCount,
-                           boolean isPhaseOne,
-                           boolean isPhaseTwo) throws JsonProcessingException, InterruptedException, ExecutionException {
+                           Runnable onThreadCompleted) throws InterruptedException, ExecutionException {
+        if (!this.requestEngine.isBlocking()) {
+            sendLoadsAsync(targetThreadCount, skierSplits, timeSlides, isPostRequest, targetRequestCount, onThreadCompleted);
+            return;
+        }
+
         // The finalized concurrent tasks list for POST requests.
         List<Callable<Optional<TaskResponseStat>>> tasks = new ArrayList<>();
 
         // Sending the POST requests in batch toward the threads pool.
         for (int i = 0; i < targetThreadCount; i++) {
             if (isPostRequest) {
-                // Prepare POST requests for current thread.
-                String[] proposedPOSTRequestBody = preparePOSTRequestBody(targetRequestCount, skierSplits[i], timeSlides);
+                // POST requests for current thread, generated as they are sent.
+                POSTRequestGenerator requestGenerator = newPOSTRequestGenerator(targetRequestCount, skierSplits[i], timeSlides);
 
                 // Append to the finalized tasks list.
-                tasks.addAll(assembleTasksForPOSTRequests(this.targetUrl, proposedPOSTRequestBody));
+                tasks.add(assembleTask(() -> sendSerialPOSTRequestsInThread(this.targetUrl, requestGenerator), onThreadCompleted));
             } else {
-                // Prepare GET requests for current thread.
-                String[] proposedGETRequests = prepareGETRequestURL(targetRequestCount, skierSplits[i]);
+                // GET requests for current thread, generated as they are sent.
+                GETRequestGenerator requestGenerator = newGETRequestGenerator(targetRequestCount, skierSplits[i]);
 
                 // Append to the finalized tasks list.
-                tasks.addAll(assembleTasksForGETRequests(proposedGETRequests));
+                tasks.add(assembleTask(() -> sendSerialGETRequestsInThread(requestGenerator), onThreadCompleted));
             }
         }
 
-        // Now execute all the tasks concurrently.
-        List<Future<Optional<TaskResponseStat>>> responses = executorService.invokeAll(tasks);
+        // Now execute all the tasks concurrently, this returns when all of them are done.
+        processResponses(executorService.invokeAll(tasks));
+    }
+
+    // Same loads as sendLoads, but each thread's requests become a chain of non-blocking requests where the next one is
+    // sent when the previous one completes. Every chain stands in for one thread.
+    private void sendLoadsAsync(int targetThreadCount,
+                                int[][] skierSplits,
+                                int[] timeSlides,
+                                boolean isPostRequest,
+                                int targetRequestCount,
+                                Runnable onThreadCompleted) throws InterruptedException {
+        List<CompletableFuture<Optional<TaskResponseStat>>> responses = new ArrayList<>();
+
+        for (int i = 0; i < targetThreadCount; i++) {
+            CompletableFuture<Optional<TaskResponseStat>> response;
 
-        // Process the responses.
-        if (isPostRequest) {
-            if (isPhaseOne) {
-                processResponsesInThread(responses, true, false, targetRequestCount, targetThreadCount);
-            } else if (isPhaseTwo) {
-                processResponsesInThread(responses, false, true, targetRequestCount, targetThreadCount);
+            // The chain sends its next request only after the previous one completes, so one buffer per chain is enough.
+            if (isPostRequest) {
+                POSTRequestGenerator requestGenerator = newPOSTRequestGenerator(targetRequestCount, skierSplits[i], timeSlides);
+                response = sendSerialRequestsAsync(i, () -> {
+                    if (!requestGenerator.next()) {
+                        return null;
+                    }
+                    int writeKey = getWriteKey(requestGenerator.getSkierID(), requestGenerator.getResortIndex());
+                    this.keyContentionTracker.onWriteStarted(writeKey);
+                    return executeSingleRequestAsync(this.targetUrl, requestGenerator.getBody(), requestGenerator.getBodyLength())
+                            .whenComplete((isSuccessful, error) -> this.keyContentionTracker.onWriteCompleted(writeKey));
+                });
             } else {
-                processResponsesInThread(responses, false, false, targetRequestCount, targetThreadCount);
+                GETRequestGenerator requestGenerator = newGETRequestGenerator(targetRequestCount, skierSplits[i]);
+                response = sendSerialRequestsAsync(i, () -> {
+                    String requestUrl = requestGenerator.next();
+                    return requestUrl == null ? null : executeSingleRequestAsync(requestUrl, null, 0);
+                });
             }
+
+            response.whenComplete((stat, error) -> onThreadCompleted.run());
+            responses.add(response);
         }
+
+        processResponses(new ArrayList<>(responses));
     }
 
-    private boolean sendSerialPOSTRequestsInThread(String targetUrl,
-                                                   String[] requestBody) {
-        boolean executionResult = true;
+    // requestSender sends the next request, or returns null when there are none left.
+    private CompletableFuture<Optional<TaskResponseStat>> sendSerialRequestsAsync(long chainId,
+                                                                                  Supplier<CompletableFuture<Boolean>> requestSender) {
+        CompletableFuture<Optional<TaskResponseStat>> result = new CompletableFuture<>();
+        long startTime = System.currentTimeMillis();
 
-        // Execute all tasks within a single Thread.
-        List<Callable<Optional<TaskResponseStat>>> tasks = new ArrayList<>();
-        for (int i = 0; i < requestBody.length; i++) {
-            executionResult &= executeSinglePOSTRequest(targetUrl, requestBody[i]);
+        sendNextRequestAsync(true, requestSender, executionResult ->
+                result.complete(Optional.of(toTaskResponseStat(startTime, System.currentTimeMillis(), executionResult, chainId))));
+
+        return result;
+    }
+
+    private void sendNextRequestAsync(boolean executionResult,
+                                      Supplier<CompletableFuture<Boolean>> requestSender,
+                                      Consumer<Boolean> onComplete) {
+        CompletableFuture<Boolean> sentRequest = requestSender.get();
+        if (sentRequest == null) {
+            onComplete.accept(executionResult);
+            return;
         }
 
-        return executionResult;
+        sentRequest.whenComplete((isSuccessful, error) ->
+                sendNextRequestAsync(executionResult && Boolean.TRUE.equals(isSuccessful), requestSender, onComplete));
     }
 
-    private boolean sendSerialGETRequestsInThread(String[] targetUrls) {
+    private boolean sendSerialPOSTRequestsInThread(String targetUrl,
+                                                   POSTRequestGenerator requestGenerator) {
         boolean executionResult = true;
 
         // Execute all tasks within a single Thread.
-        for (int i = 0; i < targetUrls.length; i++) {
-            executionResult &= executeSingleGetRequest(targetUrls[i]);
+        while (requestGenerator.next()) {
+            int writeKey = getWriteKey(requestGenerator.getSkierID(), requestGenerator.getResortIndex());
+            this.keyContentionTracker.onWriteStarted(writeKey);
+            executionResult &= executeSinglePOSTRequest(targetUrl, requestGenerator.getBody(), requestGenerator.getBodyLength());
+            this.keyContentionTracker.onWriteCompleted(writeKey);
         }
 
         return executionResult;
     }
 
-    private List<Callable<Optional<TaskResponseStat>>> assembleTasksForPOSTRequests(String targetUrl,
-                                                                                    String[] requestBody) {
-        // Setup the tasks.
-        List<Callable<Optional<TaskResponseStat>>> tasks = new ArrayList<>();
-        tasks.add(() -> {
-            long startTime = System.currentTimeMillis();
-            boolean executionResult = sendSerialPOSTRequestsInThread(targetUrl, requestBody);
-            long endTime = System.currentTimeMillis();
+    private boolean sendSerialGETRequestsInThread(GETRequestGenerator requestGenerator) {
+        boolean executionResult = true;
 
-            return Optional.of(toTaskResponseStat(startTime, endTime, executionResult));
-        });
+        // Execute all tasks within a single Thread.
+        String targetUrl;
+        while ((targetUrl = requestGenerator.next()) != null) {
+            executionResult &= executeSingleGetRequest(targetUrl);
+        }
 
-        return tasks;
+        return executionResult;
     }
 
-    private List<Callable<Optional<TaskResponseStat>>> assembleTasksForGETRequests(String[] targetUrls) {
-        // Setup the tasks.
-        List<Callable<Optional<TaskResponseStat>>> tasks = new ArrayList<>();
-        tasks.add(() -> {
+    private Callable<Optional<TaskResponseStat>> assembleTask(BooleanSupplier serialRequests, Runnable onThreadCompleted) {
+        return () -> {
             long startTime = System.currentTimeMillis();
-            boolean executionResult = sendSerialGETRequestsInThread(targetUrls);
-            long endTime = System.currentTimeMillis();
-
-            return Optional.of(toTaskResponseStat(startTime, endTime, executionResult));
-        });
-
-        return tasks;
-    }
-
-    private void processResponsesInThread(List<Future<Optional<TaskResponseStat>>> responses,
-                                          boolean isPhaseOne,
-                                          boolean isPhaseTwo,
-                                          int targetRequestCountPerThread,
-                                          int targetThreadCount) throws ExecutionException, InterruptedException {
-        // Waiting for all requests to be completed.
-        do {
-            // Check if at least 10% of the threads complete their works.
-            List<Future<Optional<TaskResponseStat>>> completedRequests = responses.stream()
-                    .filter(stat -> stat.isDone()).collect(Collectors.toList());
-
-            int completedThreadCount = getCompletedThreadCount(completedRequests, targetRequestCountPerThread);
-            // If so, execute the next phase.
-            if (isPhaseOne || isPhaseTwo) {
-                if (completedThreadCount >= (targetThreadCount / 10)) {
-                    if (isPhaseOne) {
-//                        System.out.println("Phase 1 reached at least 10% threads completion, notifying phase 2.");
-                        shouldStartPhaseTwo.countDown();
-                    } else if (isPhaseTwo) {
-//                        System.out.println("Phase 2 reached at least 10% threads completion, notifying phase 3.");
-                        shouldStartPhaseThree.countDown();
-                    }
-                }
-            }
-
-            // Then wait for all requests to complete before further processing the responses.
             try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                System.out.printf("Encountered error during wait sleep %s\n", e);
+                boolean executionResult = serialRequests.getAsBoolean();
+                long endTime = System.currentTimeMillis();
+
+                return Optional.of(toTaskResponseStat(startTime, endTime, executionResult));
+            } finally {
+                onThreadCompleted.run();
             }
-        } while (!responses.stream().allMatch(stat -> stat.isDone()));
+        };
+    }
 
-        // All requests should now be completed.
+    private void processResponses(List<? extends Future<Optional<TaskResponseStat>>> responses) throws InterruptedException {
         for (Future<Optional<TaskResponseStat>> response : responses) {
             try {
                 Optional<TaskResponseStat> statHolder = response.get();
-                if (statHolder.isPresent()) {
-//                    TaskResponseStat stat = statHolder.get();
-//                    long timeTaken = stat.getEndTime() - stat.getStartTime();
-//                    System.out.printf("Response in thread %s took %d milliseconds in total, and has %s error\n",
-//                            stat.getThreadId(),
-//                            timeTaken,
-//                            (stat.isEncounteredError()) ? "encountered" : "no");
-                } else {
+                if (!statHolder.isPresent()) {
                     System.out.printf("Encountered unexpected empty response\n");
-                    continue;
                 }
-            } catch (Exception e) {
+            } catch (ExecutionException e) {
                 System.out.printf("Encountered error while getting response %s\n", e);
-                continue;
             }
         }
     }
 
     private TaskResponseStat toTaskResponseStat(long startTime, long endTime, boolean executionResult) {
+        return toTaskResponseStat(startTime, endTime, executionResult, Thread.currentThread().getId());
+    }
+
+    private TaskResponseStat toTaskResponseStat(long startTime, long endTime, boolean executionResult, long threadId) {
         TaskResponseStat.TaskResponseStatBuilder statBuilder = TaskResponseStat.builder()
                 .startTime(startTime)
                 .endTime(endTime)
-                .threadId(Thread.currentThread().getId());
+                .threadId(threadId);
         if (executionResult) {
             statBuilder.encounteredError(false);
         } else {
@@ -457,26 +992,15 @@ public abstract class SkierClientBase {
         return statBuilder.build();
     }
 
-    private int getCompletedThreadCount(List<Future<Optional<TaskResponseStat>>> completedTasks, int targetRequestCountPerThread) throws ExecutionException, InterruptedException {
-        Map<Long, Integer> threadIdToCompletedRequestCount = new HashMap<>();
-
-        for (Future<Optional<TaskResponseStat>> task : completedTasks) {
-            if (task.get().isPresent()) {
-                TaskResponseStat stat = task.get().get();
-
-                Integer threadTaskCount = threadIdToCompletedRequestCount.computeIfAbsent(stat.getThreadId(), k -> Integer.valueOf(0));
-                threadIdToCompletedRequestCount.put(stat.getThreadId(), new Integer(threadTaskCount.intValue() + 1));
-            }
-        }
-
-        return threadIdToCompletedRequestCount.entrySet().stream().filter(k -> k.getValue() > targetRequestCountPerThread).collect(Collectors.toList()).size();
+    private int getDesiredConcurrentConnectionsCount() {
+        return this.maxThreadCount / 2 + this.maxThreadCount;
     }
 
     private int[][] getSkierIdsSplits(int targetThreadCount) {
         int skiersInEachSplit = this.skierCount / targetThreadCount;
         int[][] skierSplits = new int[targetThreadCount][skiersInEachSplit];
 
-        int skierId = 1;
+        int skierId = this.firstSkierID;
         for (int i = 0; i < targetThreadCount; i++) {
             for (int j = 0; j < skiersInEachSplit; j++) {
                 skierSplits[i][j] = skierId++;
@@ -485,28 +1009,11 @@ public abstract class SkierClientBase {
         return skierSplits;
     }
 
-    private int[] getTimeSlides(int phaseNum) {
-        int[] timeSlides;
-        int initialTime;
-
-        switch (phaseNum) {
-            case 1:
-                timeSlides = new int[90];
-                initialTime = 1;
-                break;
-            case 2:
-                timeSlides = new int[270];
-                initialTime = 91;
-                break;
-            case 3:
-                timeSlides = new int[60];
-                initialTime = 361;
-                break;
-            default:
-                throw new RuntimeException("Unsupported phase: " + phaseNum);
-        }
+    // Every minute of the window, inclusive.
+    private int[] getTimeSlides(int startMinute, int endMinute) {
+        int[] timeSlides = new int[endMinute - startMinute + 1];
 
-        fillTimeSlides(timeSlides, initialTime);
+        fillTimeSlides(timeSlides, startMinute);
 
         return timeSlides;
     }
@@ -528,105 +1035,107 @@ public abstract class SkierClientBase {
         return lifts;
     }
 
-    private String[] preparePOSTRequestBody(int targetRequestCount,
-                                            int[] skierSplit,
-                                            int[] timeSlides) throws JsonProcessingException {
-        String[] requestBody = new String[targetRequestCount];
-
-        // Generate request body based on the shuffled inputs.
-        int i = 0, j = 0, k = 0, l = 0;
-        while (l < targetRequestCount) {
-            if (i >= skierSplit.length) {
-                i = 0;
-            }
-            if (j >= timeSlides.length) {
-                j = 0;
-            }
-            if (k >= this.skiLifts.length) {
-                k = 0;
+    private POSTRequestGenerator newPOSTRequestGenerator(int targetRequestCount,
+                                                         int[] skierSplit,
+                                                         int[] timeSlides) {
+        if (this.workloadSampler != null) {
+            // The slides hold every minute of the phase's window, in shuffled order.
+            int startMinute = Integer.MAX_VALUE;
+            int endMinute = Integer.MIN_VALUE;
+            for (int timeSlide : timeSlides) {
+                startMinute = Math.min(startMinute, timeSlide);
+                endMinute = Math.max(endMinute, timeSlide);
             }
 
-            SkierPOSTRequest body = SkierPOSTRequest.builder()
-                    .resortID(this.resortName)
-                    .dayID(this.skiDayNum)
-                    .skierID(skierSplit[i++])
-                    .time(timeSlides[j++])
-                    .liftID(this.skiLifts[k++])
-                    .build();
+            return new POSTRequestGenerator(this.workloadSampler, newWorkloadRandom(), targetRequestCount, startMinute, endMinute);
+        }
 
-            requestBody[l] = mapper.writeValueAsString(body);
+        return new POSTRequestGenerator(this.requestEncoder, targetRequestCount, skierSplit, timeSlides, this.skiLifts);
+    }
 
-            l++;
-        }
+    // Generates GET requests for https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierDayVertical
+    // and https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierResortTotals
+    private GETRequestGenerator newGETRequestGenerator(int targetRequestCount,
+                                                       int[] skierSplit) {
+        return new GETRequestGenerator(targetRequestCount,
+                skierSplit,
+                getSkierDayVerticalUrlPrefix(),
+                getSkiersUrlPrefix(),
+                getSkierResortTotalsUrlSuffix());
+    }
 
-        return requestBody;
+    private String getSkierDayVerticalUrl(int skierID) {
+        return getSkierDayVerticalUrlPrefix() + skierID;
     }
 
-    private String[] prepareGETRequestURL(int targetRequestCount,
-                                          int[] skierSplit) {
-        String[] requests = new String[targetRequestCount * 2];
+    private String getSkierResortTotalsUrl(int skierID) {
+        return getSkiersUrlPrefix() + skierID + getSkierResortTotalsUrlSuffix();
+    }
 
-        // Generate GET requests for https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierDayVertical
-        int i = 0, j = 0;
-        while (j < targetRequestCount) {
-            if (i >= skierSplit.length) {
-                i = 0;
-            }
+    private String getSkiersUrlPrefix() {
+        return getContextUrl() + "/skiers/";
+    }
 
-            StringBuilder targetUrl = new StringBuilder();
-            targetUrl.append(this.serverAddr);
-            targetUrl.append(":");
-            targetUrl.append(this.serverPort);
-            targetUrl.append("/IntelliJ_war/skiers/");
-            targetUrl.append(preparePathParam(this.resortName));
-            targetUrl.append("/days/");
-            targetUrl.append(this.skiDayNum);
-            targetUrl.append("/skiers/");
-            targetUrl.append(skierSplit[i]);
-
-            requests[j] = targetUrl.toString();
-
-            i++;
-            j++;
-        }
-
-        // Generate GET requests for https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierResortTotals
-        i = 0;
-        int k = 0;
-        while (k < targetRequestCount) {
-            if (i >= skierSplit.length) {
-                i = 0;
-            }
+    // Server address and the servlet's context path, request paths as the servlet sees them are relative to it.
+    private String getContextUrl() {
+        StringBuilder targetUrl = new StringBuilder();
+        targetUrl.append(this.serverAddr);
+        targetUrl.append(":");
+        targetUrl.append(this.serverPort);
+        targetUrl.append("/IntelliJ_war");
 
-            StringBuilder targetUrl = new StringBuilder();
-            targetUrl.append(this.serverAddr);
-            targetUrl.append(":");
-            targetUrl.append(this.serverPort);
-            targetUrl.append("/IntelliJ_war/skiers/");
-            targetUrl.append(skierSplit[i]);
-            targetUrl.append("/vertical?resort=");
-            targetUrl.append(preparePathParam(this.resortName));
+        return targetUrl.toString();
+    }
 
-            requests[j] = targetUrl.toString();
+    private String getSkierDayVerticalUrlPrefix() {
+        StringBuilder targetUrl = new StringBuilder(getSkiersUrlPrefix());
+        targetUrl.append(preparePathParam(this.resortName));
+        targetUrl.append("/days/");
+        targetUrl.append(this.skiDayNum);
+        targetUrl.append("/skiers/");
 
-            i++;
-            j++;
-            k++;
-        }
+        return targetUrl.toString();
+    }
 
-        return requests;
+    private String getSkierResortTotalsUrlSuffix() {
+        return "/vertical?resort=" + preparePathParam(this.resortName);
     }
 
-    private void shuffleArray(int[] arrayToShuffle) {
-        Random rand = new Random();
+    // Builds the run's random source and sampler, seeded so that a seeded run draws the same rides again.
+    private void prepareWorkload() {
+        long seed = this.workloadDistribution.getSeed();
+        this.workloadRandom = seed == 0 ? new SplittableRandom() : new SplittableRandom(seed);
+        this.workloadSampler = this.workloadDistribution.isUniform() ? null : new WorkloadSampler(this.workloadDistribution,
+                this.workloadRandom.split(),
+                this.firstSkierID,
+                this.skierCount,
+                this.skiLifts,
+                skiDayLenInMin,
+                this.resortName,
+                this.skiDayNum);
+        this.keyContentionTracker = new KeyContentionTracker(this.workloadSampler == null
+                ? this.skierCount
+                : this.workloadSampler.getKeyCount());
+    }
 
-        for (int i = 0; i < arrayToShuffle.length; i++) {
-            int randomIndexToSwap = rand.nextInt(arrayToShuffle.length);
-            int tmp = arrayToShuffle[randomIndexToSwap];
+    // Every thread draws from its own split, split() itself is not thread-safe.
+    private synchronized SplittableRandom newWorkloadRandom() {
+        return this.workloadRandom.split();
+    }
 
-            arrayToShuffle[randomIndexToSwap] = arrayToShuffle[i];
-            arrayToShuffle[i] = tmp;
-        }
+    // The (SkierID, ResortID) item a ride writes to.
+    private int getWriteKey(int skierID, int resortIndex) {
+        return resortIndex * this.skierCount + skierID - this.firstSkierID;
+    }
+
+    private void resetStatCounts() {
+        this.retryCount.reset();
+        this.totalRequestSent.set(0);
+        this.successfulRequestCount.set(0);
+        this.failedRequestCount.set(0);
+        this.missedScheduleCount.reset();
+        this.skippedScheduleCount.reset();
+        this.maxStartLagNS.set(0);
     }
 
     protected void updateStatCounts(int statusCode, String targetUrl) {
@@ -645,11 +1154,13 @@ public abstract class SkierClientBase {
     }
 
     private void shuffleInputs(int[][] skierSplits, int[] timeSlides) {
+        SplittableRandom rand = newWorkloadRandom();
+
         // Shuffle the inputs.
         for (int[] skierSplit : skierSplits) {
-            shuffleArray(skierSplit);
+            WorkloadSampler.shuffle(skierSplit, rand);
         }
-        shuffleArray(timeSlides);
-        shuffleArray(this.skiLifts);
+        WorkloadSampler.shuffle(timeSlides, rand);
+        WorkloadSampler.shuffle(this.skiLifts, rand);
     }
 }
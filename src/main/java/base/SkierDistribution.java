@@ -0,0 +1,8 @@
+package base;
+
+public enum SkierDistribution {
+    // Every skier equally likely.
+    UNIFORM,
+    // Skier popularity follows a Zipf law, a few skiers ride far more often than the rest.
+    ZIPF
+}
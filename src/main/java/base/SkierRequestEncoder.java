@@ -0,0 +1,69 @@
+package base;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+
+// Writes POST /skiers/liftrides bodies straight into a byte buffer. The resort and day are the same for every request
+// of a run, so that part of the JSON is encoded once and each body only adds its three numbers. The output is the same
+// JSON the ObjectMapper writes for a SkierPOSTRequest.
+public class SkierRequestEncoder {
+    // Digits of the longest int, with its sign.
+    private final static int maxIntLength = 11;
+    private final static byte[] timeField = ",\"time\":".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] liftIDField = ",\"liftID\":".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] prefix;
+    private final int maxBodyLength;
+
+    public SkierRequestEncoder(@NonNull final String resortID, int dayID) {
+        String quotedResortID = new String(JsonStringEncoder.getInstance().quoteAsString(resortID));
+        this.prefix = ("{\"resortID\":\"" + quotedResortID + "\",\"dayID\":" + dayID + ",\"skierID\":")
+                .getBytes(StandardCharsets.UTF_8);
+        this.maxBodyLength = this.prefix.length + timeField.length + liftIDField.length + 3 * maxIntLength + 1;
+    }
+
+    // Size of a buffer that fits any body.
+    public int getMaxBodyLength() {
+        return this.maxBodyLength;
+    }
+
+    // Returns the body length.
+    public int encode(byte[] buffer, int skierID, int time, int liftID) {
+        System.arraycopy(this.prefix, 0, buffer, 0, this.prefix.length);
+        int pos = this.prefix.length;
+
+        pos = writeInt(buffer, pos, skierID);
+        System.arraycopy(timeField, 0, buffer, pos, timeField.length);
+        pos = writeInt(buffer, pos + timeField.length, time);
+        System.arraycopy(liftIDField, 0, buffer, pos, liftIDField.length);
+        pos = writeInt(buffer, pos + liftIDField.length, liftID);
+        buffer[pos++] = '}';
+
+        return pos;
+    }
+
+    private static int writeInt(byte[] buffer, int pos, int value) {
+        if (value == Integer.MIN_VALUE) {
+            byte[] digits = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(digits, 0, buffer, pos, digits.length);
+            return pos + digits.length;
+        }
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+
+        int digitCount = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digitCount++;
+        }
+        for (int i = pos + digitCount - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return pos + digitCount;
+    }
+}
@@ -0,0 +1,69 @@
+package base;
+
+import lombok.Builder;
+import lombok.Data;
+import utility.SkierCmdLineHelper;
+
+// What the generated lift rides look like: which skiers ride, on which lifts, at what time of day, and across how
+// many resorts and days. Resorts after the first are named <resortName>-2, <resortName>-3, ... and days count up
+// from the client's ski day.
+@Data
+@Builder
+public class WorkloadDistribution {
+    private final SkierDistribution skierDistribution;
+    // Zipf exponent for the skiers, used with SkierDistribution.ZIPF.
+    private final double zipfExponent;
+    // Zipf exponent over the lifts, 0 makes every lift equally popular.
+    private final double liftBias;
+    private final ArrivalCurve arrivalCurve;
+    private final int resortCount;
+    private final int dayCount;
+    // 0 seeds the run randomly.
+    private final long seed;
+
+    public static WorkloadDistribution from(SkierCmdLineHelper.CommandLineArgs args) {
+        return WorkloadDistribution.builder()
+                .skierDistribution(SkierDistribution.valueOf(args.skierDistribution.toUpperCase()))
+                .zipfExponent(args.zipfExponent)
+                .liftBias(args.liftBias)
+                .arrivalCurve(ArrivalCurve.valueOf(args.arrivalCurve.toUpperCase()))
+                .resortCount(Math.max(1, args.resortCount))
+                .dayCount(Math.max(1, args.dayCount))
+                .seed(args.workloadSeed)
+                .build();
+    }
+
+    public static WorkloadDistribution uniform() {
+        return WorkloadDistribution.builder()
+                .skierDistribution(SkierDistribution.UNIFORM)
+                .arrivalCurve(ArrivalCurve.FLAT)
+                .resortCount(1)
+                .dayCount(1)
+                .build();
+    }
+
+    // The original workload: each thread cycles through its own contiguous split of skiers, the phase's minutes and
+    // the lifts, so no two threads ever write the same skier.
+    public boolean isUniform() {
+        return this.skierDistribution == SkierDistribution.UNIFORM
+                && this.liftBias == 0
+                && this.arrivalCurve == ArrivalCurve.FLAT
+                && this.resortCount == 1
+                && this.dayCount == 1;
+    }
+
+    public String describe() {
+        if (isUniform()) {
+            return "uniform splits";
+        }
+
+        return String.format("%s skiers, lift bias %.2f, %s arrivals, %d resorts, %d days",
+                this.skierDistribution == SkierDistribution.ZIPF
+                        ? String.format("zipf(%.2f)", this.zipfExponent)
+                        : "uniform",
+                this.liftBias,
+                this.arrivalCurve.name().toLowerCase(),
+                this.resortCount,
+                this.dayCount);
+    }
+}
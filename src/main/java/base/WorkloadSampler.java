@@ -0,0 +1,166 @@
+package base;
+
+import lombok.NonNull;
+
+import java.util.SplittableRandom;
+
+// Draws lift rides from a WorkloadDistribution. The tables are built once per run and shared, every thread samples with
+// its own SplittableRandom so drawing a ride takes no locks. Skewed choices use cumulative weight tables searched with
+// a binary search. Zipf ranks are mapped to skiers through a seeded permutation, so the hot skiers are scattered over
+// the ID range instead of being the lowest IDs.
+public class WorkloadSampler {
+    private final int firstSkierID;
+    private final int skierCount;
+    private final int resortCount;
+    private final int dayCount;
+    private final int skiDayLenInMin;
+    private final int[] skiLifts;
+
+    // Null when the choice is uniform.
+    private final int[] skierByRank;
+    private final double[] skierWeights;
+    private final double[] liftWeights;
+    // minuteWeights[m] is the weight of minutes 1 to m.
+    private final double[] minuteWeights;
+
+    // One encoder per resort and day, resort major.
+    private final SkierRequestEncoder[] encoders;
+    private final int maxBodyLength;
+
+    public WorkloadSampler(@NonNull final WorkloadDistribution distribution,
+                           @NonNull final SplittableRandom rand,
+                           int firstSkierID,
+                           int skierCount,
+                           @NonNull final int[] skiLifts,
+                           int skiDayLenInMin,
+                           @NonNull final String resortName,
+                           int firstDayID) {
+        this.firstSkierID = firstSkierID;
+        this.skierCount = skierCount;
+        this.resortCount = distribution.getResortCount();
+        this.dayCount = distribution.getDayCount();
+        this.skiDayLenInMin = skiDayLenInMin;
+        this.skiLifts = skiLifts.clone();
+
+        if (distribution.getSkierDistribution() == SkierDistribution.ZIPF) {
+            this.skierWeights = getZipfWeights(skierCount, distribution.getZipfExponent());
+            this.skierByRank = new int[skierCount];
+            for (int i = 0; i < skierCount; i++) {
+                this.skierByRank[i] = firstSkierID + i;
+            }
+            shuffle(this.skierByRank, rand);
+        } else {
+            this.skierWeights = null;
+            this.skierByRank = null;
+        }
+
+        // Lifts are ranked in their configured order, lift 1 is the most popular.
+        this.liftWeights = distribution.getLiftBias() > 0
+                ? getZipfWeights(this.skiLifts.length, distribution.getLiftBias())
+                : null;
+
+        if (distribution.getArrivalCurve() != ArrivalCurve.FLAT) {
+            this.minuteWeights = new double[skiDayLenInMin + 1];
+            for (int m = 1; m <= skiDayLenInMin; m++) {
+                this.minuteWeights[m] = this.minuteWeights[m - 1] + distribution.getArrivalCurve().getWeight(m);
+            }
+        } else {
+            this.minuteWeights = null;
+        }
+
+        this.encoders = new SkierRequestEncoder[this.resortCount * this.dayCount];
+        int maxBodyLength = 0;
+        for (int r = 0; r < this.resortCount; r++) {
+            String resortID = r == 0 ? resortName : resortName + "-" + (r + 1);
+            for (int d = 0; d < this.dayCount; d++) {
+                SkierRequestEncoder encoder = new SkierRequestEncoder(resortID, firstDayID + d);
+                this.encoders[r * this.dayCount + d] = encoder;
+                maxBodyLength = Math.max(maxBodyLength, encoder.getMaxBodyLength());
+            }
+        }
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    // Size of a buffer that fits any body.
+    public int getMaxBodyLength() {
+        return this.maxBodyLength;
+    }
+
+    // Number of distinct (SkierID, ResortID) items the rides can write.
+    public int getKeyCount() {
+        return this.resortCount * this.skierCount;
+    }
+
+    // Encodes a random ride with a time in [startMinute, endMinute] into buffer and returns the body length.
+    // rideHolder receives the skier ID and the resort index.
+    public int encodeRide(@NonNull final byte[] buffer,
+                          @NonNull final SplittableRandom rand,
+                          int startMinute,
+                          int endMinute,
+                          @NonNull final int[] rideHolder) {
+        int skierID = this.skierByRank == null
+                ? this.firstSkierID + rand.nextInt(this.skierCount)
+                : this.skierByRank[search(this.skierWeights, 0, this.skierWeights.length - 1, rand.nextDouble() * this.skierWeights[this.skierWeights.length - 1])];
+        int liftID = this.liftWeights == null
+                ? this.skiLifts[rand.nextInt(this.skiLifts.length)]
+                : this.skiLifts[search(this.liftWeights, 0, this.liftWeights.length - 1, rand.nextDouble() * this.liftWeights[this.liftWeights.length - 1])];
+        int resortIndex = this.resortCount == 1 ? 0 : rand.nextInt(this.resortCount);
+        int dayIndex = this.dayCount == 1 ? 0 : rand.nextInt(this.dayCount);
+
+        rideHolder[0] = skierID;
+        rideHolder[1] = resortIndex;
+
+        return this.encoders[resortIndex * this.dayCount + dayIndex].encode(buffer,
+                skierID,
+                nextMinute(rand, startMinute, endMinute),
+                liftID);
+    }
+
+    private int nextMinute(SplittableRandom rand, int startMinute, int endMinute) {
+        startMinute = Math.max(1, startMinute);
+        endMinute = Math.min(this.skiDayLenInMin, Math.max(startMinute, endMinute));
+
+        if (this.minuteWeights == null) {
+            return rand.nextInt(startMinute, endMinute + 1);
+        }
+
+        double from = this.minuteWeights[startMinute - 1];
+        return search(this.minuteWeights, startMinute, endMinute, from + rand.nextDouble() * (this.minuteWeights[endMinute] - from));
+    }
+
+    // Cumulative weights of a Zipf law over n ranks, rank i has weight 1 / (i + 1)^exponent.
+    private static double[] getZipfWeights(int n, double exponent) {
+        double[] weights = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            weights[i] = sum;
+        }
+
+        return weights;
+    }
+
+    // First index in [low, high] whose cumulative weight exceeds value, high if none does.
+    private static int search(double[] cumulativeWeights, int low, int high, double value) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeWeights[mid] > value) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    static void shuffle(int[] arrayToShuffle, SplittableRandom rand) {
+        for (int i = arrayToShuffle.length - 1; i > 0; i--) {
+            int randomIndexToSwap = rand.nextInt(i + 1);
+            int tmp = arrayToShuffle[randomIndexToSwap];
+
+            arrayToShuffle[randomIndexToSwap] = arrayToShuffle[i];
+            arrayToShuffle[i] = tmp;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark;
+
+import model.SkierPOSTRequest;
+import utility.AWSUtil;
+import utility.DDBWriteMode;
+import utility.LocalDynamoDbAsyncClient;
+import utility.LocalDynamoDbClient;
+import utility.TokenBucket;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Goodput of POSTs against a table with fixed write capacity, as the offered load goes from half to four times the
+// capacity. Requests arrive open loop and wait for one of a fixed pool of container threads. A request is good if it
+// is written within the client timeout.
+//   none:      every request goes to the table, failed writes retry up to AWSUtil's limit.
+//   admission: requests past the capacity get a 429 on arrival and write retries draw from the shared retry budget.
+// The retry budget is read when AWSUtil loads, so run each mode in its own JVM.
+// Usage: AdmissionControlBenchmark [none|admission] [writeCapacityUnits] [stepSeconds] [containerThreads]
+public class AdmissionControlBenchmark {
+    private static final String resortName = "SilverMt";
+    private static final int skierCount = 50000;
+    private static final long latencyMS = 5;
+    private static final long clientTimeoutMS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean isAdmitted = args.length > 0 && args[0].equals("admission");
+        double writeCapacityUnits = args.length > 1 ? Double.parseDouble(args[1]) : 500;
+        int stepSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int containerThreads = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        // The SDK clients are built when AWSUtil loads but never called, the stand-ins take their place.
+        System.setProperty("aws.region", "us-east-1");
+        System.setProperty("ikkyone.ddbWriteMode", DDBWriteMode.ATOMIC_UPDATE.name());
+        if (!isAdmitted) {
+            // A budget that never runs out.
+            System.setProperty("ikkyone.retryBudget.ratio", "1000");
+            System.setProperty("ikkyone.retryBudget.maxSavedRetries", "1000000");
+        }
+        LocalDynamoDbClient localClient = new LocalDynamoDbClient(latencyMS);
+        localClient.setWriteCapacity(writeCapacityUnits);
+        AWSUtil.useDynamoDbClients(localClient, new LocalDynamoDbAsyncClient(localClient, 1));
+
+        System.out.printf("\n[Admission Control Benchmark] mode=%s capacity=%.0f WCU\n",
+                isAdmitted ? "admission" : "none",
+                writeCapacityUnits);
+        for (double load : new double[] {0.5, 1, 2, 4}) {
+            TokenBucket writeCapacity = isAdmitted ? new TokenBucket(writeCapacityUnits, writeCapacityUnits) : null;
+            run(load * writeCapacityUnits, writeCapacity, localClient, stepSeconds, containerThreads);
+        }
+    }
+
+    private static void run(double offeredRps,
+                            TokenBucket writeCapacity,
+                            LocalDynamoDbClient localClient,
+                            int stepSeconds,
+                            int containerThreads) throws InterruptedException {
+        LongAdder goodCount = new LongAdder();
+        LongAdder lateCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        LongAdder rejectedCount = new LongAdder();
+        long startThrottledCount = localClient.getThrottledCount();
+        long startCallCount = localClient.getCallCount();
+
+        ExecutorService containerPool = Executors.newFixedThreadPool(containerThreads);
+        long intervalNS = (long) (TimeUnit.SECONDS.toNanos(1) / offeredRps);
+        long startNS = System.nanoTime();
+        long endNS = startNS + TimeUnit.SECONDS.toNanos(stepSeconds);
+        for (long nextNS = startNS; nextNS < endNS; nextNS += intervalNS) {
+            long waitNS = nextNS - System.nanoTime();
+            if (waitNS > 0) {
+                LockSupport.parkNanos(waitNS);
+            }
+
+            long arrivalNS = nextNS;
+            containerPool.execute(() -> {
+                if (writeCapacity != null && writeCapacity.tryAcquire(1) > 0) {
+                    rejectedCount.increment();
+                    return;
+                }
+
+                boolean isWritten = AWSUtil.writeToDDB(nextRequest());
+                long latencyMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - arrivalNS);
+                if (!isWritten) {
+                    failedCount.increment();
+                } else if (latencyMS > clientTimeoutMS) {
+                    lateCount.increment();
+                } else {
+                    goodCount.increment();
+                }
+            });
+        }
+        containerPool.shutdown();
+        containerPool.awaitTermination(5, TimeUnit.MINUTES);
+
+        System.out.printf("offered=%5.0f rps goodput=%5.0f rps late=%d failed=%d rejected=%d ddbCalls=%d throttled=%d\n",
+                offeredRps,
+                goodCount.sum() / (double) stepSeconds,
+                lateCount.sum(),
+                failedCount.sum(),
+                rejectedCount.sum(),
+                localClient.getCallCount() - startCallCount,
+                localClient.getThrottledCount() - startThrottledCount);
+    }
+
+    private static SkierPOSTRequest nextRequest() {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+
+        return new SkierPOSTRequest(resortName,
+                rand.nextInt(1, 4),
+                rand.nextInt(1, skierCount + 1),
+                rand.nextInt(1, 421),
+                rand.nextInt(1, 41));
+    }
+}
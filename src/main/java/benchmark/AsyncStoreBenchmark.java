@@ -0,0 +1,157 @@
+package benchmark;
+
+import model.SkierPOSTRequest;
+import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
+import server.IkkyoneServlet;
+import utility.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compares the blocking and async POST paths of the DDB store at high concurrency, against a local DDB stand-in with
+// a fixed per-call latency. The blocking run hands requests to a fixed pool the size of a container thread pool, the
+// async run bounds requests in flight by permits the way the servlet's async mode does.
+// Usage: AsyncStoreBenchmark [concurrency] [containerThreads] [maxInFlight] [latencyMS] [durationSeconds]
+public class AsyncStoreBenchmark {
+    private static final String resortName = "SilverMt";
+    private static final int skierCount = 50000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int containerThreads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long latencyMS = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        int durationSeconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        // The SDK clients are built when AWSUtil loads but never called, the stand-ins take their place.
+        System.setProperty("aws.region", "us-east-1");
+        System.setProperty("ikkyone.queue", "memory");
+        System.setProperty("ikkyone.ddbWriteMode", DDBWriteMode.ATOMIC_UPDATE.name());
+        LocalDynamoDbClient localClient = new LocalDynamoDbClient(latencyMS);
+        AWSUtil.useDynamoDbClients(localClient, new LocalDynamoDbAsyncClient(localClient, 4));
+        SkierStore skierStore = IkkyoneServlet.skierStore;
+
+        runBlocking(skierStore, concurrency, containerThreads, durationSeconds);
+        runAsync(skierStore, concurrency, maxInFlight, durationSeconds);
+    }
+
+    private static void runBlocking(SkierStore skierStore, int concurrency, int containerThreads, int durationSeconds)
+            throws InterruptedException {
+        SynchronizedDescriptiveStatistics latencies = new SynchronizedDescriptiveStatistics();
+        LongAdder failedCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        // Each client issues its next request when the previous one is answered, requests past the pool size wait in
+        // the pool's queue like they would in the container's accept queue.
+        ExecutorService containerPool = Executors.newFixedThreadPool(containerThreads);
+        for (int i = 0; i < concurrency; i++) {
+            submitBlocking(containerPool, skierStore, latencies, failedCount, deadline);
+        }
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        int threadCount = Thread.activeCount();
+        containerPool.shutdown();
+        containerPool.awaitTermination(30, TimeUnit.SECONDS);
+
+        printResult("Blocking, " + containerThreads + " container threads", concurrency, durationSeconds, latencies,
+                failedCount.sum(), 0, threadCount);
+    }
+
+    private static void submitBlocking(ExecutorService containerPool,
+                                       SkierStore skierStore,
+                                       SynchronizedDescriptiveStatistics latencies,
+                                       LongAdder failedCount,
+                                       long deadline) {
+        long startTime = System.nanoTime();
+        try {
+            containerPool.execute(() -> {
+                if (!skierStore.update(nextRequest())) {
+                    failedCount.increment();
+                }
+                latencies.addValue((System.nanoTime() - startTime) / 1_000_000.0);
+
+                if (System.nanoTime() < deadline) {
+                    submitBlocking(containerPool, skierStore, latencies, failedCount, deadline);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The run is over.
+        }
+    }
+
+    private static void runAsync(SkierStore skierStore, int concurrency, int maxInFlight, int durationSeconds)
+            throws InterruptedException {
+        SynchronizedDescriptiveStatistics latencies = new SynchronizedDescriptiveStatistics();
+        LongAdder failedCount = new LongAdder();
+        LongAdder rejectedCount = new LongAdder();
+        Semaphore permits = new Semaphore(maxInFlight);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        for (int i = 0; i < concurrency; i++) {
+            issueAsync(skierStore, permits, latencies, failedCount, rejectedCount, deadline);
+        }
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        int threadCount = Thread.activeCount();
+        permits.acquire(maxInFlight);
+
+        printResult("Async, " + maxInFlight + " permits", concurrency, durationSeconds, latencies,
+                failedCount.sum(), rejectedCount.sum(), threadCount);
+    }
+
+    private static void issueAsync(SkierStore skierStore,
+                                   Semaphore permits,
+                                   SynchronizedDescriptiveStatistics latencies,
+                                   LongAdder failedCount,
+                                   LongAdder rejectedCount,
+                                   long deadline) {
+        // Like the servlet, a request that finds no permit is answered with a 503 and the client gives up on it.
+        if (System.nanoTime() >= deadline) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            rejectedCount.increment();
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        skierStore.updateAsync(nextRequest()).whenComplete((result, error) -> {
+            if (error != null || !result) {
+                failedCount.increment();
+            }
+            latencies.addValue((System.nanoTime() - startTime) / 1_000_000.0);
+            permits.release();
+
+            issueAsync(skierStore, permits, latencies, failedCount, rejectedCount, deadline);
+        });
+    }
+
+    private static SkierPOSTRequest nextRequest() {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+
+        return new SkierPOSTRequest(resortName,
+                rand.nextInt(1, 4),
+                rand.nextInt(1, skierCount + 1),
+                rand.nextInt(1, 421),
+                rand.nextInt(1, 41));
+    }
+
+    private static void printResult(String mode,
+                                    int concurrency,
+                                    int durationSeconds,
+                                    SynchronizedDescriptiveStatistics latencies,
+                                    long failedCount,
+                                    long rejectedCount,
+                                    int threadCount) {
+        System.out.printf("\n[Async Store Benchmark]\nMode: %s\nConcurrency: %d\nThroughput: %d ops/s\n"
+                        + "Mean Latency: %.2f ms\np99 Latency: %.2f ms\nFailed: %d\nRejected: %d\nLive Threads: %d\n",
+                mode,
+                concurrency,
+                latencies.getN() / durationSeconds,
+                latencies.getMean(),
+                latencies.getPercentile(99),
+                failedCount,
+                rejectedCount,
+                threadCount);
+    }
+}
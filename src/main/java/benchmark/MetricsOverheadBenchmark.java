@@ -0,0 +1,142 @@
+package benchmark;
+
+import model.SkierGETRequest;
+import server.SkierRouter;
+import utility.MetricsRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cost the servlet's request metrics add per request: the in-flight counter and a route timer around a request
+// stand-in (routing a GET), at 1 thread and at the given thread count. The clock-only run reads System.nanoTime()
+// twice per request and nothing else, which separates the clock's cost (tens of ns on some VMs) from the registry's.
+// A reader thread takes a snapshot every 100ms the way a /metrics scrape would.
+// Times are per thread, so they grow with threads beyond the cores. MetricsRegistryTest checks the overhead against
+// the clock-only run.
+// Usage: MetricsOverheadBenchmark [threads] [iterationsPerThread]
+public class MetricsOverheadBenchmark {
+    private static final String[][] requests = {
+            {"/resort/day/top10vert", "resort=SilverMt&dayID=1"},
+            {"/skiers/12345/vertical", "resort=SilverMt"},
+            {"/skiers/SilverMt/days/1/skiers/12345", null},
+            {"/skiers/54321/vertical", "resort=SilverMt"}
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Counter inFlightRequests = metrics.counter("http.inFlight");
+        MetricsRegistry.Timer[] routeLatencies = new MetricsRegistry.Timer[SkierRouter.routeCount];
+        for (int i = 0; i < SkierRouter.routeCount; i++) {
+            routeLatencies[i] = metrics.timer("http." + SkierRouter.getRouteName(i));
+        }
+
+        System.out.println("\n[Metrics Overhead Benchmark]");
+        for (int threadCount : new int[] {1, threads}) {
+            // Warm up every path first.
+            run(threadCount, iterations / 4, false, null, null, null);
+            run(threadCount, iterations / 4, true, null, null, null);
+            run(threadCount, iterations / 4, true, inFlightRequests, routeLatencies, metrics);
+
+            double baselineNS = run(threadCount, iterations, false, null, null, null);
+            double clockNS = run(threadCount, iterations, true, null, null, null);
+            double meteredNS = run(threadCount, iterations, true, inFlightRequests, routeLatencies, metrics);
+
+            System.out.printf("%2d threads: %7.1f ns/op bare, %7.1f clock only, %7.1f with metrics"
+                            + " | clock %+6.1f ns/op, registry %+6.1f ns/op\n",
+                    threadCount,
+                    baselineNS,
+                    clockNS,
+                    meteredNS,
+                    clockNS - baselineNS,
+                    meteredNS - clockNS);
+        }
+
+        System.out.printf("Recorded %d requests, in flight at the end: %d\n",
+                metrics.snapshot().get("http.skierResortTotals.count").longValue()
+                        + metrics.snapshot().get("http.topVerticals.count").longValue()
+                        + metrics.snapshot().get("http.skierDayVertical.count").longValue(),
+                inFlightRequests.get());
+    }
+
+    // Returns the mean wall time per request of a thread. Without metrics when inFlightRequests is null.
+    private static double run(int threadCount,
+                              int iterations,
+                              boolean isTimed,
+                              MetricsRegistry.Counter inFlightRequests,
+                              MetricsRegistry.Timer[] routeLatencies,
+                              MetricsRegistry metrics) throws InterruptedException {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threadCount);
+        LongAdder elapsedNS = new LongAdder();
+        LongAdder checksum = new LongAdder();
+
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long sum = 0;
+                long startTime = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    String[] request = requests[i & 3];
+                    if (!isTimed) {
+                        sum += SkierRouter.routeGET(request[0], request[1], new SkierGETRequest());
+                        continue;
+                    }
+                    if (inFlightRequests == null) {
+                        long startTimeNS = System.nanoTime();
+                        sum += SkierRouter.routeGET(request[0], request[1], new SkierGETRequest());
+                        sum += (System.nanoTime() - startTimeNS) & 1;
+                        continue;
+                    }
+
+                    long startTimeNS = System.nanoTime();
+                    inFlightRequests.increment();
+                    int route = SkierRouter.routeGET(request[0], request[1], new SkierGETRequest());
+                    routeLatencies[route].recordSince(startTimeNS);
+                    inFlightRequests.decrement();
+                    sum += route;
+                }
+                elapsedNS.add(System.nanoTime() - startTime);
+                checksum.add(sum);
+                doneLatch.countDown();
+            });
+            thread.start();
+        }
+
+        Thread scraper = null;
+        if (metrics != null) {
+            scraper = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    metrics.toText();
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            scraper.setDaemon(true);
+            scraper.start();
+        }
+
+        startLatch.countDown();
+        doneLatch.await();
+        if (scraper != null) {
+            scraper.interrupt();
+        }
+
+        if (checksum.sum() == 0) {
+            System.out.println("No request was routed.");
+        }
+
+        return (double) elapsedNS.sum() / threadCount / iterations;
+    }
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import model.SkierPOSTRequest;
+import server.SkierPOSTRequestParser;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// Allocation and time per POST body, for the old read-lines / readTree / toString / readValue path against the
+// single pass SkierPOSTRequestParser. Allocation is read from the JVM's per-thread allocation counter.
+// Usage: PostBodyParseBenchmark [iterations]
+public class PostBodyParseBenchmark {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final byte[] body = ("{\"resortID\":\"SilverMt\",\"dayID\":1,\"skierID\":12345,\"time\":217,\"liftID\":21}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        SkierPOSTRequest reusedRequest = new SkierPOSTRequest();
+        String[] errorHolder = new String[1];
+
+        Supplier<SkierPOSTRequest> treePath = () -> {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sb.append(line);
+                }
+                JsonNode node = mapper.readTree(sb.toString());
+                return mapper.readValue(node.toString(), SkierPOSTRequest.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        Supplier<SkierPOSTRequest> streamingPath = () -> {
+            try {
+                SkierPOSTRequest request = new SkierPOSTRequest();
+                SkierPOSTRequestParser.parse(new ByteArrayInputStream(body), request, errorHolder);
+                return request;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        Supplier<SkierPOSTRequest> streamingReusedPath = () -> {
+            try {
+                SkierPOSTRequestParser.parse(new ByteArrayInputStream(body), reusedRequest, errorHolder);
+                return reusedRequest;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        // Both paths must agree before they are compared.
+        if (!treePath.get().equals(streamingPath.get())) {
+            throw new IllegalStateException("Parsers disagree on " + new String(body, StandardCharsets.UTF_8));
+        }
+
+        System.out.println("\n[POST Body Parse Benchmark]");
+        run("readTree + readValue", treePath, iterations);
+        run("Streaming", streamingPath, iterations);
+        run("Streaming, reused ride", streamingReusedPath, iterations);
+    }
+
+    private static void run(String name, Supplier<SkierPOSTRequest> path, int iterations) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadID = Thread.currentThread().getId();
+
+        // Warm up so the JIT has compiled the path before measuring.
+        int checksum = 0;
+        for (int i = 0; i < iterations / 4; i++) {
+            checksum += path.get().getSkierID();
+        }
+
+        long startBytes = threadMXBean.getThreadAllocatedBytes(threadID);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += path.get().getSkierID();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+        System.out.printf("%-24s %8.1f ns/op %8.1f B/op (checksum %d)\n",
+                name,
+                (double) elapsed / iterations,
+                (double) allocated / iterations,
+                checksum);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import listener.QueueBatchConsumer;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import utility.LocalSqsClient;
+import utility.SqsMessageQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Drains a backlog through QueueBatchConsumer against the in-process LocalSqsClient, then leaves the queue idle, and
+// reports throughput, poller scaling and the SQS calls spent in each part.
+// Usage: QueueBatchConsumerBenchmark [messageCount] [handlerLatencyMicros] [idleSeconds]
+public class QueueBatchConsumerBenchmark {
+    private static final String queueName = "IkkyonePOSTQueue";
+
+    public static void main(String[] args) throws InterruptedException {
+        int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long handlerLatencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        int idleSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        LocalSqsClient sqsClient = new LocalSqsClient(30_000);
+        String queueUrl = sqsClient.getQueueUrl(r -> r.queueName(queueName)).queueUrl();
+        for (int i = 0; i < messageCount; i++) {
+            sqsClient.sendMessage(SendMessageRequest.builder()
+                    .queueUrl(queueUrl)
+                    .messageBody("{\"resortID\":\"SilverMt\",\"dayID\":1,\"skierID\":" + i + ",\"time\":1,\"liftID\":1}")
+                    .build());
+        }
+
+        // Simulate the DDB write with a fixed handler latency.
+        QueueBatchConsumer consumer = new QueueBatchConsumer(new SqsMessageQueue(sqsClient, queueName),
+                messageBody -> {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(handlerLatencyMicros));
+                    return true;
+                },
+                2,
+                60,
+                100,
+                2,
+                500);
+
+        long startTime = System.currentTimeMillis();
+        consumer.start();
+
+        int maxPollerCount = 0;
+        while (consumer.getHandledMessageCount() < messageCount) {
+            maxPollerCount = Math.max(maxPollerCount, consumer.getActivePollerCount());
+            Thread.sleep(10);
+        }
+        long drainTime = Math.max(1, System.currentTimeMillis() - startTime);
+        long drainReceiveCalls = sqsClient.getReceiveCallCount();
+        long drainDeleteCalls = sqsClient.getDeleteCallCount();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(idleSeconds));
+        long idleReceiveCalls = sqsClient.getReceiveCallCount() - drainReceiveCalls;
+        int idlePollerCount = consumer.getActivePollerCount();
+
+        consumer.stop();
+
+        System.out.printf("\n[Queue Batch Consumer Benchmark]\nMessages: %d\nDrain Time: %d ms\nThroughput: %d msg/s\n",
+                messageCount,
+                drainTime,
+                messageCount * 1000L / drainTime);
+        System.out.printf("Max Pollers: %d\nReceive Calls: %d\nDelete Calls: %d\n",
+                maxPollerCount,
+                drainReceiveCalls,
+                drainDeleteCalls);
+        System.out.printf("Idle Pollers after %d s: %d\nReceive Calls while idle: %d\n",
+                idleSeconds,
+                idlePollerCount,
+                idleReceiveCalls);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import server.SkierVerticalCache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Vertical GETs for a few hot skiers from many threads, through SkierVerticalCache with a loader that takes a DDB round
+// trip. Every cached entry is invalidated right away by a writer thread, the way a skier that is riding keeps changing,
+// so most lookups miss and concurrent misses on a key share one load.
+// Usage: ReadCoalescingBenchmark [threadCount] [durationSeconds] [hotSkierCount] [latencyMS]
+public class ReadCoalescingBenchmark {
+    private static final String resortName = "SilverMt";
+
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int hotSkierCount = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long latencyMS = args.length > 3 ? Long.parseLong(args[3]) : 10;
+
+        SkierVerticalCache<Map<String, Integer>> verticalCache = new SkierVerticalCache<>(100000, 5000);
+        Map<String, Integer> dailyVerticals = Collections.singletonMap("1", 1000);
+        LongAdder lookupCount = new LongAdder();
+        LongAdder storeReadCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount + 1);
+        executorService.submit(() -> {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                verticalCache.invalidate(Integer.toString(rand.nextInt(1, hotSkierCount + 1)), resortName);
+                TimeUnit.MICROSECONDS.sleep(100);
+            }
+            return null;
+        });
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                ThreadLocalRandom rand = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    verticalCache.get(Integer.toString(rand.nextInt(1, hotSkierCount + 1)), resortName, () -> {
+                        storeReadCount.increment();
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(latencyMS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return dailyVerticals;
+                    });
+                    lookupCount.increment();
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+
+        System.out.printf("\n[Read Coalescing Benchmark]\nLookups: %d (%.0f/s)\nStore reads: %d\nCollapsed: %d\nCache: %s\n",
+                lookupCount.sum(),
+                lookupCount.sum() / (double) durationSeconds,
+                storeReadCount.sum(),
+                verticalCache.getCollapsedLoadCount(),
+                verticalCache.getStatsSummary());
+    }
+}
@@ -0,0 +1,207 @@
+package benchmark;
+
+import base.BlockingRequestEngine;
+import base.NioRequestEngine;
+import base.RequestEngine;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compares the blocking and NIO request engines driving a closed loop of concurrent POSTs against a local server that
+// answers every request after a fixed delay. Reports throughput and throughput per client core, where client CPU is
+// the CPU time of every thread except the server's.
+// Usage: RequestEngineBenchmark [concurrency] [serverDelayMS] [durationSeconds] [ioThreads]
+public class RequestEngineBenchmark {
+    private static final String serverThreadPrefix = "bench-server";
+    private static final int port = 18080;
+    private static final String targetUrl = "http://localhost:" + port + "/IntelliJ_war/skiers/liftrides";
+    private static final byte[] body = "{\"resortID\":\"SilverMt\",\"dayID\":1,\"skierID\":4242,\"time\":217,\"liftID\":21}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long serverDelayMS = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int ioThreadCount = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        EventLoopGroup serverGroup = startServer(serverDelayMS);
+        try {
+            MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+            HttpClient client = new HttpClient(connectionManager);
+            HttpConnectionManagerParams params = connectionManager.getParams();
+            params.setMaxTotalConnections(concurrency);
+            params.setDefaultMaxConnectionsPerHost(concurrency);
+
+            runBlocking(new BlockingRequestEngine(client), concurrency, durationSeconds);
+            connectionManager.shutdown();
+
+            runNio(new NioRequestEngine(ioThreadCount, concurrency), concurrency, durationSeconds);
+        } finally {
+            serverGroup.shutdownGracefully().awaitUninterruptibly();
+        }
+    }
+
+    private static void runBlocking(RequestEngine engine, int concurrency, int durationSeconds) throws Exception {
+        LongAdder completedCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        CountDownLatch finishedThreads = new CountDownLatch(concurrency);
+
+        Map<Long, Long> startCpuNS = getClientThreadCpuNS();
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            executorService.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    countResult(engine.send(targetUrl, body, body.length).join(), completedCount, failedCount);
+                }
+                finishedThreads.countDown();
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        int threadCount = Thread.activeCount();
+        // Read CPU time while the pool threads are still alive.
+        finishedThreads.await(30, TimeUnit.SECONDS);
+        long clientCpuNS = getClientCpuNSSince(startCpuNS);
+        executorService.shutdown();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+        engine.close();
+
+        printResult("Blocking", concurrency, durationSeconds, completedCount.sum(), failedCount.sum(), clientCpuNS, threadCount);
+    }
+
+    private static void runNio(RequestEngine engine, int concurrency, int durationSeconds) throws Exception {
+        LongAdder completedCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CountDownLatch finishedChains = new CountDownLatch(concurrency);
+
+        Map<Long, Long> startCpuNS = getClientThreadCpuNS();
+        for (int i = 0; i < concurrency; i++) {
+            sendNext(engine, deadline, completedCount, failedCount, finishedChains);
+        }
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        int threadCount = Thread.activeCount();
+        finishedChains.await(30, TimeUnit.SECONDS);
+        long clientCpuNS = getClientCpuNSSince(startCpuNS);
+        engine.close();
+
+        printResult("NIO", concurrency, durationSeconds, completedCount.sum(), failedCount.sum(), clientCpuNS, threadCount);
+    }
+
+    // Each chain sends its next request when the previous one is answered, like one blocking thread does.
+    private static void sendNext(RequestEngine engine,
+                                 long deadline,
+                                 LongAdder completedCount,
+                                 LongAdder failedCount,
+                                 CountDownLatch finishedChains) {
+        if (System.nanoTime() >= deadline) {
+            finishedChains.countDown();
+            return;
+        }
+
+        engine.send(targetUrl, body, body.length).whenComplete((statusCode, error) -> {
+            countResult(statusCode, completedCount, failedCount);
+            sendNext(engine, deadline, completedCount, failedCount, finishedChains);
+        });
+    }
+
+    private static void countResult(Integer statusCode, LongAdder completedCount, LongAdder failedCount) {
+        if (statusCode != null && statusCode == 200) {
+            completedCount.increment();
+        } else {
+            failedCount.increment();
+        }
+    }
+
+    private static EventLoopGroup startServer(long delayMS) throws InterruptedException {
+        EventLoopGroup serverGroup = new NioEventLoopGroup(0, new DefaultThreadFactory(serverThreadPrefix));
+
+        new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpServerCodec(),
+                                new HttpObjectAggregator(64 * 1024),
+                                new SimpleChannelInboundHandler<FullHttpRequest>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                                        ctx.executor().schedule(() -> {
+                                            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                                                    HttpResponseStatus.OK,
+                                                    Unpooled.EMPTY_BUFFER);
+                                            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                                            ctx.writeAndFlush(response);
+                                        }, delayMS, TimeUnit.MILLISECONDS);
+                                    }
+                                });
+                    }
+                })
+                .bind(port)
+                .sync();
+
+        return serverGroup;
+    }
+
+    private static Map<Long, Long> getClientThreadCpuNS() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> cpuNS = new HashMap<>();
+
+        for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (threadInfo != null && !threadInfo.getThreadName().startsWith(serverThreadPrefix)) {
+                cpuNS.put(threadInfo.getThreadId(), Math.max(0, threadMXBean.getThreadCpuTime(threadInfo.getThreadId())));
+            }
+        }
+
+        return cpuNS;
+    }
+
+    private static long getClientCpuNSSince(Map<Long, Long> startCpuNS) {
+        long clientCpuNS = 0;
+        for (Map.Entry<Long, Long> entry : getClientThreadCpuNS().entrySet()) {
+            clientCpuNS += entry.getValue() - startCpuNS.getOrDefault(entry.getKey(), 0L);
+        }
+
+        return clientCpuNS;
+    }
+
+    private static void printResult(String engineName,
+                                    int concurrency,
+                                    int durationSeconds,
+                                    long completedCount,
+                                    long failedCount,
+                                    long clientCpuNS,
+                                    int threadCount) {
+        double clientCpuSeconds = clientCpuNS / 1e9;
+
+        System.out.printf("\n[%s Engine]\nConcurrency: %d\nThroughput: %d rps\nClient CPU: %.2f cores\nThroughput per Client Core: %.0f rps\nFailed Requests: %d\nLive Threads: %d\n",
+                engineName,
+                concurrency,
+                completedCount / durationSeconds,
+                clientCpuSeconds / durationSeconds,
+                clientCpuSeconds == 0 ? 0.0 : completedCount / clientCpuSeconds,
+                failedCount,
+                threadCount);
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import model.MergedLiftRides;
+import model.SkierPOSTRequest;
+import utility.AWSUtil;
+import utility.DDBWriteMode;
+import utility.LocalDynamoDbAsyncClient;
+import utility.LocalDynamoDbClient;
+
+import java.util.Map;
+import java.util.Optional;
+
+// Cost of a skier resort total GET on the store as the skier's days grow, through AWSUtil on a zero-latency local table.
+//   sum:       read the whole DailyTotalVerticals map and sum it, what the GET used to do.
+//   projected: read only the ResortTotalVertical attribute the writes keep.
+// The local table builds the response attributes like the SDK would unmarshal them, so the difference is the per-day
+// work left out of a projected read. DDB still charges both by the item's size.
+// Usage: ResortTotalReadBenchmark [readCount]
+public class ResortTotalReadBenchmark {
+    private static final String resortName = "SilverMt";
+
+    public static void main(String[] args) {
+        int readCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        // The SDK clients are built when AWSUtil loads but never called, the stand-ins take their place.
+        System.setProperty("aws.region", "us-east-1");
+        AWSUtil.setDDBWriteMode(DDBWriteMode.ATOMIC_UPDATE);
+        LocalDynamoDbClient localClient = new LocalDynamoDbClient(0);
+        AWSUtil.useDynamoDbClients(localClient, new LocalDynamoDbAsyncClient(localClient, 1));
+
+        System.out.printf("\n[Resort Total Read Benchmark] reads=%d\n", readCount);
+        int skierID = 1;
+        for (int dayCount : new int[] {1, 10, 100, 366}) {
+            MergedLiftRides rides = new MergedLiftRides(skierID, resortName);
+            for (int dayID = 1; dayID <= dayCount; dayID++) {
+                rides.merge(new SkierPOSTRequest(resortName, dayID, skierID, dayID, dayID % 40 + 1));
+            }
+            AWSUtil.writeMergedRidesToDDB(rides);
+            String skierIDStr = Integer.toString(skierID++);
+            if (AWSUtil.getResortTotalVerticalFromDB(skierIDStr, resortName).get() != rides.getTotalVertical()) {
+                throw new IllegalStateException("Kept resort total differs from the rides written.");
+            }
+
+            // Warm up both paths before timing either.
+            run(skierIDStr, readCount / 10, false);
+            run(skierIDStr, readCount / 10, true);
+            long summedNS = run(skierIDStr, readCount, false);
+            long projectedNS = run(skierIDStr, readCount, true);
+
+            System.out.printf("days=%3d total=%7d sum=%6d ns/op projected=%4d ns/op\n",
+                    dayCount,
+                    rides.getTotalVertical(),
+                    summedNS / readCount,
+                    projectedNS / readCount);
+        }
+    }
+
+    private static long run(String skierID, int readCount, boolean isProjected) {
+        long checksum = 0;
+        long startNS = System.nanoTime();
+        for (int i = 0; i < readCount; i++) {
+            if (isProjected) {
+                Optional<Integer> resortTotalVertical = AWSUtil.getResortTotalVerticalFromDB(skierID, resortName);
+                checksum += resortTotalVertical.get();
+            } else {
+                Map<String, Integer> dailyVerticals = AWSUtil.getDailyVerticalsFromDB(skierID, resortName);
+                for (Integer dailyVertical : dailyVerticals.values()) {
+                    checksum += dailyVertical;
+                }
+            }
+        }
+        long elapsedNS = System.nanoTime() - startNS;
+
+        if (checksum == 0) {
+            throw new IllegalStateException("Nothing was read.");
+        }
+        return elapsedNS;
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import model.SkierGETRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import server.SkierRouter;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Routing cost per request for the old split / replaceAll / URLEncodedUtils checks against SkierRouter, over a mix
+// of the three GET APIs and the POST API. Allocation is read from the JVM's per-thread allocation counter.
+// Usage: RouterBenchmark [iterations]
+public class RouterBenchmark {
+    private static final String[][] requests = {
+            {"/resort/day/top10vert", "resort=SilverMt&dayID=1"},
+            {"/skiers/12345/vertical", "resort=SilverMt"},
+            {"/skiers/Silver%20Mt/days/1/skiers/12345", null},
+            {"/skiers/liftrides", null}
+    };
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+        System.out.println("\n[Router Benchmark]");
+        run("split + URLEncodedUtils", RouterBenchmark::routeWithSplit, iterations);
+        run("SkierRouter", RouterBenchmark::routeWithTable, iterations);
+    }
+
+    private static int routeWithTable(String path, String query) {
+        if (query == null && path.endsWith("liftrides")) {
+            return SkierRouter.routePOST(path);
+        }
+        return SkierRouter.routeGET(path, query, new SkierGETRequest());
+    }
+
+    // The checks the servlet used to run, without the logging and the response writes.
+    private static int routeWithSplit(String path, String query) {
+        String[] urlPath = path.split("/");
+        SkierGETRequest request = new SkierGETRequest();
+
+        if (urlPath.length == 3) {
+            return urlPath[1].equals("skiers") && urlPath[2].equals("liftrides") ? 4 : 0;
+        } else if (urlPath.length == 4) {
+            List<NameValuePair> params = URLEncodedUtils.parse(query, StandardCharsets.UTF_8);
+            for (NameValuePair param : params) {
+                if (param.getName().equals("resort")) {
+                    request.resortID = param.getValue();
+                } else if (param.getName().equals("dayID")) {
+                    request.dayID = Integer.parseInt(param.getValue());
+                }
+            }
+            if (urlPath[1].equals("resort") && urlPath[2].equals("day") && urlPath[3].equals("top10vert")) {
+                return 1;
+            }
+            request.skierID = urlPath[2];
+            return urlPath[1].equals("skiers") && urlPath[3].equals("vertical") ? 2 : 0;
+        } else if (urlPath.length == 7 && urlPath[1].equals("skiers") && urlPath[3].equals("days") && urlPath[5].equals("skiers")) {
+            request.resortID = urlPath[2].replaceAll("%20", " ");
+            request.dayID = Integer.parseInt(urlPath[4].replaceAll("%20", " "));
+            request.skierID = urlPath[6].replaceAll("%20", " ");
+            return 3;
+        }
+
+        return 0;
+    }
+
+    private interface Router {
+        int route(String path, String query);
+    }
+
+    private static void run(String name, Router router, int iterations) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadID = Thread.currentThread().getId();
+
+        // Warm up so the JIT has compiled the path before measuring.
+        long checksum = 0;
+        for (int i = 0; i < iterations / 4; i++) {
+            String[] request = requests[i & 3];
+            checksum += router.route(request[0], request[1]);
+        }
+
+        long startBytes = threadMXBean.getThreadAllocatedBytes(threadID);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String[] request = requests[i & 3];
+            checksum += router.route(request[0], request[1]);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+        System.out.printf("%-24s %8.1f ns/op %8.1f B/op (checksum %d)\n",
+                name,
+                (double) elapsed / iterations,
+                (double) allocated / iterations,
+                checksum);
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import model.SkierPOSTRequest;
+import server.IkkyoneServlet;
+import utility.SkierStore;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives the servlet's SkierStore with a POST/GET mix, by default against the in-memory backend.
+// Usage: SkierStoreBenchmark [threadCount] [durationSeconds] [skierCount] [getPercentage] [store]
+public class SkierStoreBenchmark {
+    private static final String resortName = "SilverMt";
+    private static final int skiDayNum = 1;
+    private static final int skiLiftCount = 40;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int skierCount = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+        int getPercentage = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        // Must be set before the servlet class initializes its backends.
+        System.setProperty("ikkyone.store", args.length > 4 ? args[4] : "memory");
+        System.setProperty("ikkyone.queue", "memory");
+        SkierStore skierStore = IkkyoneServlet.skierStore;
+
+        LongAdder postCount = new LongAdder();
+        LongAdder getCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                ThreadLocalRandom rand = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int skierID = rand.nextInt(1, skierCount + 1);
+
+                    if (rand.nextInt(100) < getPercentage) {
+                        Map<String, Integer> dailyVerticals = skierStore.getDailyVerticals(Integer.toString(skierID), resortName);
+                        if (dailyVerticals == null) {
+                            failedCount.increment();
+                        }
+                        getCount.increment();
+                    } else {
+                        SkierPOSTRequest skierRequest = new SkierPOSTRequest(resortName,
+                                skiDayNum,
+                                skierID,
+                                rand.nextInt(1, 421),
+                                rand.nextInt(1, skiLiftCount + 1));
+                        if (!skierStore.update(skierRequest)) {
+                            failedCount.increment();
+                        }
+                        postCount.increment();
+                    }
+                }
+            });
+        }
+
+        executorService.shutdown();
+        executorService.awaitTermination(durationSeconds + 10, TimeUnit.SECONDS);
+
+        System.out.printf("\n[Skier Store Benchmark]\nStore: %s\nThreads: %d\nPOST Throughput: %d ops/s\nGET Throughput: %d ops/s\nFailed Operations: %d\n",
+                skierStore.getClass().getSimpleName(),
+                threadCount,
+                postCount.sum() / durationSeconds,
+                getCount.sum() / durationSeconds,
+                failedCount.sum());
+    }
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import model.SkierVertical;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import server.TopVerticalIndex;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Measures /resort/day/top10vert lookup latency while writer threads replay POST load into the index.
+// Usage: TopVerticalIndexBenchmark [writerThreads] [readerThreads] [durationSeconds] [skierCount]
+public class TopVerticalIndexBenchmark {
+    private static final String resortName = "SilverMt";
+    private static final int skiDayNum = 1;
+    private static final int skiLiftCount = 40;
+    private static final int maxSamplesPerReader = 1_000_000;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int writerThreadCount = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int readerThreadCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int skierCount = args.length > 3 ? Integer.parseInt(args[3]) : 50000;
+
+        TopVerticalIndex index = new TopVerticalIndex(10, 1024);
+        // Stand-in for the authoritative daily totals kept in DDB.
+        AtomicIntegerArray dailyTotals = new AtomicIntegerArray(skierCount + 1);
+        AtomicLong postCount = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(writerThreadCount + readerThreadCount);
+
+        for (int i = 0; i < writerThreadCount; i++) {
+            executorService.submit(() -> {
+                ThreadLocalRandom rand = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int skierID = rand.nextInt(1, skierCount + 1);
+                    int liftID = rand.nextInt(1, skiLiftCount + 1);
+                    int newTotal = dailyTotals.addAndGet(skierID, liftID * 10);
+
+                    index.offer(resortName, skiDayNum, skierID, newTotal);
+                    postCount.incrementAndGet();
+                }
+            });
+        }
+
+        CompletionService<long[]> readers = new ExecutorCompletionService<>(executorService);
+        for (int i = 0; i < readerThreadCount; i++) {
+            readers.submit(() -> {
+                long[] latencies = new long[maxSamplesPerReader];
+                int samples = 0;
+                while (System.nanoTime() < deadline && samples < latencies.length) {
+                    long startTime = System.nanoTime();
+                    List<SkierVertical> topVerticals = index.getTopK(resortName, skiDayNum);
+                    latencies[samples++] = System.nanoTime() - startTime;
+
+                    if (topVerticals.size() > 10) {
+                        throw new IllegalStateException("Index returned more than K entries.");
+                    }
+                }
+
+                long[] result = new long[samples];
+                System.arraycopy(latencies, 0, result, 0, samples);
+                return result;
+            });
+        }
+
+        DescriptiveStatistics readStats = new DescriptiveStatistics();
+        for (int i = 0; i < readerThreadCount; i++) {
+            for (long latency : readers.take().get()) {
+                readStats.addValue(latency / 1000.0);
+            }
+        }
+
+        executorService.shutdown();
+        executorService.awaitTermination(durationSeconds + 10, TimeUnit.SECONDS);
+
+        System.out.printf("\n[Top10Vert Index Benchmark]\nWriter Threads: %d\nReader Threads: %d\nPOST Throughput: %d rps\n",
+                writerThreadCount,
+                readerThreadCount,
+                postCount.get() / durationSeconds);
+        System.out.printf("Lookups: %d\nMedian lookup time: %f us\nP99 lookup time: %f us\nMax lookup time: %f us\n",
+                readStats.getN(),
+                readStats.getPercentile(50),
+                readStats.getPercentile(99),
+                readStats.getMax());
+        System.out.printf("Top verticals: %s\n", index.getTopK(resortName, skiDayNum));
+    }
+}
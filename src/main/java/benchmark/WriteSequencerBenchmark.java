@@ -0,0 +1,126 @@
+package benchmark;
+
+import model.SkierPOSTRequest;
+import utility.SkierWriteSequencer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Concurrent read-modify-writes on a small set of hot skiers, written one ride at a time and through
+// SkierWriteSequencer. The item store is a map of per-item versions: a write reads the version, waits the round trip,
+// and fails its condition if another write landed in between, then backs off and retries like AWSUtil does.
+// Usage: WriteSequencerBenchmark [threadCount] [durationSeconds] [skierCount] [latencyMS]
+public class WriteSequencerBenchmark {
+    private static final String resortName = "SilverMt";
+    private static final int maxRetries = 5;
+    private static final long retryWaitTimeBaseMS = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int skierCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long latencyMS = args.length > 3 ? Long.parseLong(args[3]) : 5;
+
+        System.out.println("\n[Write Sequencer Benchmark]");
+        run("One ride per write", new VersionedItems(latencyMS), false, threadCount, durationSeconds, skierCount);
+        run("SkierWriteSequencer", new VersionedItems(latencyMS), true, threadCount, durationSeconds, skierCount);
+    }
+
+    private static void run(String name,
+                            VersionedItems items,
+                            boolean isSequenced,
+                            int threadCount,
+                            int durationSeconds,
+                            int skierCount) throws InterruptedException {
+        SkierWriteSequencer writeSequencer = isSequenced ? new SkierWriteSequencer(64, items::write) : null;
+        LongAdder rideCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                ThreadLocalRandom rand = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    // Square of a uniform draw, the low skier IDs get most of the rides.
+                    double r = rand.nextDouble();
+                    SkierPOSTRequest ride = new SkierPOSTRequest(resortName,
+                            1,
+                            1 + (int) (r * r * skierCount),
+                            rand.nextInt(1, 421),
+                            rand.nextInt(1, 41));
+
+                    boolean isWritten = writeSequencer == null
+                            ? items.write(Collections.singletonList(ride))
+                            : writeSequencer.write(ride);
+                    rideCount.increment();
+                    if (!isWritten) {
+                        failedCount.increment();
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+
+        System.out.printf("%-20s rides=%d (%.0f/s) failed=%d conditionalWrites=%d conflicts=%d\n",
+                name,
+                rideCount.sum(),
+                rideCount.sum() / (double) durationSeconds,
+                failedCount.sum(),
+                items.writeCount.sum(),
+                items.conflictCount.sum());
+        if (writeSequencer != null) {
+            System.out.println("Sequencer stats: " + writeSequencer.getStatsSummary());
+        }
+    }
+
+    // Item versions keyed like the table, a conditional write succeeds only on the version it read.
+    private static class VersionedItems {
+        private final long latencyMS;
+        private final Map<String, Long> versions = new ConcurrentHashMap<>();
+        private final LongAdder writeCount = new LongAdder();
+        private final LongAdder conflictCount = new LongAdder();
+
+        VersionedItems(long latencyMS) {
+            this.latencyMS = latencyMS;
+        }
+
+        boolean write(List<SkierPOSTRequest> rides) {
+            String key = rides.get(0).getSkierID() + "/" + rides.get(0).getResortID();
+            for (int i = 0; i < maxRetries; i++) {
+                this.writeCount.increment();
+                long version = this.versions.getOrDefault(key, 0L);
+                // The GetItem, then the conditional write.
+                sleep(this.latencyMS);
+                sleep(this.latencyMS);
+                boolean isWritten = version == 0
+                        ? this.versions.putIfAbsent(key, 1L) == null
+                        : this.versions.replace(key, version, version + 1);
+                if (isWritten) {
+                    return true;
+                }
+                this.conflictCount.increment();
+                // Same backoff as AWSUtil.sleepExponentially.
+                sleep(Math.max(1, retryWaitTimeBaseMS * 2 * i));
+            }
+
+            return false;
+        }
+
+        private static void sleep(long ms) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
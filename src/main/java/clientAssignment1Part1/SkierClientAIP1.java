@@ -1,10 +1,15 @@
 package clientAssignment1Part1;
 
+import base.OpenLoopProfile;
+import base.ReplayProfile;
+import base.RequestEngineType;
 import base.SkierClientBase;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import base.WorkloadDistribution;
+import model.PhasePlan;
 import org.kohsuke.args4j.CmdLineException;
 import utility.SkierCmdLineHelper;
 
+import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 
 public class SkierClientAIP1 extends SkierClientBase {
@@ -26,7 +31,7 @@ public class SkierClientAIP1 extends SkierClientBase {
                 resortName);
     }
 
-    public static void main(String[] args) throws JsonProcessingException, InterruptedException, ExecutionException, CmdLineException {
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException, CmdLineException {
         SkierCmdLineHelper.CommandLineArgs parsedArgs = SkierCmdLineHelper.parseCommandLineArgs(args);
 
         SkierClientAIP1 client = new SkierClientAIP1(parsedArgs.serverAddr,
@@ -37,7 +42,14 @@ public class SkierClientAIP1 extends SkierClientBase {
                 parsedArgs.skiLiftCount,
                 parsedArgs.skiDay,
                 parsedArgs.resortName);
+        client.setReplayProfile(ReplayProfile.from(parsedArgs));
+        client.setWorkloadDistribution(WorkloadDistribution.from(parsedArgs));
+        client.setOpenLoopProfile(OpenLoopProfile.from(parsedArgs));
+        client.useRequestEngine(RequestEngineType.valueOf(parsedArgs.requestEngine.toUpperCase()), parsedArgs.ioThreadCount);
+        client.setPhasePlan(PhasePlan.load(parsedArgs.phasePlanPath));
+        client.setLiveReport(parsedArgs.liveReportIntervalMS, "liveStats.csv");
 
         client.startLoadSimulation();
+        client.close();
     }
 }
@@ -0,0 +1,199 @@
+package clientAssignment1Part2;
+
+import model.RequestType;
+import org.kohsuke.args4j.CmdLineException;
+import utility.LatencyHistogram;
+import utility.SkierCmdLineHelper;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Splits one client run across several LoadWorker processes on this machine and merges their results.
+// Every worker gets a contiguous range of the skier IDs and an equal share of the threads (and of the open-loop rate),
+// and runs the same phase plan. The coordinator hands out the assignments once all workers are connected, with a
+// common start time a moment ahead so that the phases line up, then adds up the workers' counters and latency
+// histograms into one summary. Takes the SkierClientA1P2 options plus -workers, -coordinatorPort and -externalWorkers.
+// Replays are not split, every worker would send the whole capture, so -replayPath is refused here.
+public class LoadCoordinator {
+    final static String protocolVersion = "ikkyone-load-worker-1";
+
+    private final static int acceptTimeoutMS = 60_000;
+    private final static long startDelayMS = 2_000;
+    // Workers exit right after sending their results, one still running past this is destroyed.
+    private final static long workerExitTimeoutMS = 10_000;
+    // Added to the expected run time for a worker's results to arrive, past that the worker counts as failed.
+    private final static long workerResultMarginMS = 60_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException, CmdLineException {
+        SkierCmdLineHelper.CommandLineArgs parsedArgs = SkierCmdLineHelper.parseCommandLineArgs(args);
+        if (parsedArgs.replayPath != null) {
+            throw new IllegalArgumentException("-replayPath is not supported by the coordinator, replay with SkierClientA1P2.");
+        }
+        int workerCount = parsedArgs.workerCount;
+
+        List<Socket> workerSockets = new ArrayList<>();
+        List<Process> workerProcesses = new ArrayList<>();
+
+        // Whatever goes wrong, no worker process is left running behind the coordinator.
+        try {
+            try (ServerSocket serverSocket = new ServerSocket(parsedArgs.coordinatorPort, workerCount, InetAddress.getLoopbackAddress())) {
+                serverSocket.setSoTimeout(acceptTimeoutMS);
+
+                if (!parsedArgs.hasExternalWorkers) {
+                    for (int i = 0; i < workerCount; i++) {
+                        workerProcesses.add(startWorkerProcess(parsedArgs.coordinatorPort));
+                    }
+                }
+
+                System.out.printf("Waiting for %d workers on port %d\n", workerCount, parsedArgs.coordinatorPort);
+                for (int i = 0; i < workerCount; i++) {
+                    Socket workerSocket = serverSocket.accept();
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(workerSocket.getInputStream()));
+                    if (!protocolVersion.equals(in.readUTF())) {
+                        throw new IOException("Unexpected worker protocol from " + workerSocket.getRemoteSocketAddress());
+                    }
+                    workerSockets.add(workerSocket);
+                }
+            }
+
+            sendAssignments(parsedArgs, args, workerSockets);
+            int resultTimeoutMS = getResultTimeoutMS(parsedArgs);
+            for (Socket workerSocket : workerSockets) {
+                workerSocket.setSoTimeout(resultTimeoutMS);
+            }
+            mergeResults(workerSockets);
+
+            for (Process workerProcess : workerProcesses) {
+                workerProcess.waitFor(workerExitTimeoutMS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            for (Process workerProcess : workerProcesses) {
+                if (workerProcess.isAlive()) {
+                    workerProcess.destroy();
+                }
+            }
+        }
+    }
+
+    // Open-loop runs last as long as their schedule. A phase plan is a request count, so its run time is bounded by
+    // -workerTimeoutSeconds instead.
+    private static int getResultTimeoutMS(SkierCmdLineHelper.CommandLineArgs parsedArgs) {
+        long runSeconds = parsedArgs.openLoopRPS > 0
+                ? parsedArgs.openLoopRampSeconds + parsedArgs.openLoopDurationSeconds
+                : parsedArgs.workerTimeoutSeconds;
+        long timeoutMS = startDelayMS + TimeUnit.SECONDS.toMillis(runSeconds) + workerResultMarginMS;
+
+        return (int) Math.min(Integer.MAX_VALUE, timeoutMS);
+    }
+
+    // A worker that crashes, disconnects or sends nothing before the result timeout is reported and left out, the results of the others are still merged.
+    // Worker i is the one that got assignment i.
+    private static void mergeResults(List<Socket> workerSockets) {
+        int totalRequestSent = 0;
+        int successfulRequestCount = 0;
+        int failedRequestCount = 0;
+        long wallTimeMS = 0;
+        LatencyHistogram[] histograms = new LatencyHistogram[RequestType.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        List<Integer> failedWorkers = new ArrayList<>();
+
+        for (int i = 0; i < workerSockets.size(); i++) {
+            Socket workerSocket = workerSockets.get(i);
+            // Read the whole result before merging any of it, a worker that fails halfway adds nothing.
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(workerSocket.getInputStream()))) {
+                int workerRequestSent = in.readInt();
+                int workerSuccessfulRequestCount = in.readInt();
+                int workerFailedRequestCount = in.readInt();
+                long workerWallTimeMS = in.readLong();
+                LatencyHistogram[] workerHistograms = new LatencyHistogram[histograms.length];
+                for (int j = 0; j < workerHistograms.length; j++) {
+                    workerHistograms[j] = LatencyHistogram.readFrom(in);
+                }
+
+                totalRequestSent += workerRequestSent;
+                successfulRequestCount += workerSuccessfulRequestCount;
+                failedRequestCount += workerFailedRequestCount;
+                // Workers start together, so the run took as long as the slowest one.
+                wallTimeMS = Math.max(wallTimeMS, workerWallTimeMS);
+                for (int j = 0; j < histograms.length; j++) {
+                    histograms[j].add(workerHistograms[j]);
+                }
+            } catch (IOException e) {
+                failedWorkers.add(i);
+                System.err.printf("Worker %d (%s) failed, its results are left out: %s\n",
+                        i,
+                        workerSocket.getRemoteSocketAddress(),
+                        e);
+            }
+        }
+
+        System.out.printf("\n[Distributed Execution Summary]\nWorkers: %d\nFailed Workers: %s\nTotal Requests: %d\nSuccessful Requests: %d\nFailed Requests: %d\nWall Time: %.1f seconds\nThroughput: %.0f rps\n",
+                workerSockets.size(),
+                failedWorkers.isEmpty() ? "none" : failedWorkers.toString(),
+                totalRequestSent,
+                successfulRequestCount,
+                failedRequestCount,
+                wallTimeMS / 1000.0,
+                wallTimeMS == 0 ? 0.0 : totalRequestSent * 1000.0 / wallTimeMS);
+
+        SkierClientA1P2.displayStats(histograms);
+    }
+
+    // The workers get the coordinator's own arguments, with the later options overriding their share of the load.
+    private static void sendAssignments(SkierCmdLineHelper.CommandLineArgs parsedArgs,
+                                        String[] args,
+                                        List<Socket> workerSockets) throws IOException {
+        int workerCount = workerSockets.size();
+        int skiersPerWorker = parsedArgs.skierCount / workerCount;
+        long startTime = System.currentTimeMillis() + startDelayMS;
+
+        for (int i = 0; i < workerCount; i++) {
+            // The last worker also takes the skiers that do not split evenly.
+            int firstSkierID = 1 + i * skiersPerWorker;
+            int skierCount = i == workerCount - 1 ? parsedArgs.skierCount - i * skiersPerWorker : skiersPerWorker;
+
+            List<String> workerArgs = new ArrayList<>(Arrays.asList(args));
+            workerArgs.addAll(Arrays.asList(
+                    "-skierCount", Integer.toString(skierCount),
+                    "-maxThreadCount", Integer.toString(Math.max(1, parsedArgs.maxThreadCount / workerCount))));
+            if (parsedArgs.openLoopRPS > 0) {
+                workerArgs.addAll(Arrays.asList("-openLoopRPS", Double.toString(parsedArgs.openLoopRPS / workerCount)));
+            }
+            if (parsedArgs.openLoopStartRPS >= 0) {
+                workerArgs.addAll(Arrays.asList("-openLoopStartRPS", Double.toString(parsedArgs.openLoopStartRPS / workerCount)));
+            }
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(workerSockets.get(i).getOutputStream()));
+            out.writeInt(i);
+            out.writeInt(firstSkierID);
+            out.writeLong(startTime);
+            out.writeInt(workerArgs.size());
+            for (String workerArg : workerArgs) {
+                out.writeUTF(workerArg);
+            }
+            out.flush();
+        }
+    }
+
+    // Same JVM and classpath as the coordinator, output goes to the coordinator's console.
+    private static Process startWorkerProcess(int coordinatorPort) throws IOException {
+        String javaPath = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        return new ProcessBuilder(javaPath,
+                "-cp",
+                System.getProperty("java.class.path"),
+                LoadWorker.class.getName(),
+                "localhost",
+                Integer.toString(coordinatorPort))
+                .inheritIO()
+                .start();
+    }
+}
@@ -0,0 +1,59 @@
+package clientAssignment1Part2;
+
+import model.RequestType;
+import org.kohsuke.args4j.CmdLineException;
+import utility.SkierCmdLineHelper;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+
+// One load generating process of a distributed run, see LoadCoordinator.
+// Connects to the coordinator, takes its share of the skiers and threads, starts at the time the coordinator set for
+// every worker, and reports its counters and latency histograms back once its run is done.
+// Usage: LoadWorker [coordinatorHost] [coordinatorPort]
+public class LoadWorker {
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException, CmdLineException {
+        String coordinatorHost = args.length > 0 ? args[0] : "localhost";
+        int coordinatorPort = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+
+        try (Socket socket = new Socket(coordinatorHost, coordinatorPort)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeUTF(LoadCoordinator.protocolVersion);
+            out.flush();
+
+            // Assignment.
+            int workerIndex = in.readInt();
+            int firstSkierID = in.readInt();
+            long startTime = in.readLong();
+            String[] clientArgs = new String[in.readInt()];
+            for (int i = 0; i < clientArgs.length; i++) {
+                clientArgs[i] = in.readUTF();
+            }
+
+            SkierCmdLineHelper.CommandLineArgs parsedArgs = SkierCmdLineHelper.parseCommandLineArgs(clientArgs);
+            SkierClientA1P2 client = SkierClientA1P2.fromArgs(parsedArgs, "testRecords-worker" + workerIndex);
+            client.setFirstSkierID(firstSkierID);
+
+            long waitMS = startTime - System.currentTimeMillis();
+            if (waitMS > 0) {
+                Thread.sleep(waitMS);
+            }
+
+            client.startLoadSimulation();
+            client.close();
+
+            // Result.
+            out.writeInt(client.getTotalRequestSent());
+            out.writeInt(client.getSuccessfulRequestCount());
+            out.writeInt(client.getFailedRequestCount());
+            out.writeLong(client.getLastWallTimeMS());
+            for (RequestType requestType : RequestType.values()) {
+                client.getLatencyHistogram(requestType).writeTo(out);
+            }
+            out.flush();
+        }
+    }
+}
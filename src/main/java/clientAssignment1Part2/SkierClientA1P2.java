@@ -1,31 +1,39 @@
 package clientAssignment1Part2;
 
+import base.ByteArrayJsonRequestEntity;
+import base.OpenLoopProfile;
+import base.ReplayProfile;
+import base.RequestEngineType;
 import base.SkierClientBase;
+import base.WorkloadDistribution;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-import model.RequestResponseStat;
+import model.PhasePlan;
+import model.RequestType;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.kohsuke.args4j.CmdLineException;
 import utility.AWSUtil;
+import utility.LatencyHistogram;
+import utility.LatencyRecorder;
+import utility.StatLogFormat;
+import utility.StatLogWriter;
 import utility.SkierCmdLineHelper;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class SkierClientA1P2 extends SkierClientBase {
+    private final static long statLogFlushIntervalMS = 200;
+
     private final String desiredOutputFilePath;
-    private final Queue<RequestResponseStat> requestStats;
+    private final StatLogFormat statLogFormat;
+    private final long statLogMaxFileBytes;
+    private LatencyRecorder latencyRecorder;
+    // Drained by the live report every interval.
+    private LatencyRecorder intervalLatencyRecorder;
+    private StatLogWriter statLogWriter;
 
     public SkierClientA1P2(final String serverIp,
                            final String apiPath,
@@ -35,7 +43,9 @@ public class SkierClientA1P2 extends SkierClientBase {
                            int skiLiftCount,
                            int skiDayNum,
                            String resortName,
-                           final String desiredOutputFilePath) {
+                           final String desiredOutputFilePath,
+                           final StatLogFormat statLogFormat,
+                           long statLogMaxFileBytes) {
         super(serverIp,
                 apiPath,
                 serverPort,
@@ -46,41 +56,36 @@ public class SkierClientA1P2 extends SkierClientBase {
                 resortName);
 
         this.desiredOutputFilePath = desiredOutputFilePath;
-        this.requestStats = new ConcurrentLinkedDeque<>();
+        this.statLogFormat = statLogFormat;
+        this.statLogMaxFileBytes = statLogMaxFileBytes;
     }
 
     @Override
     public boolean executeSingleGetRequest(String targetUrl) {
         int statusCode = -1;
-        RequestResponseStat stat = null;
 
         for (int i = 0; i < maxRetries; i++) {
+            if (i > 0) {
+                this.retryCount.increment();
+            }
             HttpMethod httpGet = new GetMethod(targetUrl);
 
             try {
                 long startTime = System.currentTimeMillis();
+                long startTimeNS = System.nanoTime();
 
                 // Execute HTTP GET request.
-                statusCode = this.client.executeMethod(httpGet);
+                statusCode = executeMethod(httpGet);
 
                 // Get request statistics.
-                long latency = System.currentTimeMillis() - startTime;
-
-                if (targetUrl.contains("vertical")) {
-                    stat = RequestResponseStat.builder()
-                            .startTime(startTime)
-                            .latency(latency)
-                            .responseCode(statusCode)
-                            .requestType("GET-SkierResortTotals")
-                            .build();
-                } else {
-                    stat = RequestResponseStat.builder()
-                            .startTime(startTime)
-                            .latency(latency)
-                            .responseCode(statusCode)
-                            .requestType("GET-SkierDayVertical")
-                            .build();
-                }
+                long latencyNS = System.nanoTime() - startTimeNS;
+                RequestType requestType = targetUrl.contains("vertical")
+                        ? RequestType.GET_SKIER_RESORT_TOTALS
+                        : RequestType.GET_SKIER_DAY_VERTICAL;
+                recordLatency(requestType, latencyNS);
+
+                // Save request statistics.
+                this.statLogWriter.record(startTime, latencyNS, statusCode, requestType);
 
                 // Get HTTP response.
 //                String responseBody = httpGet.getResponseBodyAsString();
@@ -92,9 +97,6 @@ public class SkierClientA1P2 extends SkierClientBase {
 //                    Thread.currentThread().getId());
 
                 if (statusCode == 200 || statusCode == 204) {
-                    // Save request statistics.
-                    requestStats.offer(stat);
-
                     updateStatCounts(statusCode, targetUrl);
 
                     return true;
@@ -109,43 +111,37 @@ public class SkierClientA1P2 extends SkierClientBase {
             }
         }
 
-        // Save request statistics.
-        if (stat != null) {
-            requestStats.offer(stat);
-        }
-
         updateStatCounts(statusCode, targetUrl);
 
         return false;
     }
 
     @Override
-    public boolean executeSinglePOSTRequest(String targetUrl, String bodyJsonStr) {
+    public boolean executeSinglePOSTRequest(String targetUrl, byte[] body, int bodyLength) {
         PostMethod httpPost = new PostMethod(targetUrl);
         int statusCode = -1;
 
         for (int i = 0; i < maxRetries; i++) {
+            if (i > 0) {
+                this.retryCount.increment();
+            }
+
             try {
                 long startTime = System.currentTimeMillis();
+                long startTimeNS = System.nanoTime();
 
                 // Set request body content.
-                StringRequestEntity entity = new StringRequestEntity(bodyJsonStr, "application/json", "UTF-8");
-                httpPost.setRequestEntity(entity);
+                httpPost.setRequestEntity(new ByteArrayJsonRequestEntity(body, bodyLength));
 
                 // Execute HTTP POST request.
-                statusCode = this.client.executeMethod(httpPost);
+                statusCode = executeMethod(httpPost);
 
                 // Get request statistics.
-                long latency = System.currentTimeMillis() - startTime;
-                RequestResponseStat stat = RequestResponseStat.builder()
-                        .startTime(startTime)
-                        .latency(latency)
-                        .responseCode(statusCode)
-                        .requestType("POST")
-                        .build();
+                long latencyNS = System.nanoTime() - startTimeNS;
+                recordLatency(RequestType.POST, latencyNS);
 
                 // Save request statistics.
-                requestStats.offer(stat);
+                this.statLogWriter.record(startTime, latencyNS, statusCode, RequestType.POST);
 
                 // Get HTTP response.
 //                String responseBody = httpPost.getResponseBodyAsString();
@@ -177,80 +173,110 @@ public class SkierClientA1P2 extends SkierClientBase {
     }
 
     @Override
-    public void startLoadSimulation() throws JsonProcessingException, InterruptedException, ExecutionException {
-        super.startLoadSimulation();
-
-        writeStats();
-
-        calculateAndDisplayStats();
+    protected void recordResponse(RequestType requestType, long startTime, long latencyNS, int statusCode) {
+        recordLatency(requestType, latencyNS);
+        this.statLogWriter.record(startTime, latencyNS, statusCode, requestType);
     }
 
-    public void calculateAndDisplayStats() {
-        System.out.printf("\n[Enhanced Statistics]:\n");
+    @Override
+    protected LatencyRecorder getIntervalLatencyRecorder() {
+        return this.intervalLatencyRecorder;
+    }
 
-        // Calculate statistics for GETs.
-        final List<Double> get1Stats = new ArrayList<>();
-        this.requestStats.stream().filter(stat -> stat.getRequestType().equals("GET-SkierResortTotals"))
-                .forEach(stat -> get1Stats.add(Double.parseDouble(Long.toString(stat.getLatency()))));
+    private void recordLatency(RequestType requestType, long latencyNS) {
+        this.latencyRecorder.record(requestType.ordinal(), latencyNS);
+        this.intervalLatencyRecorder.record(requestType.ordinal(), latencyNS);
+    }
 
-        DescriptiveStatistics get1DS = prepareStat(get1Stats);
+    @Override
+    public void startLoadSimulation() throws JsonProcessingException, InterruptedException, ExecutionException {
+        this.latencyRecorder = new LatencyRecorder(RequestType.values().length);
+        this.intervalLatencyRecorder = new LatencyRecorder(RequestType.values().length);
+
+        // Stat records are streamed to the output file while the load runs.
+        try {
+            this.statLogWriter = new StatLogWriter(this.desiredOutputFilePath,
+                    this.statLogFormat,
+                    this.statLogMaxFileBytes,
+                    statLogFlushIntervalMS);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open statistics output file: " + this.desiredOutputFilePath, e);
+        }
 
-        System.out.printf("Mean response time for all GETs-SkierResortTotals: %f ms\n", get1DS.getMean());
-        System.out.printf("Median response time for all GETs-SkierResortTotals: %f ms\n", get1DS.getPercentile(50));
-        System.out.printf("P99 response time for all GETs-SkierResortTotals: %f ms\n", get1DS.getPercentile(99));
-        System.out.printf("Max response time for all GETs-SkierResortTotals: %f ms\n", get1DS.getMax());
+        super.startLoadSimulation();
 
-        final List<Double> get2Stats = new ArrayList<>();
-        this.requestStats.stream().filter(stat -> stat.getRequestType().equals("GET-SkierDayVertical"))
-                .forEach(stat -> get2Stats.add(Double.parseDouble(Long.toString(stat.getLatency()))));
+        closeStatLog();
 
-        DescriptiveStatistics get2DS = prepareStat(get2Stats);
+        calculateAndDisplayStats();
+    }
 
-        System.out.printf("Mean response time for all GETs-SkierDayVertical: %f ms\n", get2DS.getMean());
-        System.out.printf("Median response time for all GETs-SkierDayVertical: %f ms\n", get2DS.getPercentile(50));
-        System.out.printf("P99 response time for all GETs-SkierDayVertical: %f ms\n", get2DS.getPercentile(99));
-        System.out.printf("Max response time for all GETs-SkierDayVertical: %f ms\n", get2DS.getMax());
+    public void calculateAndDisplayStats() {
+        LatencyHistogram[] histograms = new LatencyHistogram[RequestType.values().length];
+        for (RequestType requestType : RequestType.values()) {
+            histograms[requestType.ordinal()] = getLatencyHistogram(requestType);
+        }
 
-        // Calculate statistics for POST.
-        final List<Double> postStats = new ArrayList<>();
-        this.requestStats.stream().filter(stat -> stat.getRequestType().equals("POST"))
-                .forEach(stat -> postStats.add(Double.parseDouble(Long.toString(stat.getLatency()))));
+        displayStats(histograms);
+    }
 
-        DescriptiveStatistics postDS = prepareStat(postStats);
+    // histograms is indexed by RequestType ordinal, the LoadCoordinator prints its merged ones the same way.
+    static void displayStats(LatencyHistogram[] histograms) {
+        System.out.printf("\n[Enhanced Statistics]:\n");
 
-        System.out.printf("Mean response time for all POSTs: %f ms\n", postDS.getMean());
-        System.out.printf("Median response time for all POSTs: %f ms\n", postDS.getPercentile(50));
-        System.out.printf("P99 response time for all POSTs: %f ms\n", postDS.getPercentile(99));
-        System.out.printf("Max response time for all POSTs: %f ms\n", postDS.getMax());
+        displayStats(histograms[RequestType.GET_SKIER_RESORT_TOTALS.ordinal()], "GETs-SkierResortTotals");
+        displayStats(histograms[RequestType.GET_SKIER_DAY_VERTICAL.ordinal()], "GETs-SkierDayVertical");
+        displayStats(histograms[RequestType.POST.ordinal()], "POSTs");
+        // Only replays send these.
+        if (histograms[RequestType.GET_TOP_VERTICALS.ordinal()].getTotalCount() > 0) {
+            displayStats(histograms[RequestType.GET_TOP_VERTICALS.ordinal()], "GETs-TopVerticals");
+        }
     }
 
-    private DescriptiveStatistics prepareStat(List<Double> stats) {
-        DescriptiveStatistics statistics = new DescriptiveStatistics();
+    // Latencies of the last run.
+    public LatencyHistogram getLatencyHistogram(RequestType requestType) {
+        return this.latencyRecorder.getMerged(requestType.ordinal());
+    }
 
-        stats.forEach(stat -> statistics.addValue(stat));
+    static void displayStats(LatencyHistogram histogram, String displayName) {
 
-        return statistics;
+        System.out.printf("Mean response time for all %s: %f ms\n", displayName, toMillis(histogram.getMean()));
+        System.out.printf("Median response time for all %s: %f ms\n", displayName, toMillis(histogram.getValueAtPercentile(50)));
+        System.out.printf("P99 response time for all %s: %f ms\n", displayName, toMillis(histogram.getValueAtPercentile(99)));
+        System.out.printf("Max response time for all %s: %f ms\n", displayName, toMillis(histogram.getMax()));
     }
 
-    // Write out stat records.
-    private void writeStats() {
-        File outputFile = new File(this.desiredOutputFilePath);
-
-        CsvMapper mapper = new CsvMapper().configure(CsvGenerator.Feature.ALWAYS_QUOTE_EMPTY_STRINGS, true);
-        CsvSchema schema = mapper.schemaFor(RequestResponseStat.class).withColumnSeparator(',');
-        ObjectWriter writer = mapper.writer(schema);
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
 
-        try (FileOutputStream fileOut = new FileOutputStream(outputFile);
-             PrintWriter fileWriter = new PrintWriter(fileOut)) {
-            writer.writeValue(fileWriter, this.requestStats);
+    // Write out the remaining stat records.
+    private void closeStatLog() {
+        try {
+            this.statLogWriter.close();
         } catch (IOException e) {
             System.out.println("Failed to write statistics to output file: " + this.desiredOutputFilePath);
         }
+
+        System.out.printf("Wrote %d request records to %s (%d dropped, %d waits on a full buffer)\n",
+                this.statLogWriter.getWrittenRecordCount(),
+                this.desiredOutputFilePath,
+                this.statLogWriter.getDroppedRecordCount(),
+                this.statLogWriter.getProducerWaitCount());
     }
 
-    public static void main(String[] args) throws JsonProcessingException, InterruptedException, ExecutionException, CmdLineException {
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException, CmdLineException {
         SkierCmdLineHelper.CommandLineArgs parsedArgs = SkierCmdLineHelper.parseCommandLineArgs(args);
 
+        SkierClientA1P2 client = fromArgs(parsedArgs, "testRecords");
+
+        client.startLoadSimulation();
+        client.close();
+    }
+
+    // outputFileName gets the extension of the stat log format.
+    static SkierClientA1P2 fromArgs(SkierCmdLineHelper.CommandLineArgs parsedArgs, String outputFileName) throws IOException {
+        StatLogFormat statLogFormat = StatLogFormat.valueOf(parsedArgs.statLogFormat.toUpperCase());
+
         SkierClientA1P2 client = new SkierClientA1P2(parsedArgs.serverAddr,
                 parsedArgs.apiPath,
                 parsedArgs.serverPort,
@@ -259,8 +285,16 @@ public class SkierClientA1P2 extends SkierClientBase {
                 parsedArgs.skiLiftCount,
                 parsedArgs.skiDay,
                 parsedArgs.resortName,
-                "testRecords.csv");
-
-        client.startLoadSimulation();
+                outputFileName + (statLogFormat == StatLogFormat.BINARY ? ".bin" : ".csv"),
+                statLogFormat,
+                parsedArgs.statLogMaxFileMB * 1024 * 1024);
+        client.setReplayProfile(ReplayProfile.from(parsedArgs));
+        client.setWorkloadDistribution(WorkloadDistribution.from(parsedArgs));
+        client.setOpenLoopProfile(OpenLoopProfile.from(parsedArgs));
+        client.useRequestEngine(RequestEngineType.valueOf(parsedArgs.requestEngine.toUpperCase()), parsedArgs.ioThreadCount);
+        client.setPhasePlan(PhasePlan.load(parsedArgs.phasePlanPath));
+        client.setLiveReport(parsedArgs.liveReportIntervalMS, outputFileName.replace("testRecords", "liveStats") + ".csv");
+
+        return client;
     }
 }
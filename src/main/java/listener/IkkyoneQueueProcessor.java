@@ -1,72 +1,58 @@
 package listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import model.SkierPOSTRequest;
+import org.apache.log4j.Logger;
 import server.IkkyoneServlet;
-import software.amazon.awssdk.services.sqs.model.Message;
-import utility.AWSUtil;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import static utility.AWSUtil.writeToDDB;
+import java.io.IOException;
 
 public class IkkyoneQueueProcessor implements ServletContextListener {
+    private final static Logger logger = Logger.getLogger(IkkyoneQueueProcessor.class);
     private final static ObjectMapper mapper = new ObjectMapper();
 
-    private final int targetPollerThreadCount = 60;
+    private final int minPollerThreadCount = 2;
+    private final int maxPollerThreadCount = 60;
+    // Queue depth that one poller is expected to keep up with.
+    private final int messagesPerPollerThread = 100;
+    private final int longPollWaitTimeSeconds = 20;
+    private final long pollerScaleIntervalMS = 5000;
 
-    private Thread processorThread = null;
+    private QueueBatchConsumer consumer = null;
 
     public void contextInitialized(ServletContextEvent sce) {
-        if (processorThread == null || (!processorThread.isAlive())) {
-            processorThread = new Thread(() -> {
-                ExecutorService executorService = Executors.newFixedThreadPool(targetPollerThreadCount);
-
-                for (int i = 0; i < targetPollerThreadCount; i++) {
-                    executorService.execute(() -> {
-                        while (true) {
-                            try {
-                                processMessagesInQueue();
-                            } catch (JsonProcessingException e) {
-                                e.printStackTrace();
-                            }
-
-                            try {
-                                Thread.sleep(1);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    });
-                }
-            });
-
-            processorThread.start();
+        if (consumer == null) {
+            consumer = new QueueBatchConsumer(IkkyoneServlet.postQueue,
+                    IkkyoneQueueProcessor::processMessage,
+                    minPollerThreadCount,
+                    maxPollerThreadCount,
+                    messagesPerPollerThread,
+                    longPollWaitTimeSeconds,
+                    pollerScaleIntervalMS);
+            consumer.start();
         }
     }
 
     public void contextDestroyed(ServletContextEvent sce) {
         try {
-            processorThread.interrupt();
+            if (consumer != null) {
+                consumer.stop();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void processMessagesInQueue() throws JsonProcessingException {
-        List<Message> messages = AWSUtil.getMsgFromSQS(IkkyoneServlet.sqsQueueName);
-
-        for (Message message : messages) {
-            SkierPOSTRequest request = mapper.readValue(message.body(), SkierPOSTRequest.class);
+    private static boolean processMessage(String messageBody) {
+        try {
+            SkierPOSTRequest request = mapper.readValue(messageBody, SkierPOSTRequest.class);
 
-            if (writeToDDB(request)) {
-                AWSUtil.deleteMsgInSQS(IkkyoneServlet.sqsQueueName, message.receiptHandle());
-            }
+            return IkkyoneServlet.skierStore.update(request);
+        } catch (IOException e) {
+            logger.error("Failed to parse message body: " + messageBody, e);
+            return false;
         }
     }
 }
@@ -0,0 +1,168 @@
+package listener;
+
+import lombok.NonNull;
+import model.QueuedMessage;
+import org.apache.log4j.Logger;
+import utility.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Batched, long-polling queue consumer.
+// Each poller receives up to 10 messages per call and waits up to waitTimeSeconds on an empty queue, so an idle queue
+// costs a few calls per minute instead of a busy loop. Handled messages are deleted in batches. A scaler samples the
+// approximate queue depth and grows or shrinks the number of pollers between the configured bounds.
+public class QueueBatchConsumer {
+    private final static Logger logger = Logger.getLogger(QueueBatchConsumer.class);
+
+    private final static int maxMessagesPerReceive = 10;
+
+    private final MessageQueue messageQueue;
+    private final Predicate<String> messageHandler;
+    private final int minPollerCount;
+    private final int maxPollerCount;
+    private final int messagesPerPoller;
+    private final int waitTimeSeconds;
+    private final long scaleIntervalMS;
+
+    private final ExecutorService pollers;
+    private final ScheduledExecutorService scaler;
+    private final AtomicInteger activePollerCount;
+    private volatile int targetPollerCount;
+    private volatile boolean isRunning;
+
+    private final LongAdder handledMessageCount = new LongAdder();
+    private final LongAdder failedMessageCount = new LongAdder();
+
+    // messageHandler gets the message body, and returns true if the message was processed and can be deleted.
+    public QueueBatchConsumer(@NonNull final MessageQueue messageQueue,
+                              @NonNull final Predicate<String> messageHandler,
+                              int minPollerCount,
+                              int maxPollerCount,
+                              int messagesPerPoller,
+                              int waitTimeSeconds,
+                              long scaleIntervalMS) {
+        this.messageQueue = messageQueue;
+        this.messageHandler = messageHandler;
+        this.minPollerCount = minPollerCount;
+        this.maxPollerCount = maxPollerCount;
+        this.messagesPerPoller = messagesPerPoller;
+        this.waitTimeSeconds = waitTimeSeconds;
+        this.scaleIntervalMS = scaleIntervalMS;
+
+        this.pollers = Executors.newCachedThreadPool();
+        this.scaler = Executors.newSingleThreadScheduledExecutor();
+        this.activePollerCount = new AtomicInteger();
+        this.targetPollerCount = minPollerCount;
+    }
+
+    public void start() {
+        this.isRunning = true;
+
+        startPollers();
+        this.scaler.scheduleWithFixedDelay(this::scalePollers, this.scaleIntervalMS, this.scaleIntervalMS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        this.isRunning = false;
+        this.scaler.shutdownNow();
+        this.pollers.shutdown();
+
+        try {
+            // Pollers exit after their current long poll returns.
+            this.pollers.awaitTermination(this.waitTimeSeconds + 5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while waiting for queue pollers to stop.", e);
+        }
+    }
+
+    public int getActivePollerCount() {
+        return this.activePollerCount.get();
+    }
+
+    public long getHandledMessageCount() {
+        return this.handledMessageCount.sum();
+    }
+
+    public long getFailedMessageCount() {
+        return this.failedMessageCount.sum();
+    }
+
+    private void scalePollers() {
+        try {
+            int queueDepth = this.messageQueue.getApproximateDepth();
+
+            int desiredPollerCount = (queueDepth + this.messagesPerPoller - 1) / this.messagesPerPoller;
+            this.targetPollerCount = Math.max(this.minPollerCount, Math.min(this.maxPollerCount, desiredPollerCount));
+
+            startPollers();
+        } catch (Exception e) {
+            // An exception would cancel the scheduled scaling, so never let one escape.
+            logger.error("Failed to scale queue pollers.", e);
+        }
+    }
+
+    private void startPollers() {
+        int activeCount;
+        while ((activeCount = this.activePollerCount.get()) < this.targetPollerCount && this.isRunning) {
+            if (this.activePollerCount.compareAndSet(activeCount, activeCount + 1)) {
+                this.pollers.execute(this::poll);
+            }
+        }
+    }
+
+    private void poll() {
+        while (this.isRunning) {
+            // Retire this poller if the scaler lowered the target.
+            int activeCount = this.activePollerCount.get();
+            if (activeCount > this.targetPollerCount) {
+                if (this.activePollerCount.compareAndSet(activeCount, activeCount - 1)) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                processMessageBatch();
+            } catch (Exception e) {
+                logger.error("Failed to process messages from queue.", e);
+            }
+        }
+
+        this.activePollerCount.decrementAndGet();
+    }
+
+    private void processMessageBatch() {
+        List<QueuedMessage> messages = this.messageQueue.receive(maxMessagesPerReceive, this.waitTimeSeconds);
+
+        List<QueuedMessage> handledMessages = new ArrayList<>(messages.size());
+        for (QueuedMessage message : messages) {
+            boolean isHandled;
+            try {
+                isHandled = this.messageHandler.test(message.getBody());
+            } catch (Exception e) {
+                logger.error("Failed to handle message " + message.getBody(), e);
+                isHandled = false;
+            }
+
+            // Unhandled messages are left to reappear after the visibility timeout.
+            if (isHandled) {
+                this.handledMessageCount.increment();
+                handledMessages.add(message);
+            } else {
+                this.failedMessageCount.increment();
+            }
+        }
+
+        if (!handledMessages.isEmpty()) {
+            this.messageQueue.delete(handledMessages);
+        }
+    }
+}
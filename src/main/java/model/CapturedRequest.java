@@ -0,0 +1,22 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One request recorded by the servlet's traffic capture, a line of the capture file.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapturedRequest {
+    // Epoch ms.
+    private long arrivalTime;
+    // Nanoseconds since the capture started, replays space requests by it.
+    private long offsetNS;
+    private String method;
+    // Path info as routed by the servlet, without the context path.
+    private String path;
+    private String query;
+    // Body as received, null for GETs.
+    private String body;
+}
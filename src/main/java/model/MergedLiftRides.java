@@ -0,0 +1,54 @@
+package model;
+
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// All rides of one skier at one resort folded together, so they can be applied to the DDB item in a single write.
+@Data
+public class MergedLiftRides {
+    private final int skierID;
+    @NonNull private final String resortID;
+    private final Set<Integer> liftTimes = new HashSet<>();
+    private final Set<Integer> liftIDs = new HashSet<>();
+    private final Map<Integer, Integer> dailyVerticals = new HashMap<>();
+    private int rideCount;
+    // Writes of these rides that failed so far, the write-behind pipeline gives up on rides that keep failing.
+    private int failedWriteCount;
+
+    public static MergedLiftRides of(@NonNull final SkierPOSTRequest skierRequest) {
+        MergedLiftRides rides = new MergedLiftRides(skierRequest.getSkierID(), skierRequest.getResortID());
+        rides.merge(skierRequest);
+
+        return rides;
+    }
+
+    public void merge(@NonNull final SkierPOSTRequest skierRequest) {
+        this.liftTimes.add(skierRequest.getTime());
+        this.liftIDs.add(skierRequest.getLiftID());
+        this.dailyVerticals.merge(skierRequest.getDayID(), skierRequest.getLiftID() * 10, Integer::sum);
+        this.rideCount++;
+    }
+
+    public void merge(@NonNull final MergedLiftRides other) {
+        this.liftTimes.addAll(other.liftTimes);
+        this.liftIDs.addAll(other.liftIDs);
+        other.dailyVerticals.forEach((day, vertical) -> this.dailyVerticals.merge(day, vertical, Integer::sum));
+        this.rideCount += other.rideCount;
+        this.failedWriteCount = Math.max(this.failedWriteCount, other.failedWriteCount);
+    }
+
+    // Vertical of all rides over all days, what the writes add to the resort total.
+    public int getTotalVertical() {
+        int totalVertical = 0;
+        for (Integer dailyVertical : this.dailyVerticals.values()) {
+            totalVertical += dailyVertical;
+        }
+
+        return totalVertical;
+    }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The closed-loop phases a client run goes through, read from a JSON file such as the bundled phase-plan.json:
+// {"phases": [{"name": "startup", "threadShare": 0.25, "startMinute": 1, "endMinute": 90, "postRequestsPerThread": 1000,
+//              "getRequestsPerThread": 5, "startAfter": null, "startAfterCompletedShare": 0}, ...]}
+@Data
+@NoArgsConstructor
+public class PhasePlan {
+    private final static String defaultPlanResource = "/phase-plan.json";
+    private final static int skiDayLenInMin = 420;
+
+    private List<PhaseSpec> phases;
+
+    // Reads the plan at planFilePath, or the bundled default plan when it is null.
+    public static PhasePlan load(String planFilePath) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        PhasePlan phasePlan;
+
+        if (planFilePath == null) {
+            try (InputStream planStream = PhasePlan.class.getResourceAsStream(defaultPlanResource)) {
+                if (planStream == null) {
+                    throw new IOException("Missing bundled phase plan " + defaultPlanResource);
+                }
+                phasePlan = mapper.readValue(planStream, PhasePlan.class);
+            }
+        } else {
+            phasePlan = mapper.readValue(new File(planFilePath), PhasePlan.class);
+        }
+
+        phasePlan.validate();
+
+        return phasePlan;
+    }
+
+    // Phases may only wait on phases listed before them, which also rules out cycles.
+    private void validate() {
+        if (this.phases == null || this.phases.isEmpty()) {
+            throw new IllegalArgumentException("Phase plan has no phases.");
+        }
+
+        Set<String> phaseNames = new HashSet<>();
+        for (PhaseSpec phase : this.phases) {
+            if (phase.getName() == null || !phaseNames.add(phase.getName())) {
+                throw new IllegalArgumentException("Phase names must be present and unique: " + phase.getName());
+            }
+            if (phase.getThreadShare() <= 0) {
+                throw new IllegalArgumentException("Phase " + phase.getName() + " needs a positive threadShare.");
+            }
+            if (phase.getStartMinute() < 1 || phase.getEndMinute() > skiDayLenInMin || phase.getStartMinute() > phase.getEndMinute()) {
+                throw new IllegalArgumentException("Phase " + phase.getName() + " has an invalid time window.");
+            }
+            if (phase.getPostRequestsPerThread() < 0 || phase.getGetRequestsPerThread() < 0) {
+                throw new IllegalArgumentException("Phase " + phase.getName() + " has a negative request count.");
+            }
+            if (phase.getStartAfter() != null) {
+                if (phase.getStartAfter().equals(phase.getName()) || !phaseNames.contains(phase.getStartAfter())) {
+                    throw new IllegalArgumentException("Phase " + phase.getName() + " must start after an earlier phase, not " + phase.getStartAfter());
+                }
+                if (phase.getStartAfterCompletedShare() < 0 || phase.getStartAfterCompletedShare() > 1) {
+                    throw new IllegalArgumentException("Phase " + phase.getName() + " needs a startAfterCompletedShare between 0 and 1.");
+                }
+            }
+        }
+    }
+}
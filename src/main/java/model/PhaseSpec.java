@@ -0,0 +1,25 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One phase of a PhasePlan.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhaseSpec {
+    private String name;
+    // Share of the client's maxThreadCount the phase runs with, at least one thread.
+    private double threadShare;
+    // Ski day minutes the lift rides are spread over, inclusive.
+    private int startMinute;
+    private int endMinute;
+    private int postRequestsPerThread;
+    private int getRequestsPerThread;
+    // Start once this share of the named phase's threads have sent their POSTs, or right away when startAfter is null.
+    private String startAfter;
+    private double startAfterCompletedShare;
+}
@@ -0,0 +1,12 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class QueuedMessage {
+    // Handle used to delete the message once it was processed.
+    private final String receiptHandle;
+    private final String body;
+}
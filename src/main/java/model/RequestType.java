@@ -0,0 +1,20 @@
+package model;
+
+// Request types the skier clients report on, label is the name used in output files.
+public enum RequestType {
+    POST("POST"),
+    GET_SKIER_RESORT_TOTALS("GET-SkierResortTotals"),
+    GET_SKIER_DAY_VERTICAL("GET-SkierDayVertical"),
+    // Only sent when replaying captured traffic.
+    GET_TOP_VERTICALS("GET-TopVerticals");
+
+    private final String label;
+
+    RequestType(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+}
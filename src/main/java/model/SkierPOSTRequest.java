@@ -7,9 +7,31 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 public class SkierPOSTRequest {
+    // Bounds of a ride the server accepts. A day is one of the season, a time a minute of the day.
+    public final static int minDayID = 1;
+    public final static int maxDayID = 366;
+    public final static int maxTime = 24 * 60;
+    public final static int maxLiftID = 1000;
+
     private String resortID;
     private int dayID;
     private int skierID;
     private int time;
     private int liftID;
+
+    // Returns null if the ride is within the bounds, otherwise which value is out of them. Static, so JSON binding does
+    // not take it for a property.
+    public static String getRangeError(int dayID, int skierID, int time, int liftID) {
+        if (dayID < minDayID || dayID > maxDayID) {
+            return "dayID must be between " + minDayID + " and " + maxDayID + ".";
+        } else if (skierID < 0) {
+            return "skierID must not be negative.";
+        } else if (time < 0 || time > maxTime) {
+            return "time must be between 0 and " + maxTime + ".";
+        } else if (liftID < 0 || liftID > maxLiftID) {
+            return "liftID must be between 0 and " + maxLiftID + ".";
+        }
+
+        return null;
+    }
 }
@@ -1,24 +1,24 @@
 package server;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
 import model.SkierGETRequest;
 import model.SkierPOSTRequest;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.utils.URLEncodedUtils;
+import model.SkierVertical;
 import org.apache.log4j.Logger;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import utility.AWSUtil;
+import utility.*;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import static utility.AWSUtil.writeToDDB;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
     private final static Logger logger = Logger.getLogger(IkkyoneServlet.class);
@@ -29,58 +29,278 @@ public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
     public final static String itemPrimaryHashKey = "SkierID";
     public final static String itemPrimarySortKey = "ResortID";
     public final static String itemAttrDailyTotalVerticals = "DailyTotalVerticals";
+    // Sum of the daily totals, kept by every write in the same request as the day it touches.
+    public final static String itemAttrResortTotalVertical = "ResortTotalVertical";
+    public final static int topVerticalCount = 10;
+    public final static int maxIndexedResortDays = 1024;
+
+    // Updated by AWSUtil as each lift ride lands, serves /resort/day/top10vert.
+    public final static TopVerticalIndex topVerticalIndex = new TopVerticalIndex(topVerticalCount, maxIndexedResortDays);
+
+    // Read-through caches for the skier vertical GETs, invalidated by AWSUtil on local writes. Day verticals are served
+    // from the cached daily map, resort totals from the total kept on the item, so a total GET reads one attribute.
+    public final static SkierVerticalCache<Map<String, Integer>> verticalCache = new SkierVerticalCache<>(
+            Integer.getInteger("ikkyone.verticalCache.maxEntries", 100000),
+            Long.getLong("ikkyone.verticalCache.ttlMS", 5000));
+    public final static SkierVerticalCache<Optional<Integer>> resortTotalCache = new SkierVerticalCache<>(
+            Integer.getInteger("ikkyone.verticalCache.maxEntries", 100000),
+            Long.getLong("ikkyone.verticalCache.ttlMS", 5000));
+
+    // Storage backends, -Dikkyone.store=memory and -Dikkyone.queue=memory run the server without AWS.
+    // -Dikkyone.store.writeSequencerStripeCount=0 turns off merging concurrent writes of the same skier.
+    public final static SkierStore skierStore = "memory".equals(System.getProperty("ikkyone.store"))
+            ? new InMemorySkierStore(Integer.getInteger("ikkyone.store.expectedRecordCount", 100000))
+            : new DynamoDbSkierStore(Integer.getInteger("ikkyone.store.batchWriterThreadCount", 32),
+                    Integer.getInteger("ikkyone.store.writeSequencerStripeCount", 64));
+    public final static MessageQueue postQueue = "memory".equals(System.getProperty("ikkyone.queue"))
+            ? new InMemoryMessageQueue(Integer.getInteger("ikkyone.queue.capacity", 1000000))
+            : new SqsMessageQueue(AWSUtil.getSqsClient(), sqsQueueName);
+
+    // Write-behind mode for POSTs, enabled with -Dikkyone.writeBehind=true.
+    private final static WriteBehindPipeline writeBehindPipeline = Boolean.getBoolean("ikkyone.writeBehind")
+            ? new WriteBehindPipeline(skierStore,
+                    Integer.getInteger("ikkyone.writeBehind.maxPendingRides", 100000),
+                    Long.getLong("ikkyone.writeBehind.flushWindowMS", 50))
+            : null;
+
+    // Async mode, enabled with -Dikkyone.async=true. Store calls complete on the SDK's event loop instead of holding a
+    // container thread, and the number of requests in flight is bounded by permits, past which requests get a 503.
+    private final static boolean isAsyncMode = Boolean.getBoolean("ikkyone.async");
+    private final static Semaphore asyncPermits = new Semaphore(Integer.getInteger("ikkyone.async.maxInFlight", 2000));
+    private final static LongAdder asyncRejectedCount = new LongAdder();
+
+    // Admission control in front of the DDB table, in capacity units per second. Set them to the table's provisioned
+    // capacity, e.g. -Dikkyone.admission.readCapacityUnits=300 -Dikkyone.admission.writeCapacityUnits=500, past which
+    // requests get a 429 with Retry-After instead of being throttled by DDB. 0, the default, is no limit. A write is
+    // charged once its body is valid, in read-modify-write mode it also takes a read. A GET is only charged when it
+    // misses the vertical cache.
+    private final static int SC_TOO_MANY_REQUESTS = 429;
+    private final static TokenBucket readCapacity = newCapacityBucket("ikkyone.admission.readCapacityUnits");
+    private final static TokenBucket writeCapacity = newCapacityBucket("ikkyone.admission.writeCapacityUnits");
+    private final static MetricsRegistry.Counter readRejectedCount = MetricsRegistry.serverMetrics.counter("admission.readRejected");
+    private final static MetricsRegistry.Counter writeRejectedCount = MetricsRegistry.serverMetrics.counter("admission.writeRejected");
+
+    // Traffic capture for offline replay, enabled with -Dikkyone.capture.path=<file>.
+    private final static TrafficCapture trafficCapture = TrafficCapture.fromSystemProperties();
+
+    // Request metrics, also served on GET /metrics and over JMX as ikkyone:type=Metrics.
+    private final static MetricsRegistry.Counter inFlightRequests = MetricsRegistry.serverMetrics.counter("http.inFlight");
+    private final static MetricsRegistry.Timer[] routeLatencies = new MetricsRegistry.Timer[SkierRouter.routeCount];
+
+    static {
+        for (int i = 0; i < SkierRouter.routeCount; i++) {
+            routeLatencies[i] = MetricsRegistry.serverMetrics.timer("http." + SkierRouter.getRouteName(i));
+        }
+        MetricsRegistry.serverMetrics.gauge("http.async.rejected", asyncRejectedCount::sum);
+        registerCacheGauges("verticalCache", verticalCache);
+        registerCacheGauges("resortTotalCache", resortTotalCache);
+        if (skierStore instanceof DynamoDbSkierStore && ((DynamoDbSkierStore) skierStore).getWriteSequencer() != null) {
+            SkierWriteSequencer writeSequencer = ((DynamoDbSkierStore) skierStore).getWriteSequencer();
+            MetricsRegistry.serverMetrics.gauge("ddb.writeSequencer.rides", writeSequencer::getRideCount);
+            MetricsRegistry.serverMetrics.gauge("ddb.writeSequencer.batches", writeSequencer::getBatchCount);
+            MetricsRegistry.serverMetrics.gauge("ddb.writeSequencer.mergedRides", writeSequencer::getMergedRideCount);
+            MetricsRegistry.serverMetrics.gauge("ddb.writeSequencer.queuedBatches", writeSequencer::getQueuedBatchCount);
+            MetricsRegistry.serverMetrics.gauge("ddb.writeSequencer.maxBatchSize", writeSequencer::getMaxBatchSize);
+        }
+        MetricsRegistry.serverMetrics.registerMBean("ikkyone:type=Metrics");
+    }
 
     private final static ObjectMapper mapper = new ObjectMapper();
 
+    // hits / (hits + misses) is the hit ratio.
+    private static void registerCacheGauges(@NonNull final String prefix, @NonNull final SkierVerticalCache<?> cache) {
+        MetricsRegistry.serverMetrics.gauge(prefix + ".hits", cache::getHitCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".misses", cache::getMissCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".evictions", cache::getEvictionCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".loads", cache::getLoadCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".collapsedLoads", cache::getCollapsedLoadCount);
+    }
+
+    // Null when the property is 0 or the store is not DDB. Holds up to -Dikkyone.admission.burstSeconds of capacity.
+    private static TokenBucket newCapacityBucket(@NonNull final String capacityUnitsProperty) {
+        double capacityUnits = Double.parseDouble(System.getProperty(capacityUnitsProperty, "0"));
+        if (capacityUnits <= 0 || !(skierStore instanceof DynamoDbSkierStore)) {
+            return null;
+        }
+
+        double burstSeconds = Double.parseDouble(System.getProperty("ikkyone.admission.burstSeconds", "1"));
+        return new TokenBucket(capacityUnits, Math.max(1, capacityUnits * burstSeconds));
+    }
+
+    // Keeps the in-memory views in sync, called by the SkierStore after each successful write.
+    public static void onSkierRidesWritten(int skierID,
+                                           @NonNull final String resortID,
+                                           @NonNull final Map<Integer, Integer> newDailyTotalVerticals) {
+        verticalCache.invalidate(Integer.toString(skierID), resortID);
+        resortTotalCache.invalidate(Integer.toString(skierID), resortID);
+
+        newDailyTotalVerticals.forEach((dayID, dailyTotalVertical) ->
+                topVerticalIndex.offer(resortID, dayID, skierID, dailyTotalVertical));
+    }
+
+    @Override
+    public void destroy() {
+        if (writeBehindPipeline != null) {
+            writeBehindPipeline.shutdown();
+        }
+        if (trafficCapture != null) {
+            trafficCapture.shutdown();
+        }
+
+        logger.info("Vertical cache stats: " + verticalCache.getStatsSummary());
+        logger.info("Resort total cache stats: " + resortTotalCache.getStatsSummary());
+        if (isAsyncMode) {
+            logger.info("Async requests rejected for lack of permits: " + asyncRejectedCount.sum());
+        }
+        if (skierStore instanceof DynamoDbSkierStore) {
+            logger.info("DDB write stats in " + DDBWriteMode.READ_MODIFY_WRITE + " mode: "
+                    + AWSUtil.getDDBWriteStats(DDBWriteMode.READ_MODIFY_WRITE));
+            logger.info("DDB write stats in " + DDBWriteMode.ATOMIC_UPDATE + " mode: "
+                    + AWSUtil.getDDBWriteStats(DDBWriteMode.ATOMIC_UPDATE));
+            if (((DynamoDbSkierStore) skierStore).getWriteSequencer() != null) {
+                logger.info("DDB write sequencer stats: " + ((DynamoDbSkierStore) skierStore).getWriteSequencer().getStatsSummary());
+            }
+        }
+    }
+
     protected void doPost(javax.servlet.http.HttpServletRequest request, javax.servlet.http.HttpServletResponse response) throws IOException {
+        long startTimeNS = System.nanoTime();
+        Integer[] routeHolder = new Integer[] {SkierRouter.noRoute};
+        boolean isAsync = false;
+        inFlightRequests.increment();
+
+        try {
+            if (trafficCapture == null) {
+                isAsync = processPost(request, request.getInputStream(), response, routeHolder, startTimeNS);
+                return;
+            }
+
+            // The body is captured as the parser reads it, and recorded once the request is handled.
+            TrafficCapture.BodyTee bodyTee = trafficCapture.newBodyTee(request.getInputStream());
+            try {
+                isAsync = processPost(request, bodyTee, response, routeHolder, startTimeNS);
+            } finally {
+                trafficCapture.capture(startTimeNS, "POST", request.getPathInfo(), request.getQueryString(), bodyTee.getBody());
+            }
+        } finally {
+            if (!isAsync) {
+                onRequestFinished(routeHolder[0], startTimeNS);
+            }
+        }
+    }
+
+    // Returns true if the request went async, completeAsync then finishes it.
+    private boolean processPost(javax.servlet.http.HttpServletRequest request,
+                                InputStream bodyIn,
+                                javax.servlet.http.HttpServletResponse response,
+                                Integer[] routeHolder,
+                                long startTimeNS) throws IOException {
         // Prepare response data.
         response.setContentType("text/plain");
         boolean processResult = false;
-        JsonNode[] nodeHolder = new JsonNode[1];
+        SkierPOSTRequest[] skierRequestHolder = new SkierPOSTRequest[1];
 
         if (isValidRequest(request,
                 response,
                 false,
-                new Integer[1],
+                routeHolder,
                 new SkierGETRequest[1])) {
             // Check POST body.
-            if (isBodyValidOnPost(request, response, nodeHolder)) {
-                // Get skier request body.
-                SkierPOSTRequest skierRequest;
-                try {
-                    skierRequest = mapper.readValue(nodeHolder[0].toString(), SkierPOSTRequest.class);
-                } catch (IOException e) {
-                    logger.error("Failed to parse Skier post request body: ", e);
-                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    response.getWriter().printf("Server fails to parse request, with url: %s, and body: %s\n",
-                            request.getPathInfo(),
-                            nodeHolder[0].toPrettyString());
-                    return;
+            if (isBodyValidOnPost(bodyIn, response, skierRequestHolder)) {
+                SkierPOSTRequest skierRequest = skierRequestHolder[0];
+
+                // Write-behind acknowledges from memory and flushes at its own pace, only direct writes are admitted
+                // here. A body that fails the check above never reaches the store, so it is not charged.
+                long retryAfterNS = writeBehindPipeline == null ? tryAdmitWrite() : 0;
+                if (retryAfterNS > 0) {
+                    rejectOverCapacity(request, response, retryAfterNS);
+                    return false;
+                }
+
+                // Write-behind acknowledges from memory, so only direct writes go async.
+                Boolean[] isRejectedHolder = new Boolean[] {false};
+                AsyncContext asyncContext = writeBehindPipeline == null
+                        ? startAsyncIfEnabled(request, response, isRejectedHolder)
+                        : null;
+                if (asyncContext != null) {
+                    callAsync(() -> skierStore.updateAsync(skierRequest)).whenComplete((result, error) ->
+                            completeAsync(asyncContext, routeHolder[0], startTimeNS, () -> writePostResult(request,
+                                    response,
+                                    error == null && result,
+                                    skierRequest)));
+                    return true;
+                } else if (isRejectedHolder[0]) {
+                    // The write never reaches the store, give back what it was charged.
+                    releaseWrite();
+                    return false;
                 }
 
-                processResult = writeToDDB(skierRequest);
+                if (writeBehindPipeline != null) {
+                    if (!writeBehindPipeline.submit(skierRequest)) {
+                        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        response.getWriter().printf("Server is busy, please retry later. Post request url: %s\n",
+                                request.getPathInfo());
+                        return false;
+                    }
+                    processResult = true;
+                } else {
+                    processResult = skierStore.update(skierRequest);
+                }
 //                processResult = publishToSQS(skierRequest);
             }
         }
 
+        writePostResult(request, response, processResult, skierRequestHolder[0]);
+
+        return false;
+    }
+
+    private void writePostResult(javax.servlet.http.HttpServletRequest request,
+                                 javax.servlet.http.HttpServletResponse response,
+                                 boolean processResult,
+                                 SkierPOSTRequest skierRequest) throws IOException {
+        String body = skierRequest == null ? "" : skierRequest.toString();
+
         if (processResult) {
             response.setStatus(HttpServletResponse.SC_OK);
             response.getWriter().printf("It works! Post request url: %s, body: %s\n",
                     request.getPathInfo(),
-                    nodeHolder[0].toPrettyString());
+                    body);
         } else {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             response.getWriter().printf("Server fails to handle request, with url: %s, and body: %s\n",
                     request.getPathInfo(),
-                    nodeHolder[0].toPrettyString());
+                    body);
         }
     }
 
     protected void doGet(javax.servlet.http.HttpServletRequest request, javax.servlet.http.HttpServletResponse response) throws IOException {
+        long startTimeNS = System.nanoTime();
+        Integer[] routeHolder = new Integer[] {SkierRouter.noRoute};
+        boolean isAsync = false;
+        inFlightRequests.increment();
+
+        try {
+            if (trafficCapture != null) {
+                trafficCapture.capture(startTimeNS, "GET", request.getPathInfo(), request.getQueryString(), null);
+            }
+
+            isAsync = processGet(request, response, routeHolder, startTimeNS);
+        } finally {
+            if (!isAsync) {
+                onRequestFinished(routeHolder[0], startTimeNS);
+            }
+        }
+    }
+
+    // Returns true if the request went async, completeAsync then finishes it.
+    private boolean processGet(javax.servlet.http.HttpServletRequest request,
+                               javax.servlet.http.HttpServletResponse response,
+                               Integer[] getRequestType,
+                               long startTimeNS) throws IOException {
         // Prepare response data.
         response.setContentType("text/plain");
 
-        Integer[] getRequestType = new Integer[1];
         SkierGETRequest[] getRequestHolder = new SkierGETRequest[1];
         Integer[] outcomeVerticalHolder = new Integer[1];
         boolean processResult = false;
@@ -89,34 +309,69 @@ public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
                 true,
                 getRequestType,
                 getRequestHolder)) {
-            if (getRequestType[0] == 1) {
+            if (getRequestType[0] == SkierRouter.topVerticalsRoute) {
                 // API: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/resorts/getTopTenVert
-                // TODO: Add logics for API: /resort/day/top10vert
-                processResult = true;
-            } else if (getRequestType[0] == 2) {
-                // API: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierResortTotals
-                getVerticalAtResort(getRequestHolder[0].skierID,
-                        getRequestHolder[0].resortID,
-                        outcomeVerticalHolder);
-                processResult = true;
-            } else if (getRequestType[0] == 3) {
-                // API: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierDayVertical
-                getVerticalAtResortAndDay(getRequestHolder[0].skierID,
-                        getRequestHolder[0].resortID,
-                        Integer.toString(getRequestHolder[0].dayID),
-                        outcomeVerticalHolder);
+                if (getRequestHolder[0].resortID != null && getRequestHolder[0].dayID > 0) {
+                    writeTopVerticals(getRequestHolder[0].resortID,
+                            getRequestHolder[0].dayID,
+                            response);
+                    return false;
+                }
+            } else if (getRequestType[0] == SkierRouter.metricsRoute) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().write(MetricsRegistry.serverMetrics.toText());
+                return false;
+            } else if ((getRequestType[0] == SkierRouter.skierResortTotalsRoute
+                    || getRequestType[0] == SkierRouter.skierDayVerticalRoute)
+                    && getRequestHolder[0].resortID != null) {
+                SkierGETRequest getRequest = getRequestHolder[0];
+                int requestType = getRequestType[0];
+
+                Boolean[] isRejectedHolder = new Boolean[1];
+                AsyncContext asyncContext = startAsyncIfEnabled(request, response, isRejectedHolder);
+                if (asyncContext != null) {
+                    callAsync(() -> getVerticalAsync(requestType, getRequest))
+                            .whenComplete((outcomeVertical, error) -> completeAsync(asyncContext, requestType, startTimeNS, () -> {
+                                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                                if (cause instanceof OverCapacityException) {
+                                    rejectOverCapacity(request, response, ((OverCapacityException) cause).getRetryAfterNS());
+                                    return;
+                                }
+                                writeGetResult(request, response, error == null, outcomeVertical);
+                            }));
+                    return true;
+                } else if (isRejectedHolder[0]) {
+                    return false;
+                }
+
+                try {
+                    getVertical(requestType, getRequest, outcomeVerticalHolder);
+                } catch (OverCapacityException e) {
+                    rejectOverCapacity(request, response, e.getRetryAfterNS());
+                    return false;
+                }
                 processResult = true;
-            } else {
+            } else if (getRequestType[0] != SkierRouter.skierResortTotalsRoute) {
+                // A skier total without the resort parameter falls through as a bad request.
                 throw new RuntimeException("Detected unsupport GET request.");
             }
         }
 
+        writeGetResult(request, response, processResult, outcomeVerticalHolder[0]);
+
+        return false;
+    }
+
+    private void writeGetResult(javax.servlet.http.HttpServletRequest request,
+                                javax.servlet.http.HttpServletResponse response,
+                                boolean processResult,
+                                Integer outcomeVertical) throws IOException {
         if (processResult) {
-            if (outcomeVerticalHolder[0] != null) {
+            if (outcomeVertical != null) {
                 response.setStatus(HttpServletResponse.SC_OK);
                 response.getWriter().printf("It works! GET request url: %s\nResult Vertical: %d\n",
                         request.getPathInfo(),
-                        outcomeVerticalHolder[0]);
+                        outcomeVertical);
             } else {
                 response.setStatus(HttpServletResponse.SC_OK);
                 response.getWriter().printf("It works! GET request url: %s, but no record is found\n",
@@ -129,43 +384,218 @@ public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
         }
     }
 
-    private void getVerticalAtResort(@NonNull final String itemPrimaryHashKeyVal,
-                                        @NonNull final String itemPrimarySortKeyVal,
-                                        @NonNull final Integer[] outcomeVerticalHolder) {
-        Map<String, AttributeValue> item = AWSUtil.getItemFromDB(ddbTableName,
-                itemPrimaryHashKey,
-                itemPrimaryHashKeyVal,
-                itemPrimarySortKey,
-                itemPrimarySortKeyVal,
-                logger);
+    private void writeTopVerticals(@NonNull final String resortID,
+                                   int dayID,
+                                   javax.servlet.http.HttpServletResponse response) throws IOException {
+        List<SkierVertical> topVerticals = topVerticalIndex.getTopK(resortID, dayID);
+
+        Map<String, List<SkierVertical>> result = new HashMap<>();
+        result.put("topTenSkiers", topVerticals);
+
+        response.setContentType("application/json");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().write(mapper.writeValueAsString(result));
+    }
+
+    // Returns the started async context, or null if the request is to be served on this thread. When there is no permit
+    // left the request is answered with a 503 right away, null is returned and isRejectedHolder is set.
+    private AsyncContext startAsyncIfEnabled(javax.servlet.http.HttpServletRequest request,
+                                             javax.servlet.http.HttpServletResponse response,
+                                             Boolean[] isRejectedHolder) throws IOException {
+        isRejectedHolder[0] = false;
+
+        if (!isAsyncMode || !request.isAsyncSupported()) {
+            return null;
+        }
+
+        if (!asyncPermits.tryAcquire()) {
+            isRejectedHolder[0] = true;
+            asyncRejectedCount.increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.getWriter().printf("Server is busy, please retry later. Request url: %s\n",
+                    request.getPathInfo());
+            return null;
+        }
 
-        Map<String, AttributeValue> dailyVerticals = item.get(itemAttrDailyTotalVerticals).m();
-        if (dailyVerticals != null && !dailyVerticals.isEmpty()) {
-            final AtomicInteger totalVerticalsOnAllDays = new AtomicInteger();
-            dailyVerticals.entrySet().stream().forEach(e -> totalVerticalsOnAllDays.addAndGet(Integer.parseInt(e.getValue().n())));
+        return request.startAsync();
+    }
 
-            int resultVertical = totalVerticalsOnAllDays.get();
-            outcomeVerticalHolder[0] = resultVertical;
+    // Write the response of an async request and hand it back to the container.
+    private void completeAsync(@NonNull final AsyncContext asyncContext,
+                               int route,
+                               long startTimeNS,
+                               @NonNull final AsyncResponseWriter responseWriter) {
+        try {
+            responseWriter.write();
+        } catch (Exception e) {
+            logger.error("Failed to write async response.", e);
+        } finally {
+            asyncPermits.release();
+            onRequestFinished(route, startTimeNS);
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // The container already timed the request out.
+                logger.error("Failed to complete async request.", e);
+            }
         }
     }
 
-    private void getVerticalAtResortAndDay(@NonNull final String itemPrimaryHashKeyVal,
-                                              @NonNull final String itemPrimarySortKeyVal,
-                                              @NonNull final String dayID,
-                                              @NonNull final Integer[] outcomeVerticalHolder) {
-        Map<String, AttributeValue> item = AWSUtil.getItemFromDB(ddbTableName,
-                itemPrimaryHashKey,
-                itemPrimaryHashKeyVal,
-                itemPrimarySortKey,
+    // A store call that throws instead of returning a failed future still has to finish the async request through
+    // completeAsync, or its permit and in-flight count would leak.
+    private static <T> CompletableFuture<T> callAsync(@NonNull final Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static void onRequestFinished(int route, long startTimeNS) {
+        routeLatencies[route].recordSince(startTimeNS);
+        inFlightRequests.decrement();
+    }
+
+    private interface AsyncResponseWriter {
+        void write() throws IOException;
+    }
+
+    // Leaves the holder empty if there is no record or it could not be read. Throws OverCapacityException, see
+    // getDailyVerticals.
+    private void getVertical(int getRequestType,
+                             @NonNull final SkierGETRequest getRequest,
+                             @NonNull final Integer[] outcomeVerticalHolder) {
+        if (getRequestType == SkierRouter.skierResortTotalsRoute) {
+            // API: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierResortTotals
+            Optional<Integer> resortTotalVertical = getResortTotalVertical(getRequest.skierID, getRequest.resortID);
+            if (resortTotalVertical != null && resortTotalVertical.isPresent()) {
+                outcomeVerticalHolder[0] = resortTotalVertical.get();
+            }
+        } else {
+            // API: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#/skiers/getSkierDayVertical
+            Map<String, Integer> dailyVerticals = getDailyVerticals(getRequest.skierID, getRequest.resortID);
+            if (dailyVerticals != null) {
+                getVerticalAtResortAndDay(dailyVerticals, Integer.toString(getRequest.dayID), outcomeVerticalHolder);
+            }
+        }
+    }
+
+    // Same as getVertical on the store's async calls, completes with null if there is no record or it could not be read.
+    private CompletableFuture<Integer> getVerticalAsync(int getRequestType, @NonNull final SkierGETRequest getRequest) {
+        if (getRequestType == SkierRouter.skierResortTotalsRoute) {
+            return resortTotalCache.getAsync(getRequest.skierID,
+                    getRequest.resortID,
+                    () -> {
+                        admitRead();
+                        return skierStore.getResortTotalVerticalAsync(getRequest.skierID, getRequest.resortID);
+                    })
+                    .thenApply(resortTotalVertical -> resortTotalVertical == null ? null : resortTotalVertical.orElse(null));
+        }
+
+        return verticalCache.getAsync(getRequest.skierID,
+                getRequest.resortID,
+                () -> {
+                    admitRead();
+                    return skierStore.getDailyVerticalsAsync(getRequest.skierID, getRequest.resortID);
+                })
+                .thenApply(dailyVerticals -> dailyVerticals == null ? null : dailyVerticals.get(Integer.toString(getRequest.dayID)));
+    }
+
+    private void getVerticalAtResortAndDay(@NonNull final Map<String, Integer> dailyVerticals,
+                                           @NonNull final String dayID,
+                                           @NonNull final Integer[] outcomeVerticalHolder) {
+        if (dailyVerticals.get(dayID) != null) {
+            outcomeVerticalHolder[0] = dailyVerticals.get(dayID);
+        }
+    }
+
+    // Throws OverCapacityException on a cache miss over the read capacity. Lookups that joined the miss get it too.
+    private Map<String, Integer> getDailyVerticals(@NonNull final String itemPrimaryHashKeyVal,
+                                                   @NonNull final String itemPrimarySortKeyVal) {
+        return verticalCache.get(itemPrimaryHashKeyVal,
+                itemPrimarySortKeyVal,
+                () -> {
+                    admitRead();
+                    return skierStore.getDailyVerticals(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+                });
+    }
+
+    // Same as getDailyVerticals for the resort total.
+    private Optional<Integer> getResortTotalVertical(@NonNull final String itemPrimaryHashKeyVal,
+                                                     @NonNull final String itemPrimarySortKeyVal) {
+        return resortTotalCache.get(itemPrimaryHashKeyVal,
                 itemPrimarySortKeyVal,
-                logger);
+                () -> {
+                    admitRead();
+                    return skierStore.getResortTotalVertical(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+                });
+    }
+
+    private static void admitRead() {
+        long retryAfterNS = tryAdmitRead();
+        if (retryAfterNS > 0) {
+            throw new OverCapacityException(retryAfterNS);
+        }
+    }
+
+    // Returns 0 if admitted, otherwise ns until there is read capacity again.
+    private static long tryAdmitRead() {
+        long retryAfterNS = readCapacity == null ? 0 : readCapacity.tryAcquire(1);
+        if (retryAfterNS > 0) {
+            readRejectedCount.increment();
+        }
+
+        return retryAfterNS;
+    }
 
-        if (item != null && !item.isEmpty()) {
-            Map<String, AttributeValue> dailyVerticals = item.get(itemAttrDailyTotalVerticals).m();
-            if (dailyVerticals != null && dailyVerticals.get(dayID) != null) {
-                outcomeVerticalHolder[0] = Integer.parseInt(dailyVerticals.get(dayID).n());
+    // Same as tryAdmitRead for a POST, which also costs a read unless the writes are atomic updates.
+    private static long tryAdmitWrite() {
+        // Without admission control the write mode is not needed, and asking for it would load AWSUtil.
+        if (readCapacity == null && writeCapacity == null) {
+            return 0;
+        }
+
+        long retryAfterNS = writeCapacity == null ? 0 : writeCapacity.tryAcquire(1);
+        if (retryAfterNS > 0) {
+            writeRejectedCount.increment();
+            return retryAfterNS;
+        }
+
+        if (AWSUtil.getDDBWriteMode() == DDBWriteMode.READ_MODIFY_WRITE) {
+            retryAfterNS = tryAdmitRead();
+            if (retryAfterNS > 0 && writeCapacity != null) {
+                writeCapacity.release(1);
             }
         }
+
+        return retryAfterNS;
+    }
+
+    // Gives back what an admitted write was charged, for a write that does not reach the store after all.
+    private static void releaseWrite() {
+        if (readCapacity == null && writeCapacity == null) {
+            return;
+        }
+
+        if (writeCapacity != null) {
+            writeCapacity.release(1);
+        }
+        if (readCapacity != null && AWSUtil.getDDBWriteMode() == DDBWriteMode.READ_MODIFY_WRITE) {
+            readCapacity.release(1);
+        }
+    }
+
+    private void rejectOverCapacity(javax.servlet.http.HttpServletRequest request,
+                                    javax.servlet.http.HttpServletResponse response,
+                                    long retryAfterNS) throws IOException {
+        response.setStatus(SC_TOO_MANY_REQUESTS);
+        // Whole seconds, rounded up.
+        long retryAfterSeconds = (retryAfterNS + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        response.setHeader("Retry-After", Long.toString(Math.max(1, retryAfterSeconds)));
+        response.getWriter().printf("Server is over capacity, please retry later. Request url: %s\n",
+                request.getPathInfo());
     }
 
 //    private void sleepExponentially(int sleepTimes) {
@@ -192,18 +622,17 @@ public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
             return false;
         }
 
-        // Parse URL Path.
-        String[] urlParts = urlPath.split("/");
+        // Match URL Path against the API routes.
+        if (isGETRequest) {
+            getRequestHolder[0] = new SkierGETRequest();
+            getRequestType[0] = SkierRouter.routeGET(urlPath, request.getQueryString(), getRequestHolder[0]);
+        } else {
+            getRequestType[0] = SkierRouter.routePOST(urlPath);
+        }
 
-        // Check if URL Path is valid.
-        if (!hasValidPath(request.getQueryString(),
-                urlParts,
-                isGETRequest,
-                getRequestType,
-                getRequestHolder,
-                response)) {
+        if (getRequestType[0] == SkierRouter.noRoute) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            response.getWriter().printf("Unsupported path in url: %s | %s | %d\n", urlPath, Arrays.toString(urlParts), urlParts.length);
+            response.getWriter().printf("Unsupported path in url: %s\n", urlPath);
 
             return false;
         }
@@ -215,155 +644,21 @@ public class IkkyoneServlet extends javax.servlet.http.HttpServlet {
         return urlPath != null && urlPath.length() > 0;
     }
 
-    // Based on the API spec in: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#
-    private boolean hasValidPath(String queryStr,
-                                 String[] urlPath,
-                                 boolean isGetRequest,
-                                 Integer[] getRequestType,
-                                 SkierGETRequest[] getRequestHolder,
-                                 javax.servlet.http.HttpServletResponse response) throws IOException {
-        // Validate the request url path according to the API spec
-        // urlPath  = "/1/seasons/2019/day/1/skier/123"
-        // urlParts = [, 1, seasons, 2019, day, 1, skier, 123]
-        if (isGetRequest) {
-            return isValidGETPath(queryStr,
-                    urlPath,
-                    getRequestType,
-                    getRequestHolder,
-                    response);
-        } else {
-            return isValidPOSTPath(urlPath);
-        }
-    }
-
-    private boolean isValidGETPath(String queryStr,
-                                   String[] urlPath,
-                                   Integer[] getRequestType,
-                                   SkierGETRequest[] getRequestHolder,
-                                   javax.servlet.http.HttpServletResponse response) throws IOException {
-        if (urlPath.length == 4) {
-            if (urlPath[1].equals("resort") &&
-                    urlPath[2].equals("day") &&
-                    urlPath[3].equals("top10vert")) {
-                getRequestType[0] = 1;
-
-                final List<NameValuePair> params = URLEncodedUtils.parse(queryStr, StandardCharsets.UTF_8);
-                SkierGETRequest request = new SkierGETRequest();
-
-                for (final NameValuePair param : params) {
-                    if (param.getName().equals("resort")) {
-                        request.resortID = param.getValue();
-                    } else if (param.getName().equals("dayID")) {
-                        request.dayID = Integer.parseInt(param.getValue());
-                        if (request.dayID < 1 || request.dayID > 366) {
-                            return false;
-                        }
-                    } else {
-                        logger.error("Detected unsupported query parameter type: " + param.getName() + ": " + param.getValue());
-                        return false;
-                    }
-                }
-
-                getRequestHolder[0] = request;
-
-                return true;
-            } else if (urlPath[1].equals("skiers") &&
-                    !urlPath[2].isEmpty() &&
-                    urlPath[3].equals("vertical")) {
-                getRequestType[0] = 2;
-
-                final List<NameValuePair> params = URLEncodedUtils.parse(queryStr, StandardCharsets.UTF_8);
-                SkierGETRequest request = new SkierGETRequest();
-                request.skierID = urlPath[2];
-
-                for (final NameValuePair param : params) {
-                    response.getWriter().println(param.getName() + ": " + param.getValue());
-                    if (param.getName().equals("resort")) {
-                        request.resortID = param.getValue();
-                    } else {
-                        logger.error("Detected unsupported query parameter type: " + param.getName() + ": " + param.getValue());
-                        return false;
-                    }
-                }
-
-                getRequestHolder[0] = request;
-
-                return true;
-            } else {
-                logger.error("Detected unsupported url path: " + Arrays.toString(urlPath));
-                return false;
-            }
-        } else if (urlPath.length == 7) {
-            if (urlPath[1].equals("skiers") &&
-                    !urlPath[2].isEmpty() &&
-                    urlPath[3].equals("days") &&
-                    !urlPath[4].isEmpty() &&
-                    urlPath[5].equals("skiers") &&
-                    !urlPath[6].isEmpty()) {
-                getRequestType[0] = 3;
-
-                SkierGETRequest request = new SkierGETRequest();
-                request.resortID = cleanPathParam(urlPath[2]);
-                request.dayID = Integer.parseInt(cleanPathParam(urlPath[4]));
-                request.skierID = cleanPathParam(urlPath[6]);
-
-                if (request.dayID < 1 || request.dayID > 366) {
-                    return false;
-                }
-
-                getRequestHolder[0] = request;
-
-                return true;
-            } else {
-                logger.error("Detected unsupported url path: " + Arrays.toString(urlPath));
-                return false;
-            }
-        } else {
-            logger.error("Detected unsupported url path: " + Arrays.toString(urlPath));
-            return false;
-        }
-    }
-
-    private boolean isValidPOSTPath(String[] urlPath) {
-        if (urlPath.length == 3) {
-            return urlPath[1].equals("skiers") &&
-                    urlPath[2].equals("liftrides");
-        }
-
-        return false;
-    }
-
-    // Check if the string can be converted into a Json object, and retrieve that object for further processing.
-    private boolean isBodyValidOnPost(javax.servlet.http.HttpServletRequest request,
+    // Bind the body straight from the request stream into a lift ride, validating it on the way.
+    private boolean isBodyValidOnPost(InputStream bodyIn,
                                       javax.servlet.http.HttpServletResponse response,
-                                      JsonNode[] outputNodeHolder) throws IOException {
-        String requestBody = getBodyStrOnPost(request.getReader());
-
-        try {
-            JsonNode node = mapper.readTree(requestBody);
-            outputNodeHolder[0] = node;
+                                      SkierPOSTRequest[] outputSkierRequestHolder) throws IOException {
+        SkierPOSTRequest skierRequest = new SkierPOSTRequest();
+        String[] errorHolder = new String[1];
 
-            return true;
-        } catch (IOException e) {
+        if (!SkierPOSTRequestParser.parse(bodyIn, skierRequest, errorHolder)) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write("Invalid body string in POST request.");
+            response.getWriter().printf("Invalid body in POST request: %s\n", errorHolder[0]);
 
             return false;
         }
-    }
-
-    private String getBodyStrOnPost(BufferedReader buffIn) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        String line;
+        outputSkierRequestHolder[0] = skierRequest;
 
-        while((line = buffIn.readLine()) != null) {
-            sb.append(line);
-        }
-
-        return sb.toString();
-    }
-
-    private String cleanPathParam(@NonNull final String pathParam) {
-        return pathParam.replaceAll("%20", " ");
+        return true;
     }
 }
@@ -0,0 +1,17 @@
+package server;
+
+// A store read refused by admission control. Part of the normal flow under overload, so it carries no stack trace.
+public class OverCapacityException extends RuntimeException {
+    private final static long serialVersionUID = 1L;
+
+    private final long retryAfterNS;
+
+    public OverCapacityException(long retryAfterNS) {
+        super("Over read capacity, retry after " + retryAfterNS + " ns", null, false, false);
+        this.retryAfterNS = retryAfterNS;
+    }
+
+    public long getRetryAfterNS() {
+        return this.retryAfterNS;
+    }
+}
@@ -0,0 +1,92 @@
+package server;
+
+import lombok.NonNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Collapses concurrent loads of the same key into one: the first caller runs the loader, callers that arrive while it
+// is in flight get the same result or exception. A key is dropped as soon as its load completes, so the map never
+// holds more than the loads in flight and a caller arriving afterwards loads again.
+public class SingleFlight<V> {
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder collapsedCount = new LongAdder();
+
+    // Runs the blocking loader on this thread, or waits for the load already in flight.
+    public V load(@NonNull final String key, @NonNull final Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = this.inFlight.putIfAbsent(key, flight);
+        if (existingFlight != null) {
+            this.collapsedCount.increment();
+            try {
+                return existingFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        this.loadCount.increment();
+        try {
+            V value = loader.get();
+            this.inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            this.inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Same as load, for loaders that complete later.
+    public CompletableFuture<V> loadAsync(@NonNull final String key, @NonNull final Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = this.inFlight.putIfAbsent(key, flight);
+        if (existingFlight != null) {
+            this.collapsedCount.increment();
+            return existingFlight;
+        }
+
+        this.loadCount.increment();
+        try {
+            loader.get().whenComplete((value, error) -> {
+                this.inFlight.remove(key, flight);
+                if (error != null) {
+                    flight.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            this.inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+
+        return flight;
+    }
+
+    // Callers from now on start a new load instead of joining the one in flight, e.g. after the key was written.
+    public void forget(@NonNull final String key) {
+        this.inFlight.remove(key);
+    }
+
+    // Loads actually run.
+    public long getLoadCount() {
+        return this.loadCount.sum();
+    }
+
+    // Callers that shared another caller's load instead of running their own.
+    public long getCollapsedCount() {
+        return this.collapsedCount.sum();
+    }
+
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+}
@@ -0,0 +1,119 @@
+package server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.NonNull;
+import model.SkierPOSTRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Single pass binder for POST /skiers/liftrides bodies.
+// Tokens are read straight off the request stream into the ride's fields, without building the body string or a
+// JsonNode tree first. Field names are canonicalized by the JsonFactory and the parser buffers are recycled per
+// thread, so the only allocations left per body are the parser itself and the resort ID string.
+public class SkierPOSTRequestParser {
+    private final static JsonFactory jsonFactory = new JsonFactory();
+
+    private final static int resortIDField = 1;
+    private final static int dayIDField = 1 << 1;
+    private final static int skierIDField = 1 << 2;
+    private final static int timeField = 1 << 3;
+    private final static int liftIDField = 1 << 4;
+    private final static int allFields = resortIDField | dayIDField | skierIDField | timeField | liftIDField;
+
+    // Bind the body into target, which may be reused across calls.
+    // Returns false and sets errorHolder if the body is not a JSON object with exactly the five ride fields, or if a
+    // value is outside SkierPOSTRequest's bounds.
+    public static boolean parse(@NonNull final InputStream in,
+                                @NonNull final SkierPOSTRequest target,
+                                @NonNull final String[] errorHolder) throws IOException {
+        errorHolder[0] = null;
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                errorHolder[0] = "Body is not a JSON object.";
+                return false;
+            }
+
+            int seenFields = 0;
+            String fieldName;
+            while ((fieldName = parser.nextFieldName()) != null) {
+                JsonToken valueToken = parser.nextToken();
+                int field;
+
+                switch (fieldName) {
+                    case "resortID":
+                        if (valueToken != JsonToken.VALUE_STRING) {
+                            errorHolder[0] = "resortID must be a string.";
+                            return false;
+                        }
+                        target.setResortID(parser.getText());
+                        field = resortIDField;
+                        break;
+                    case "dayID":
+                        target.setDayID(readInt(parser, valueToken, fieldName, errorHolder));
+                        field = dayIDField;
+                        break;
+                    case "skierID":
+                        target.setSkierID(readInt(parser, valueToken, fieldName, errorHolder));
+                        field = skierIDField;
+                        break;
+                    case "time":
+                        target.setTime(readInt(parser, valueToken, fieldName, errorHolder));
+                        field = timeField;
+                        break;
+                    case "liftID":
+                        target.setLiftID(readInt(parser, valueToken, fieldName, errorHolder));
+                        field = liftIDField;
+                        break;
+                    default:
+                        errorHolder[0] = "Unsupported field: " + fieldName;
+                        return false;
+                }
+
+                if (errorHolder[0] != null) {
+                    return false;
+                }
+                if ((seenFields & field) != 0) {
+                    errorHolder[0] = "Duplicated field: " + fieldName;
+                    return false;
+                }
+                seenFields |= field;
+            }
+
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                errorHolder[0] = "Body is not a JSON object.";
+                return false;
+            }
+            if (parser.nextToken() != null) {
+                errorHolder[0] = "Unexpected content after the JSON object.";
+                return false;
+            }
+            if (seenFields != allFields) {
+                errorHolder[0] = "Body must have resortID, dayID, skierID, time and liftID.";
+                return false;
+            }
+
+            errorHolder[0] = SkierPOSTRequest.getRangeError(target.getDayID(),
+                    target.getSkierID(),
+                    target.getTime(),
+                    target.getLiftID());
+            return errorHolder[0] == null;
+        } catch (JsonParseException e) {
+            errorHolder[0] = "Invalid JSON: " + e.getOriginalMessage();
+            return false;
+        }
+    }
+
+    private static int readInt(JsonParser parser, JsonToken valueToken, String fieldName, String[] errorHolder) throws IOException {
+        if (valueToken != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT) {
+            errorHolder[0] = fieldName + " must be an integer.";
+            return 0;
+        }
+
+        return parser.getIntValue();
+    }
+}
@@ -0,0 +1,271 @@
+package server;
+
+import lombok.NonNull;
+import model.SkierGETRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Precompiled route table for the SkiDataAPI paths: https://app.swaggerhub.com/apis/cloud-perf/SkiDataAPI/1.13#
+// Route templates are split into segments once. Requests are matched segment by segment in place on the path and
+// query strings, integer IDs are parsed straight from the characters, and the only strings created are the captured
+// values themselves. Percent-encoded values are decoded, plain ones are a single substring.
+public class SkierRouter {
+    public final static int noRoute = 0;
+    // GET /resort/day/top10vert?resort={resortID}&dayID={dayID}
+    public final static int topVerticalsRoute = 1;
+    // GET /skiers/{skierID}/vertical?resort={resortID}
+    public final static int skierResortTotalsRoute = 2;
+    // GET /skiers/{resortID}/days/{dayID}/skiers/{skierID}
+    public final static int skierDayVerticalRoute = 3;
+    // POST /skiers/liftrides
+    public final static int liftRidesRoute = 4;
+    // GET /metrics, the server's MetricsRegistry as plain text.
+    public final static int metricsRoute = 5;
+    public final static int routeCount = 6;
+
+    // Indexed by route.
+    private final static String[] routeNames = {
+            "noRoute", "topVerticals", "skierResortTotals", "skierDayVertical", "liftRides", "metrics"
+    };
+
+    private final static int minDayID = 1;
+    private final static int maxDayID = 366;
+
+    private final static Route[] getRoutes = {
+            new Route(topVerticalsRoute, "/resort/day/top10vert", "resort", "dayID"),
+            new Route(skierResortTotalsRoute, "/skiers/{skierID}/vertical", "resort"),
+            new Route(skierDayVerticalRoute, "/skiers/{resortID}/days/{dayID}/skiers/{skierID}"),
+            new Route(metricsRoute, "/metrics")
+    };
+    private final static Route[] postRoutes = {
+            new Route(liftRidesRoute, "/skiers/liftrides")
+    };
+
+    // Returns the matched GET route and fills target with its parameters, or noRoute.
+    public static int routeGET(String path, String query, @NonNull final SkierGETRequest target) {
+        return route(getRoutes, path, query, target);
+    }
+
+    // The POST API takes its parameters from the body, the query string is ignored.
+    public static int routePOST(String path) {
+        return route(postRoutes, path, null, new SkierGETRequest());
+    }
+
+    public static String getRouteName(int route) {
+        return routeNames[route];
+    }
+
+    private static int route(Route[] routes, String path, String query, SkierGETRequest target) {
+        if (path == null) {
+            return noRoute;
+        }
+
+        for (Route route : routes) {
+            target.skierID = null;
+            target.resortID = null;
+            target.dayID = 0;
+
+            if (route.matchPath(path, target) && route.matchQuery(query, target)) {
+                return route.id;
+            }
+        }
+
+        return noRoute;
+    }
+
+    // Value of chars [start, end) as an int from 0 to Integer.MAX_VALUE, the skier IDs a POST accepts, or -1 if it is not
+    // one.
+    private static int parseNonNegativeInt(String s, int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            int digit = c - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private static boolean isValidDayID(int dayID) {
+        return dayID >= minDayID && dayID <= maxDayID;
+    }
+
+    // Percent-decode chars [start, end), '+' is a space in query values only. Returns null on a malformed escape.
+    private static String decode(String s, int start, int end, boolean isPlusSpace) {
+        int i = start;
+        while (i < end && s.charAt(i) != '%' && !(isPlusSpace && s.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return s.substring(start, end);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(end - start);
+        for (i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end) {
+                    return null;
+                }
+                int high = Character.digit(s.charAt(i + 1), 16);
+                int low = Character.digit(s.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes.write((high << 4) | low);
+                i += 2;
+            } else if (isPlusSpace && c == '+') {
+                bytes.write(' ');
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private enum SegmentType {
+        LITERAL, SKIER_ID, RESORT_ID, DAY_ID
+    }
+
+    private static class Route {
+        private final int id;
+        private final SegmentType[] segmentTypes;
+        private final String[] literals;
+        private final String[] queryParams;
+
+        Route(int id, String template, String... queryParams) {
+            String[] segments = template.substring(1).split("/");
+
+            this.id = id;
+            this.segmentTypes = new SegmentType[segments.length];
+            this.literals = new String[segments.length];
+            this.queryParams = queryParams;
+
+            for (int i = 0; i < segments.length; i++) {
+                switch (segments[i]) {
+                    case "{skierID}":
+                        this.segmentTypes[i] = SegmentType.SKIER_ID;
+                        break;
+                    case "{resortID}":
+                        this.segmentTypes[i] = SegmentType.RESORT_ID;
+                        break;
+                    case "{dayID}":
+                        this.segmentTypes[i] = SegmentType.DAY_ID;
+                        break;
+                    default:
+                        this.segmentTypes[i] = SegmentType.LITERAL;
+                        this.literals[i] = segments[i];
+                }
+            }
+        }
+
+        boolean matchPath(String path, SkierGETRequest target) {
+            int length = path.length();
+            // Tolerate one trailing slash, like the old split based check did.
+            if (length > 1 && path.charAt(length - 1) == '/') {
+                length--;
+            }
+
+            int pos = 0;
+            for (int i = 0; i < this.segmentTypes.length; i++) {
+                if (pos >= length || path.charAt(pos) != '/') {
+                    return false;
+                }
+                int start = pos + 1;
+                int end = path.indexOf('/', start);
+                if (end < 0 || end > length) {
+                    end = length;
+                }
+                if (start == end) {
+                    return false;
+                }
+
+                switch (this.segmentTypes[i]) {
+                    case LITERAL:
+                        String literal = this.literals[i];
+                        if (end - start != literal.length() || !path.regionMatches(start, literal, 0, literal.length())) {
+                            return false;
+                        }
+                        break;
+                    case SKIER_ID:
+                        if (parseNonNegativeInt(path, start, end) < 0) {
+                            return false;
+                        }
+                        target.skierID = path.substring(start, end);
+                        break;
+                    case RESORT_ID:
+                        target.resortID = decode(path, start, end, false);
+                        if (target.resortID == null) {
+                            return false;
+                        }
+                        break;
+                    case DAY_ID:
+                        target.dayID = parseNonNegativeInt(path, start, end);
+                        if (!isValidDayID(target.dayID)) {
+                            return false;
+                        }
+                        break;
+                }
+                pos = end;
+            }
+
+            return pos == length;
+        }
+
+        // Every parameter must be one this route takes.
+        boolean matchQuery(String query, SkierGETRequest target) {
+            if (query == null || query.isEmpty()) {
+                return true;
+            }
+
+            int pos = 0;
+            while (pos <= query.length()) {
+                int end = query.indexOf('&', pos);
+                if (end < 0) {
+                    end = query.length();
+                }
+                int separator = query.indexOf('=', pos);
+                if (separator < 0 || separator > end) {
+                    separator = end;
+                }
+
+                if (end > pos && !matchQueryParam(query, pos, separator, Math.min(separator + 1, end), end, target)) {
+                    return false;
+                }
+                pos = end + 1;
+            }
+
+            return true;
+        }
+
+        private boolean matchQueryParam(String query, int nameStart, int nameEnd, int valueStart, int valueEnd, SkierGETRequest target) {
+            for (String param : this.queryParams) {
+                if (nameEnd - nameStart != param.length() || !query.regionMatches(nameStart, param, 0, param.length())) {
+                    continue;
+                }
+
+                if (param.equals("dayID")) {
+                    target.dayID = parseNonNegativeInt(query, valueStart, valueEnd);
+                    return isValidDayID(target.dayID);
+                }
+                target.resortID = decode(query, valueStart, valueEnd, true);
+                return target.resortID != null;
+            }
+
+            return false;
+        }
+    }
+}
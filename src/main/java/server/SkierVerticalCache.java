@@ -0,0 +1,207 @@
+package server;
+
+import lombok.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Read-through cache of per-(skier, resort) vertical reads in front of DDB, V being what is read: the daily vertical
+// map or the resort total. Cached values are shared by every caller that hits them and must not be modified.
+// Entries expire after ttlMS and the least recently used entries are evicted past maxEntries. Writes on this node
+// invalidate the entry, and a load that raced with an invalidation is not cached, so a node never serves its own
+// stale write. Writes landing through other nodes are picked up within ttlMS.
+// Concurrent misses on the same key share one load. A write forgets the load in flight, so a lookup after the write
+// never joins a read that may predate it.
+public class SkierVerticalCache<V> {
+    private final static int segmentCount = 16;
+
+    private final long ttlMS;
+    private final Segment<V>[] segments;
+    private final SingleFlight<V> loads = new SingleFlight<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    public SkierVerticalCache(int maxEntries, long ttlMS) {
+        this.ttlMS = ttlMS;
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        this.segments = segments;
+
+        int maxEntriesPerSegment = Math.max(1, maxEntries / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(maxEntriesPerSegment, this.evictionCount);
+        }
+    }
+
+    // The loader returns null if the item could not be read, which is not cached.
+    public V get(@NonNull final String skierID,
+                 @NonNull final String resortID,
+                 @NonNull final Supplier<V> loader) {
+        String key = toKey(skierID, resortID);
+        Segment<V> segment = segmentFor(key);
+        long[] invalidationVersionHolder = new long[1];
+
+        V cached = lookup(key, segment, invalidationVersionHolder);
+        if (cached != null) {
+            return cached;
+        }
+
+        return store(key, segment, invalidationVersionHolder[0], this.loads.load(key, loader));
+    }
+
+    // Same as get, for loaders that complete later.
+    public CompletableFuture<V> getAsync(@NonNull final String skierID,
+                                         @NonNull final String resortID,
+                                         @NonNull final Supplier<CompletableFuture<V>> loader) {
+        String key = toKey(skierID, resortID);
+        Segment<V> segment = segmentFor(key);
+        long[] invalidationVersionHolder = new long[1];
+
+        V cached = lookup(key, segment, invalidationVersionHolder);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return this.loads.loadAsync(key, loader)
+                .thenApply(value -> store(key, segment, invalidationVersionHolder[0], value));
+    }
+
+    public void invalidate(@NonNull final String skierID, @NonNull final String resortID) {
+        String key = toKey(skierID, resortID);
+        Segment<V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            segment.invalidationVersion++;
+            segment.entries.remove(key);
+        }
+        this.loads.forget(key);
+        this.invalidationCount.increment();
+    }
+
+    public double getHitRatio() {
+        long hits = this.hitCount.sum();
+        long lookups = hits + this.missCount.sum();
+
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    public long getExpirationCount() {
+        return this.expirationCount.sum();
+    }
+
+    // Misses that ran a load of their own.
+    public long getLoadCount() {
+        return this.loads.getLoadCount();
+    }
+
+    // Misses that shared a load already in flight for the same key.
+    public long getCollapsedLoadCount() {
+        return this.loads.getCollapsedCount();
+    }
+
+    public String getStatsSummary() {
+        return String.format("hits=%d misses=%d hitRatio=%.3f loads=%d collapsedLoads=%d evictions=%d expirations=%d invalidations=%d",
+                getHitCount(),
+                getMissCount(),
+                getHitRatio(),
+                getLoadCount(),
+                getCollapsedLoadCount(),
+                getEvictionCount(),
+                getExpirationCount(),
+                this.invalidationCount.sum());
+    }
+
+    // Returns the cached value, or null on a miss with the segment's invalidation version at the time of the miss.
+    private V lookup(String key, Segment<V> segment, long[] invalidationVersionHolder) {
+        synchronized (segment) {
+            CacheEntry<V> entry = segment.entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.loadTime < this.ttlMS) {
+                    this.hitCount.increment();
+                    return entry.value;
+                }
+                segment.entries.remove(key);
+                this.expirationCount.increment();
+            }
+            invalidationVersionHolder[0] = segment.invalidationVersion;
+        }
+
+        this.missCount.increment();
+        return null;
+    }
+
+    private V store(String key, Segment<V> segment, long invalidationVersion, V value) {
+        if (value == null) {
+            return null;
+        }
+
+        synchronized (segment) {
+            // Skip caching if a write landed while loading, the loaded value may predate it.
+            if (segment.invalidationVersion == invalidationVersion) {
+                segment.entries.put(key, new CacheEntry<>(value, System.currentTimeMillis()));
+            }
+        }
+
+        return value;
+    }
+
+    private Segment<V> segmentFor(String key) {
+        int hash = key.hashCode();
+
+        return this.segments[(hash ^ (hash >>> 16)) & (segmentCount - 1)];
+    }
+
+    private static String toKey(final String skierID, final String resortID) {
+        return skierID + "|" + resortID;
+    }
+
+    private static class CacheEntry<V> {
+        private final V value;
+        private final long loadTime;
+
+        CacheEntry(V value, long loadTime) {
+            this.value = value;
+            this.loadTime = loadTime;
+        }
+    }
+
+    private static class Segment<V> {
+        private final Map<String, CacheEntry<V>> entries;
+        private long invalidationVersion;
+
+        Segment(int maxEntries, LongAdder evictionCount) {
+            // Access ordered, so the eldest entry is the least recently used one.
+            this.entries = new LinkedHashMap<String, CacheEntry<V>>(16, 0.75f, true) {
+                private final static long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<V>> eldest) {
+                    if (size() > maxEntries) {
+                        evictionCount.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
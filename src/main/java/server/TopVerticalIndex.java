@@ -0,0 +1,133 @@
+package server;
+
+import lombok.NonNull;
+import model.SkierVertical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Incremental top-K index of daily verticals, one bucket per (resort, day).
+// Every successful lift ride write offers the skier's new daily total, so the bucket always holds the K largest
+// totals this node has written, without scanning the DDB table. Both offer and read are O(K), and memory is capped
+// at K entries per bucket and maxResortDays buckets.
+public class TopVerticalIndex {
+    private final int topK;
+    private final int maxResortDays;
+    private final Map<String, ResortDayTopK> buckets;
+
+    public TopVerticalIndex(int topK, int maxResortDays) {
+        this.topK = topK;
+        this.maxResortDays = maxResortDays;
+        this.buckets = new ConcurrentHashMap<>();
+    }
+
+    public void offer(@NonNull final String resortID, int dayID, int skierID, int dailyTotalVertical) {
+        String bucketKey = toBucketKey(resortID, dayID);
+        ResortDayTopK bucket = this.buckets.get(bucketKey);
+
+        if (bucket == null) {
+            if (this.buckets.size() >= this.maxResortDays) {
+                evictLeastRecentlyUpdatedBucket();
+            }
+            bucket = this.buckets.computeIfAbsent(bucketKey, k -> new ResortDayTopK(this.topK));
+        }
+
+        bucket.offer(skierID, dailyTotalVertical);
+    }
+
+    public List<SkierVertical> getTopK(@NonNull final String resortID, int dayID) {
+        ResortDayTopK bucket = this.buckets.get(toBucketKey(resortID, dayID));
+
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+
+        return bucket.snapshot();
+    }
+
+    public int getBucketCount() {
+        return this.buckets.size();
+    }
+
+    private void evictLeastRecentlyUpdatedBucket() {
+        String eldestKey = null;
+        long eldestUpdateTime = Long.MAX_VALUE;
+
+        for (Map.Entry<String, ResortDayTopK> entry : this.buckets.entrySet()) {
+            if (entry.getValue().lastUpdateTime < eldestUpdateTime) {
+                eldestUpdateTime = entry.getValue().lastUpdateTime;
+                eldestKey = entry.getKey();
+            }
+        }
+
+        if (eldestKey != null) {
+            this.buckets.remove(eldestKey);
+        }
+    }
+
+    private static String toBucketKey(final String resortID, int dayID) {
+        return resortID + "|" + dayID;
+    }
+
+    // Entries are kept sorted by vertical in descending order.
+    private static class ResortDayTopK {
+        private final int[] skierIDs;
+        private final int[] verticals;
+        private int size;
+        private volatile long lastUpdateTime;
+
+        ResortDayTopK(int topK) {
+            this.skierIDs = new int[topK];
+            this.verticals = new int[topK];
+            this.size = 0;
+            this.lastUpdateTime = System.currentTimeMillis();
+        }
+
+        synchronized void offer(int skierID, int dailyTotalVertical) {
+            this.lastUpdateTime = System.currentTimeMillis();
+
+            int pos = -1;
+            for (int i = 0; i < this.size; i++) {
+                if (this.skierIDs[i] == skierID) {
+                    pos = i;
+                    break;
+                }
+            }
+
+            if (pos >= 0) {
+                // Daily totals only grow, so a stale (smaller) total from a late writer is ignored.
+                if (dailyTotalVertical <= this.verticals[pos]) {
+                    return;
+                }
+            } else if (this.size < this.skierIDs.length) {
+                pos = this.size++;
+            } else if (dailyTotalVertical > this.verticals[this.size - 1]) {
+                pos = this.size - 1;
+            } else {
+                return;
+            }
+
+            // Bubble the entry up to keep the order.
+            while (pos > 0 && this.verticals[pos - 1] < dailyTotalVertical) {
+                this.skierIDs[pos] = this.skierIDs[pos - 1];
+                this.verticals[pos] = this.verticals[pos - 1];
+                pos--;
+            }
+            this.skierIDs[pos] = skierID;
+            this.verticals[pos] = dailyTotalVertical;
+        }
+
+        synchronized List<SkierVertical> snapshot() {
+            List<SkierVertical> result = new ArrayList<>(this.size);
+
+            for (int i = 0; i < this.size; i++) {
+                result.add(new SkierVertical(this.skierIDs[i], this.verticals[i]));
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import model.CapturedRequest;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Append-only capture of incoming requests for offline replay, one JSON line per request:
+//   {"arrivalTime":1600000000000,"offsetNS":1234567,"method":"POST","path":"/skiers/liftrides","query":null,"body":"{...}"}
+// Request threads only keep a copy of the body bytes they read anyway and offer the record to a bounded queue, a
+// background thread serializes and writes the records. A full queue drops the record and counts it instead of making
+// the request wait. A POST is recorded once handled, so offsets are close to but not strictly sorted and replays reorder
+// them. Only skier API paths are captured, a replay has nothing to send for the others.
+public class TrafficCapture {
+    private final static Logger logger = Logger.getLogger(TrafficCapture.class);
+
+    // Longer bodies are captured truncated, a lift ride is under 100 bytes.
+    private final static int maxBodyBytes = 4096;
+    private final static int writeBatchSize = 1024;
+    private final static long pollIntervalMS = 100;
+
+    private final String outputFilePath;
+    private final OutputStream out;
+    private final BlockingQueue<CapturedRequest> pendingRecords;
+    private final ObjectMapper mapper;
+    private final Thread writerThread;
+    private final long startTime;
+    private final long startTimeNS;
+    private volatile boolean isRunning;
+
+    private final LongAdder capturedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    public TrafficCapture(@NonNull final String outputFilePath, int queueCapacity) throws IOException {
+        this.outputFilePath = outputFilePath;
+        this.out = new BufferedOutputStream(new FileOutputStream(outputFilePath, true), 1 << 16);
+        this.pendingRecords = new ArrayBlockingQueue<>(queueCapacity);
+        this.mapper = new ObjectMapper();
+        this.startTime = System.currentTimeMillis();
+        this.startTimeNS = System.nanoTime();
+
+        this.isRunning = true;
+        this.writerThread = new Thread(this::writeLoop, "traffic-capture");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // Enabled with -Dikkyone.capture.path=<file>, null when capture is off or the file cannot be opened.
+    public static TrafficCapture fromSystemProperties() {
+        String outputFilePath = System.getProperty("ikkyone.capture.path");
+        if (outputFilePath == null || outputFilePath.isEmpty()) {
+            return null;
+        }
+
+        try {
+            TrafficCapture trafficCapture = new TrafficCapture(outputFilePath,
+                    Integer.getInteger("ikkyone.capture.queueCapacity", 65536));
+            logger.info("Capturing traffic to " + outputFilePath);
+            return trafficCapture;
+        } catch (IOException e) {
+            logger.error("Failed to open traffic capture file " + outputFilePath + ", capture is off.", e);
+            return null;
+        }
+    }
+
+    // arrivalTimeNS is System.nanoTime() when the request arrived.
+    public void capture(long arrivalTimeNS, @NonNull final String method, String path, String query, String body) {
+        if (!isCapturedPath(path)) {
+            return;
+        }
+
+        long offsetNS = arrivalTimeNS - this.startTimeNS;
+        CapturedRequest record = new CapturedRequest(this.startTime + TimeUnit.NANOSECONDS.toMillis(offsetNS),
+                offsetNS,
+                method,
+                path,
+                query,
+                body);
+
+        if (this.pendingRecords.offer(record)) {
+            this.capturedCount.increment();
+        } else {
+            this.droppedCount.increment();
+        }
+    }
+
+    // Wraps a request body stream, the bytes read through it are kept for capture.
+    public BodyTee newBodyTee(@NonNull final InputStream in) {
+        return new BodyTee(in);
+    }
+
+    public String getStatsSummary() {
+        return String.format("file=%s captured=%d dropped=%d pending=%d",
+                this.outputFilePath,
+                this.capturedCount.sum(),
+                this.droppedCount.sum(),
+                this.pendingRecords.size());
+    }
+
+    // Writes out what is still queued and closes the file.
+    public void shutdown() {
+        this.isRunning = false;
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while waiting for the traffic capture writer to stop.", e);
+        }
+
+        try {
+            while (!this.pendingRecords.isEmpty()) {
+                writeBatch();
+            }
+            this.out.close();
+        } catch (IOException e) {
+            logger.error("Failed to write traffic capture to " + this.outputFilePath, e);
+        }
+
+        logger.info("Traffic capture stopped. " + getStatsSummary());
+    }
+
+    private static boolean isCapturedPath(String path) {
+        return path != null && (path.startsWith("/skiers/") || path.startsWith("/resort/"));
+    }
+
+    private void writeLoop() {
+        while (this.isRunning) {
+            try {
+                CapturedRequest record = this.pendingRecords.poll(pollIntervalMS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    this.out.flush();
+                    continue;
+                }
+                writeRecord(record);
+                writeBatch();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // Keep draining so request threads never see a full queue because of a broken file.
+                logger.error("Failed to write traffic capture to " + this.outputFilePath, e);
+            }
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        List<CapturedRequest> records = new ArrayList<>(writeBatchSize);
+        this.pendingRecords.drainTo(records, writeBatchSize);
+
+        for (CapturedRequest record : records) {
+            writeRecord(record);
+        }
+    }
+
+    private void writeRecord(CapturedRequest record) throws IOException {
+        this.out.write(this.mapper.writeValueAsBytes(record));
+        this.out.write('\n');
+    }
+
+    // Copies up to maxBodyBytes of what the servlet reads from the body, without reading anything more itself.
+    public static class BodyTee extends FilterInputStream {
+        private byte[] bytes = new byte[128];
+        private int length;
+
+        private BodyTee(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && this.length < maxBodyBytes) {
+                ensureCapacity(this.length + 1);
+                this.bytes[this.length++] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                keep(buffer, offset, read);
+            }
+            return read;
+        }
+
+        public String getBody() {
+            return new String(this.bytes, 0, this.length, StandardCharsets.UTF_8);
+        }
+
+        private void keep(byte[] buffer, int offset, int count) {
+            int kept = Math.min(count, maxBodyBytes - this.length);
+            if (kept <= 0) {
+                return;
+            }
+            ensureCapacity(this.length + kept);
+            System.arraycopy(buffer, offset, this.bytes, this.length, kept);
+            this.length += kept;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.min(maxBodyBytes, Math.max(this.bytes.length * 2, capacity)));
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package server;
+
+import lombok.NonNull;
+import model.MergedLiftRides;
+import model.SkierPOSTRequest;
+import org.apache.log4j.Logger;
+import utility.SkierStore;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-behind buffer for POST /skiers/liftrides.
+// Rides are acknowledged once buffered. Rides for the same (SkierID, ResortID) are merged in memory while they wait,
+// and every flush window the pending keys are written in batches through the SkierStore, one write per key no matter
+// how many rides it carries. The number of buffered rides is bounded, and submit() refuses new rides when the buffer
+// is full so the servlet can push back with 503. Rides whose write fails are buffered again, up to maxWriteAttempts
+// writes, after which they are logged and dropped so that a write the table always refuses does not hold capacity.
+public class WriteBehindPipeline {
+    private final static Logger logger = Logger.getLogger(WriteBehindPipeline.class);
+
+    // Same as the BatchWriteItem limit, the number of keys written concurrently per batch.
+    private final static int maxFlushBatchSize = 25;
+    private final static long statsLogIntervalMS = 60_000;
+    private final static int maxWriteAttempts = 5;
+    // How long shutdown keeps flushing what is left, the rest is dropped.
+    private final static long maxShutdownDrainMS = 30_000;
+
+    private final SkierStore skierStore;
+    private final int maxPendingRides;
+    private final long flushWindowMS;
+    private final Map<String, MergedLiftRides> pendingRides;
+    private final BlockingQueue<String> pendingKeys;
+    private final AtomicInteger pendingRideCount;
+    private final ScheduledExecutorService flushScheduler;
+
+    // Metrics.
+    private final LongAdder acceptedRideCount = new LongAdder();
+    private final LongAdder rejectedRideCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedKeyCount = new LongAdder();
+    private final LongAdder flushedRideCount = new LongAdder();
+    private final LongAdder failedKeyCount = new LongAdder();
+    private final LongAdder droppedRideCount = new LongAdder();
+    private final LongAdder totalFlushLatencyMS = new LongAdder();
+    private final AtomicLong maxFlushLatencyMS = new AtomicLong();
+    private final AtomicInteger lastFlushSize = new AtomicInteger();
+    private volatile long lastStatsLogTime = System.currentTimeMillis();
+
+    public WriteBehindPipeline(@NonNull final SkierStore skierStore, int maxPendingRides, long flushWindowMS) {
+        this.skierStore = skierStore;
+        this.maxPendingRides = maxPendingRides;
+        this.flushWindowMS = flushWindowMS;
+        this.pendingRides = new ConcurrentHashMap<>();
+        this.pendingKeys = new LinkedBlockingQueue<>();
+        this.pendingRideCount = new AtomicInteger();
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor();
+
+        this.flushScheduler.scheduleWithFixedDelay(this::flushSafely,
+                this.flushWindowMS,
+                this.flushWindowMS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Returns false if the buffer is full and the ride was not accepted.
+    public boolean submit(@NonNull final SkierPOSTRequest skierRequest) {
+        if (this.pendingRideCount.incrementAndGet() > this.maxPendingRides) {
+            this.pendingRideCount.decrementAndGet();
+            this.rejectedRideCount.increment();
+            return false;
+        }
+
+        String key = skierRequest.getSkierID() + "|" + skierRequest.getResortID();
+        Boolean[] isNewKeyHolder = new Boolean[] {false};
+        this.pendingRides.compute(key, (k, rides) -> {
+            if (rides == null) {
+                isNewKeyHolder[0] = true;
+                return MergedLiftRides.of(skierRequest);
+            }
+            rides.merge(skierRequest);
+            return rides;
+        });
+
+        // Only the ride that created the entry enqueues the key, later rides join it until it is flushed.
+        if (isNewKeyHolder[0]) {
+            this.pendingKeys.offer(key);
+        }
+        this.acceptedRideCount.increment();
+
+        return true;
+    }
+
+    public void shutdown() {
+        this.flushScheduler.shutdown();
+        try {
+            this.flushScheduler.awaitTermination(this.flushWindowMS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while waiting for the write-behind flusher to stop.", e);
+        }
+
+        // Drain what is left before going away, for as long as the table takes the writes.
+        long drainDeadline = System.currentTimeMillis() + maxShutdownDrainMS;
+        while (!this.pendingKeys.isEmpty() && System.currentTimeMillis() < drainDeadline) {
+            flush();
+        }
+        dropPending();
+
+        logger.info("Write-behind pipeline stopped. " + getStatsSummary());
+    }
+
+    public int getQueueDepth() {
+        return this.pendingKeys.size();
+    }
+
+    public int getPendingRideCount() {
+        return this.pendingRideCount.get();
+    }
+
+    public long getRejectedRideCount() {
+        return this.rejectedRideCount.sum();
+    }
+
+    public long getDroppedRideCount() {
+        return this.droppedRideCount.sum();
+    }
+
+    public String getStatsSummary() {
+        long flushes = this.flushCount.sum();
+        long flushedKeys = this.flushedKeyCount.sum();
+
+        return String.format("accepted=%d rejected=%d queueDepth=%d pendingRides=%d flushes=%d lastFlushSize=%d "
+                        + "avgFlushSize=%.1f ridesPerWrite=%.2f failedKeys=%d droppedRides=%d avgFlushLatencyMS=%.1f "
+                        + "maxFlushLatencyMS=%d",
+                this.acceptedRideCount.sum(),
+                this.rejectedRideCount.sum(),
+                getQueueDepth(),
+                getPendingRideCount(),
+                flushes,
+                this.lastFlushSize.get(),
+                flushes == 0 ? 0.0 : (double) flushedKeys / flushes,
+                flushedKeys == 0 ? 0.0 : (double) this.flushedRideCount.sum() / flushedKeys,
+                this.failedKeyCount.sum(),
+                this.droppedRideCount.sum(),
+                flushes == 0 ? 0.0 : (double) this.totalFlushLatencyMS.sum() / flushes,
+                this.maxFlushLatencyMS.get());
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // An exception would cancel the scheduled flushes, so never let one escape.
+            logger.error("Failed to flush write-behind buffer.", e);
+        }
+
+        if (System.currentTimeMillis() - this.lastStatsLogTime >= statsLogIntervalMS) {
+            this.lastStatsLogTime = System.currentTimeMillis();
+            logger.info("Write-behind stats: " + getStatsSummary());
+        }
+    }
+
+    private void flush() {
+        List<String> keys = new ArrayList<>();
+        this.pendingKeys.drainTo(keys);
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < keys.size(); i += maxFlushBatchSize) {
+            flushBatch(keys.subList(i, Math.min(keys.size(), i + maxFlushBatchSize)));
+        }
+
+        long latency = System.currentTimeMillis() - startTime;
+        this.flushCount.increment();
+        this.flushedKeyCount.add(keys.size());
+        this.lastFlushSize.set(keys.size());
+        this.totalFlushLatencyMS.add(latency);
+        this.maxFlushLatencyMS.accumulateAndGet(latency, Math::max);
+    }
+
+    private void flushBatch(List<String> keys) {
+        List<String> batchKeys = new ArrayList<>(keys.size());
+        List<MergedLiftRides> batchRides = new ArrayList<>(keys.size());
+
+        for (String key : keys) {
+            // Once removed, new rides for the key start a fresh entry and enqueue the key again.
+            MergedLiftRides rides = this.pendingRides.remove(key);
+            if (rides == null) {
+                continue;
+            }
+            this.pendingRideCount.addAndGet(-rides.getRideCount());
+            batchKeys.add(key);
+            batchRides.add(rides);
+        }
+
+        Set<MergedLiftRides> failedRides = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedRides.addAll(this.skierStore.batchUpdate(batchRides));
+
+        for (int i = 0; i < batchRides.size(); i++) {
+            MergedLiftRides rides = batchRides.get(i);
+            if (failedRides.contains(rides)) {
+                this.failedKeyCount.increment();
+                rides.setFailedWriteCount(rides.getFailedWriteCount() + 1);
+                if (rides.getFailedWriteCount() >= maxWriteAttempts) {
+                    drop(batchKeys.get(i), rides);
+                } else {
+                    requeue(batchKeys.get(i), rides);
+                }
+            } else {
+                this.flushedRideCount.add(rides.getRideCount());
+            }
+        }
+    }
+
+    private void drop(String key, MergedLiftRides rides) {
+        this.droppedRideCount.add(rides.getRideCount());
+        logger.error(String.format("Dropped %d rides of %s after %d failed writes.",
+                rides.getRideCount(),
+                key,
+                rides.getFailedWriteCount()));
+    }
+
+    // Drops what shutdown could not write in time.
+    private void dropPending() {
+        List<String> keys = new ArrayList<>();
+        this.pendingKeys.drainTo(keys);
+
+        for (String key : keys) {
+            MergedLiftRides rides = this.pendingRides.remove(key);
+            if (rides != null) {
+                this.pendingRideCount.addAndGet(-rides.getRideCount());
+                drop(key, rides);
+            }
+        }
+    }
+
+    // Put rides that could not be written back into the buffer, they count against the capacity again so that a
+    // struggling table pushes back on new POSTs instead of losing rides.
+    private void requeue(String key, MergedLiftRides rides) {
+        this.pendingRideCount.addAndGet(rides.getRideCount());
+
+        Boolean[] isNewKeyHolder = new Boolean[] {false};
+        this.pendingRides.compute(key, (k, pending) -> {
+            if (pending == null) {
+                isNewKeyHolder[0] = true;
+                return rides;
+            }
+            pending.merge(rides);
+            return pending;
+        });
+
+        if (isNewKeyHolder[0]) {
+            this.pendingKeys.offer(key);
+        }
+    }
+}
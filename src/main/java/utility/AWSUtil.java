@@ -3,17 +3,22 @@ package utility;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
+import model.MergedLiftRides;
 import model.SkierPOSTRequest;
 import org.apache.log4j.Logger;
 import server.IkkyoneServlet;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import static server.IkkyoneServlet.sqsQueueName;
 
@@ -23,9 +28,16 @@ public class AWSUtil {
     private final static SdkHttpClient sdkHttpClient = ApacheHttpClient.builder()
             .maxConnections(800)
             .build();
-    private final static DynamoDbClient dynamoDbClient = DynamoDbClient.builder()
+    private static volatile DynamoDbClient dynamoDbClient = DynamoDbClient.builder()
             .httpClient(sdkHttpClient)
             .build();
+    // Created on first use, only the async servlet mode needs it.
+    private static volatile DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final static ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ddb-async-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final static SqsClient sqsClient = SqsClient.builder()
             .httpClient(sdkHttpClient)
             .build();
@@ -38,8 +50,44 @@ public class AWSUtil {
     private final static String itemAttrLiftDays = "LiftDays";
     private final static String itemAttrLastUpdateTime = "LastUpdateTime";
     private final static String itemTmpAttrOldUpdateTime = "OldUpdateTime";
+    private final static String itemAttrCompactRides = "CompactRides";
+    private final static String itemAttrCompactVerticals = "CompactVerticals";
     private final static ObjectMapper mapper = new ObjectMapper();
 
+    private final static DDBWriteStats readModifyWriteStats = new DDBWriteStats();
+    private final static DDBWriteStats atomicUpdateStats = new DDBWriteStats();
+
+    // Metrics, see MetricsRegistry.
+    private final static MetricsRegistry.Timer ddbPutItemLatency = MetricsRegistry.serverMetrics.timer("ddb.putItem");
+    private final static MetricsRegistry.Timer ddbUpdateItemLatency = MetricsRegistry.serverMetrics.timer("ddb.updateItem");
+    private final static MetricsRegistry.Timer ddbGetItemLatency = MetricsRegistry.serverMetrics.timer("ddb.getItem");
+    private final static MetricsRegistry.Counter ddbConditionalCheckFailureCount = MetricsRegistry.serverMetrics.counter("ddb.conditionalCheckFailures");
+    private final static MetricsRegistry.Counter ddbBackoffCount = MetricsRegistry.serverMetrics.counter("ddb.backoff.count");
+    private final static MetricsRegistry.Counter ddbBackoffMS = MetricsRegistry.serverMetrics.counter("ddb.backoff.totalMS");
+    private final static MetricsRegistry.Timer sqsSendLatency = MetricsRegistry.serverMetrics.timer("sqs.send");
+    private final static MetricsRegistry.Timer sqsReceiveLatency = MetricsRegistry.serverMetrics.timer("sqs.receive");
+    private final static MetricsRegistry.Timer sqsDeleteLatency = MetricsRegistry.serverMetrics.timer("sqs.delete");
+
+    // Shared by every DDB write on this node. A write past its first attempt only retries while the budget allows.
+    private final static RetryBudget ddbRetryBudget = new RetryBudget(
+            Double.parseDouble(System.getProperty("ikkyone.retryBudget.ratio", "0.2")),
+            Integer.getInteger("ikkyone.retryBudget.minRetriesPerSecond", 10),
+            Integer.getInteger("ikkyone.retryBudget.maxSavedRetries", 100));
+
+    static {
+        registerWriteStatsGauges("ddb.readModifyWrite", readModifyWriteStats);
+        registerWriteStatsGauges("ddb.atomicUpdate", atomicUpdateStats);
+        MetricsRegistry.serverMetrics.gauge("ddb.retryBudget.balance", ddbRetryBudget::getBalance);
+        MetricsRegistry.serverMetrics.gauge("ddb.retryBudget.retries", ddbRetryBudget::getRetryCount);
+        MetricsRegistry.serverMetrics.gauge("ddb.retryBudget.exhausted", ddbRetryBudget::getExhaustedCount);
+    }
+
+    private static volatile DDBWriteMode ddbWriteMode =
+            DDBWriteMode.valueOf(System.getProperty("ikkyone.ddbWriteMode", DDBWriteMode.READ_MODIFY_WRITE.name()));
+    // Applies to READ_MODIFY_WRITE, atomic updates and whole-item puts always write number sets. Reads understand both.
+    private static volatile DDBItemEncoding ddbItemEncoding =
+            DDBItemEncoding.valueOf(System.getProperty("ikkyone.ddbItemEncoding", DDBItemEncoding.NUMBER_SETS.name()));
+
     public static boolean putItemDDB(@NonNull final String ddbTableName,
                                      @NonNull final Map<String, AttributeValue> item,
                                      @NonNull final Optional<String> conditionExpression,
@@ -53,14 +101,18 @@ public class AWSUtil {
         }
 
         PutItemRequest request = builder.build();
+        long startTimeNS = System.nanoTime();
         try {
             dynamoDbClient.putItem(request);
         } catch (ResourceNotFoundException e) {
             logger.error("Failed to find DDB Table - " + ddbTableName, e);
             return false;
         } catch (DynamoDbException e) {
+            countConditionalCheckFailure(e);
             logger.error("Failed to put item into DDB Table - " + ddbTableName, e);
             return false;
+        } finally {
+            ddbPutItemLatency.recordSince(startTimeNS);
         }
 
         return true;
@@ -92,14 +144,18 @@ public class AWSUtil {
         }
 
         UpdateItemRequest request = builder.build();
+        long startTimeNS = System.nanoTime();
         try {
             dynamoDbClient.updateItem(request);
         } catch (ResourceNotFoundException e) {
             logger.error("Failed to find DDB Table - " + ddbTableName, e);
             return false;
         } catch (DynamoDbException e) {
+            countConditionalCheckFailure(e);
             logger.error("Failed to update item in DDB Table - " + ddbTableName, e);
             return false;
+        } finally {
+            ddbUpdateItemLatency.recordSince(startTimeNS);
         }
 
         return true;
@@ -120,15 +176,45 @@ public class AWSUtil {
                 .key(itemKey)
                 .build();
 
+        long startTimeNS = System.nanoTime();
         try {
             return dynamoDbClient.getItem(request).item();
         } catch (DynamoDbException e) {
             logger.error("Failed to get item from DDB. Key: " + itemPrimaryHashKey + " | keyVal: " + itemPrimaryHashKeyVal, e);
+        } finally {
+            ddbGetItemLatency.recordSince(startTimeNS);
         }
 
         return null;
     }
 
+    // Swap in other DDB clients, e.g. local stand-ins for load tests.
+    public static void useDynamoDbClients(@NonNull final DynamoDbClient syncClient,
+                                          @NonNull final DynamoDbAsyncClient asyncClient) {
+        dynamoDbClient = syncClient;
+        dynamoDbAsyncClient = asyncClient;
+    }
+
+    private static DynamoDbAsyncClient getDynamoDbAsyncClient() {
+        if (dynamoDbAsyncClient == null) {
+            synchronized (AWSUtil.class) {
+                if (dynamoDbAsyncClient == null) {
+                    dynamoDbAsyncClient = DynamoDbAsyncClient.builder()
+                            .httpClient(NettyNioAsyncHttpClient.builder()
+                                    .maxConcurrency(Integer.getInteger("ikkyone.async.maxConnections", 800))
+                                    .build())
+                            .build();
+                }
+            }
+        }
+
+        return dynamoDbAsyncClient;
+    }
+
+    public static SqsClient getSqsClient() {
+        return sqsClient;
+    }
+
     public static void sendMsgToSQS(@NonNull final String queueName,
                                     @NonNull final String messageBody) {
         if (queueUrl == null) {
@@ -141,12 +227,15 @@ public class AWSUtil {
 //                .messageGroupId("group1")
                 .build();
 
+        long startTimeNS = System.nanoTime();
         try {
             sqsClient.sendMessage(request);
         } catch (SqsException e) {
             throw new RuntimeException(String.format("Failed to send message %s to queue %s",
                     messageBody,
                     queueName), e);
+        } finally {
+            sqsSendLatency.recordSince(startTimeNS);
         }
     }
 
@@ -159,11 +248,14 @@ public class AWSUtil {
                 .queueUrl(queueUrl)
                 .build();
 
+        long startTimeNS = System.nanoTime();
         try {
             return sqsClient.receiveMessage(request).messages();
         } catch (SqsException e) {
             throw new RuntimeException(String.format("Failed to get messages from queue %s",
                     queueName));
+        } finally {
+            sqsReceiveLatency.recordSince(startTimeNS);
         }
     }
 
@@ -178,24 +270,34 @@ public class AWSUtil {
                 .receiptHandle(msgReceiptHandle)
                 .build();
 
+        long startTimeNS = System.nanoTime();
         try {
             sqsClient.deleteMessage(request);
         } catch (SqsException e ) {
             throw new RuntimeException(String.format("Failed to delete message %s from queue %s",
                     msgReceiptHandle,
                     queueName));
+        } finally {
+            sqsDeleteLatency.recordSince(startTimeNS);
         }
     }
 
     public static void sleepExponentially(int sleepTimes, long retryWaitTimeBaseMS) {
         try {
-            long sleepTime = Math.max(1, retryWaitTimeBaseMS * 2 * sleepTimes);
-            Thread.sleep(sleepTime);
+            Thread.sleep(getBackoffMS(sleepTimes, retryWaitTimeBaseMS));
         } catch (InterruptedException e) {
             return;
         }
     }
 
+    // Somewhere between half and all of retryWaitTimeBaseMS * 2 * sleepTimes, so callers that failed together don't
+    // all come back at the same moment.
+    public static long getBackoffMS(int sleepTimes, long retryWaitTimeBaseMS) {
+        long backoffMS = Math.max(1, retryWaitTimeBaseMS * 2 * sleepTimes);
+
+        return backoffMS / 2 + ThreadLocalRandom.current().nextLong(backoffMS - backoffMS / 2 + 1);
+    }
+
     public boolean publishToSQS(@NonNull final SkierPOSTRequest skierRequest) {
         try {
             String sqsMessageBody = mapper.writeValueAsString(skierRequest);
@@ -208,18 +310,338 @@ public class AWSUtil {
         }
     }
 
+    public static DDBWriteMode getDDBWriteMode() {
+        return ddbWriteMode;
+    }
+
+    public static void setDDBWriteMode(@NonNull final DDBWriteMode writeMode) {
+        ddbWriteMode = writeMode;
+    }
+
+    public static DDBItemEncoding getDDBItemEncoding() {
+        return ddbItemEncoding;
+    }
+
+    public static void setDDBItemEncoding(@NonNull final DDBItemEncoding itemEncoding) {
+        ddbItemEncoding = itemEncoding;
+    }
+
+    public static DDBWriteStats getDDBWriteStats(@NonNull final DDBWriteMode writeMode) {
+        return writeMode == DDBWriteMode.ATOMIC_UPDATE ? atomicUpdateStats : readModifyWriteStats;
+    }
+
     public static boolean writeToDDB(@NonNull final SkierPOSTRequest skierRequest) {
+        return writeToDDB(Collections.singletonList(skierRequest));
+    }
+
+    // Applies rides of one (SkierID, ResortID) in a single write, see SkierWriteSequencer.
+    public static boolean writeToDDB(@NonNull final List<SkierPOSTRequest> skierRequests) {
+        if (ddbWriteMode == DDBWriteMode.ATOMIC_UPDATE) {
+            return writeToDDBAtomically(skierRequests);
+        } else if (ddbItemEncoding == DDBItemEncoding.COMPACT) {
+            return writeToDDBCompactly(skierRequests);
+        }
+
+        return writeToDDBWithReadModifyWrite(skierRequests);
+    }
+
+    private static boolean writeToDDBAtomically(@NonNull final List<SkierPOSTRequest> skierRequests) {
+        MergedLiftRides rides = MergedLiftRides.of(skierRequests.get(0));
+        for (int i = 1; i < skierRequests.size(); i++) {
+            rides.merge(skierRequests.get(i));
+        }
+
+        return writeMergedRidesToDDB(rides);
+    }
+
+    // Apply the rides with one UpdateItem and no prior read: ADD merges into the number sets and each daily counter and
+    // the resort total are incremented in place, so concurrent writers for the same skier never conflict.
+    public static boolean writeMergedRidesToDDB(@NonNull final MergedLiftRides rides) {
+        UpdateItemRequest request = buildAtomicUpdateRequest(rides);
+
+        DynamoDbException[] errorHolder = new DynamoDbException[1];
+        int ddbCalls = 0;
+        int i;
+        ddbRetryBudget.onRequest();
+        for (i = 0; i < maxRetries; i++) {
+            ddbCalls++;
+            Map<String, AttributeValue> updatedAttributes = updateItemDDBReturningNew(request, errorHolder);
+
+            if (updatedAttributes != null) {
+                onSkierItemWritten(rides.getResortID(), rides.getSkierID(), rides.getDailyVerticals().keySet(), updatedAttributes);
+                atomicUpdateStats.recordWrite(true, ddbCalls, i);
+                return true;
+            } else if (errorHolder[0] != null && isValidationError(errorHolder[0])) {
+                // The nested counter path is invalid until the DailyTotalVerticals map exists, which is only the case
+                // for a new item. Create the map idempotently and try again right away.
+                ddbCalls++;
+                updateItemDDBReturningNew(buildInitDailyTotalVerticalsRequest(request.key()), errorHolder);
+            } else if (errorHolder[0] instanceof ConditionalCheckFailedException) {
+                // The item predates the resort total, see buildAtomicUpdateRequest. Set it once and try again right away.
+                ddbCalls += 2;
+                backfillResortTotalVertical(request.key());
+            } else if (!backOffDDBWrite(i)) {
+                break;
+            }
+        }
+
+        atomicUpdateStats.recordWrite(false, ddbCalls, Math.min(i, maxRetries - 1));
+        return false;
+    }
+
+    // Same as writeMergedRidesToDDB on the async client, retries are scheduled instead of sleeping on a thread.
+    public static CompletableFuture<Boolean> writeMergedRidesToDDBAsync(@NonNull final MergedLiftRides rides) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ddbRetryBudget.onRequest();
+        attemptAtomicUpdateAsync(rides, buildAtomicUpdateRequest(rides), 0, 1, result);
+
+        return result;
+    }
+
+    private static void attemptAtomicUpdateAsync(@NonNull final MergedLiftRides rides,
+                                                 @NonNull final UpdateItemRequest request,
+                                                 int attempt,
+                                                 int ddbCalls,
+                                                 @NonNull final CompletableFuture<Boolean> result) {
+        long startTimeNS = System.nanoTime();
+        getDynamoDbAsyncClient().updateItem(request).whenComplete((response, error) -> {
+            ddbUpdateItemLatency.recordSince(startTimeNS);
+            if (error == null) {
+                onSkierItemWritten(rides.getResortID(), rides.getSkierID(), rides.getDailyVerticals().keySet(), response.attributes());
+                atomicUpdateStats.recordWrite(true, ddbCalls, attempt);
+                result.complete(true);
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            boolean isSetupStep = cause instanceof ConditionalCheckFailedException
+                    || (cause instanceof DynamoDbException && isValidationError((DynamoDbException) cause));
+            // Like backOffDDBWrite, only a retry after a backoff spends the retry budget, the setup steps do not.
+            if (attempt + 1 >= maxRetries || (!isSetupStep && !ddbRetryBudget.tryRetry())) {
+                logger.error("Failed to update item in DDB Table - " + IkkyoneServlet.ddbTableName, error);
+                atomicUpdateStats.recordWrite(false, ddbCalls, attempt);
+                result.complete(false);
+                return;
+            }
+
+            if (cause instanceof DynamoDbException && isValidationError((DynamoDbException) cause)) {
+                // See writeMergedRidesToDDB, create the DailyTotalVerticals map and try again right away.
+                getDynamoDbAsyncClient().updateItem(buildInitDailyTotalVerticalsRequest(request.key()))
+                        .whenComplete((initResponse, initError) ->
+                                attemptAtomicUpdateAsync(rides, request, attempt + 1, ddbCalls + 2, result));
+            } else if (cause instanceof ConditionalCheckFailedException) {
+                // See writeMergedRidesToDDB, set the resort total and try again right away.
+                backfillResortTotalVerticalAsync(request.key())
+                        .whenComplete((backfillResponse, backfillError) ->
+                                attemptAtomicUpdateAsync(rides, request, attempt + 1, ddbCalls + 3, result));
+            } else {
+                long backoffMS = getBackoffMS(attempt, retryWaitTimeBaseMS);
+                ddbBackoffCount.increment();
+                ddbBackoffMS.add(backoffMS);
+                retryScheduler.schedule(() -> attemptAtomicUpdateAsync(rides, request, attempt + 1, ddbCalls + 1, result),
+                        backoffMS,
+                        TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private static UpdateItemRequest buildAtomicUpdateRequest(@NonNull final MergedLiftRides rides) {
+        Map<String, String> attrNameAliases = new HashMap<>();
+        attrNameAliases.put("#" + itemAttrLiftTimes, itemAttrLiftTimes);
+        attrNameAliases.put("#" + itemAttrLiftIDs, itemAttrLiftIDs);
+        attrNameAliases.put("#" + itemAttrLiftDays, itemAttrLiftDays);
+        attrNameAliases.put("#" + itemAttrLastUpdateTime, itemAttrLastUpdateTime);
+        attrNameAliases.put("#" + IkkyoneServlet.itemAttrDailyTotalVerticals, IkkyoneServlet.itemAttrDailyTotalVerticals);
+        attrNameAliases.put("#" + IkkyoneServlet.itemAttrResortTotalVertical, IkkyoneServlet.itemAttrResortTotalVertical);
+
+        Map<String, AttributeValue> attrValueAliases = new HashMap<>();
+        attrValueAliases.put(":totalVertical", AttributeValue.builder().n(Integer.toString(rides.getTotalVertical())).build());
+        attrValueAliases.put(":liftTimes", AttributeValue.builder().ns(toNumberStrings(rides.getLiftTimes())).build());
+        attrValueAliases.put(":liftIDs", AttributeValue.builder().ns(toNumberStrings(rides.getLiftIDs())).build());
+        attrValueAliases.put(":liftDays", AttributeValue.builder().ns(toNumberStrings(rides.getDailyVerticals().keySet())).build());
+        attrValueAliases.put(":zero", AttributeValue.builder().n("0").build());
+        attrValueAliases.put(":now", AttributeValue.builder().n(Long.toString(System.currentTimeMillis())).build());
+
+        // LastUpdateTime is still bumped so that concurrent READ_MODIFY_WRITE writers detect the change.
+        StringBuilder builder = new StringBuilder();
+        builder.append("ADD #" + itemAttrLiftTimes + " :liftTimes, ");
+        builder.append("#" + itemAttrLiftIDs + " :liftIDs, ");
+        builder.append("#" + itemAttrLiftDays + " :liftDays, ");
+        builder.append("#" + IkkyoneServlet.itemAttrResortTotalVertical + " :totalVertical ");
+        builder.append("SET #" + itemAttrLastUpdateTime + " = :now");
+        for (Map.Entry<Integer, Integer> dailyVertical : rides.getDailyVerticals().entrySet()) {
+            String dayPath = "#" + IkkyoneServlet.itemAttrDailyTotalVerticals + ".#day" + dailyVertical.getKey();
+            attrNameAliases.put("#day" + dailyVertical.getKey(), Integer.toString(dailyVertical.getKey()));
+            attrValueAliases.put(":vertical" + dailyVertical.getKey(),
+                    AttributeValue.builder().n(Integer.toString(dailyVertical.getValue())).build());
+            builder.append(", " + dayPath + " = if_not_exists(" + dayPath + ", :zero) + :vertical" + dailyVertical.getKey());
+        }
+
+        // ADD on a missing total starts it from this write alone, which is only right for a new item. An item written
+        // before the total was kept fails the condition and gets it backfilled first.
+        String conditionExpression = "attribute_exists(#" + IkkyoneServlet.itemAttrResortTotalVertical + ")"
+                + " OR attribute_not_exists(#" + itemAttrLastUpdateTime + ")";
+
+        return UpdateItemRequest.builder()
+                .tableName(IkkyoneServlet.ddbTableName)
+                .key(toItemKey(Integer.toString(rides.getSkierID()), rides.getResortID()))
+                .updateExpression(builder.toString())
+                .conditionExpression(conditionExpression)
+                .expressionAttributeNames(attrNameAliases)
+                .expressionAttributeValues(attrValueAliases)
+                // The whole item, so that a CompactVerticals array left by the compact encoding is summed in the
+                // daily totals reported to the top verticals index. Returned values cost no capacity.
+                .returnValues(ReturnValue.ALL_NEW)
+                .build();
+    }
+
+    // Sets the resort total of an item written before it was kept, from the days on the item. Every writer but the
+    // atomic update sets the total itself and the atomic update is refused until it exists, so the days read cannot
+    // change without the total appearing, and the write is conditional on it still being absent.
+    private static void backfillResortTotalVertical(@NonNull final Map<String, AttributeValue> itemKey) {
+        Map<String, Integer> dailyVerticals = getDailyVerticalsFromDB(itemKey.get(IkkyoneServlet.itemPrimaryHashKey).s(),
+                itemKey.get(IkkyoneServlet.itemPrimarySortKey).s());
+        if (dailyVerticals != null) {
+            updateItemDDBReturningNew(buildBackfillResortTotalVerticalRequest(itemKey, dailyVerticals), new DynamoDbException[1]);
+        }
+    }
+
+    // Same as backfillResortTotalVertical on the async client, completes once it was attempted.
+    private static CompletableFuture<Void> backfillResortTotalVerticalAsync(@NonNull final Map<String, AttributeValue> itemKey) {
+        return getDailyVerticalsFromDBAsync(itemKey.get(IkkyoneServlet.itemPrimaryHashKey).s(),
+                itemKey.get(IkkyoneServlet.itemPrimarySortKey).s())
+                .thenCompose(dailyVerticals -> dailyVerticals == null
+                        ? CompletableFuture.completedFuture(null)
+                        : getDynamoDbAsyncClient().updateItem(buildBackfillResortTotalVerticalRequest(itemKey, dailyVerticals)))
+                .handle((response, error) -> null);
+    }
+
+    private static UpdateItemRequest buildBackfillResortTotalVerticalRequest(@NonNull final Map<String, AttributeValue> itemKey,
+                                                                             @NonNull final Map<String, Integer> dailyVerticals) {
+        Map<String, String> attrNameAliases = new HashMap<>();
+        attrNameAliases.put("#" + IkkyoneServlet.itemAttrResortTotalVertical, IkkyoneServlet.itemAttrResortTotalVertical);
+
+        Map<String, AttributeValue> attrValueAliases = new HashMap<>();
+        attrValueAliases.put(":totalVertical",
+                AttributeValue.builder().n(Integer.toString(sumVerticals(dailyVerticals))).build());
+
+        return UpdateItemRequest.builder()
+                .tableName(IkkyoneServlet.ddbTableName)
+                .key(itemKey)
+                .updateExpression("SET #" + IkkyoneServlet.itemAttrResortTotalVertical + " = :totalVertical")
+                .conditionExpression("attribute_not_exists(#" + IkkyoneServlet.itemAttrResortTotalVertical + ")")
+                .expressionAttributeNames(attrNameAliases)
+                .expressionAttributeValues(attrValueAliases)
+                .build();
+    }
+
+    private static UpdateItemRequest buildInitDailyTotalVerticalsRequest(@NonNull final Map<String, AttributeValue> itemKey) {
+        Map<String, String> attrNameAliases = new HashMap<>();
+        attrNameAliases.put("#" + IkkyoneServlet.itemAttrDailyTotalVerticals, IkkyoneServlet.itemAttrDailyTotalVerticals);
+
+        Map<String, AttributeValue> attrValueAliases = new HashMap<>();
+        attrValueAliases.put(":emptyMap", AttributeValue.builder().m(new HashMap<>()).build());
+
+        return UpdateItemRequest.builder()
+                .tableName(IkkyoneServlet.ddbTableName)
+                .key(itemKey)
+                .updateExpression("SET #" + IkkyoneServlet.itemAttrDailyTotalVerticals
+                        + " = if_not_exists(#" + IkkyoneServlet.itemAttrDailyTotalVerticals + ", :emptyMap)")
+                .expressionAttributeNames(attrNameAliases)
+                .expressionAttributeValues(attrValueAliases)
+                .build();
+    }
+
+    private static List<String> toNumberStrings(@NonNull final Collection<Integer> numbers) {
+        List<String> numberStrings = new ArrayList<>(numbers.size());
+        numbers.forEach(number -> numberStrings.add(Integer.toString(number)));
+
+        return numberStrings;
+    }
+
+    // On failure returns null with the error in errorHolder. Validation errors and failed conditions are expected by
+    // the callers and not logged.
+    private static Map<String, AttributeValue> updateItemDDBReturningNew(@NonNull final UpdateItemRequest request,
+                                                                         @NonNull final DynamoDbException[] errorHolder) {
+        errorHolder[0] = null;
+
+        long startTimeNS = System.nanoTime();
+        try {
+            return dynamoDbClient.updateItem(request).attributes();
+        } catch (DynamoDbException e) {
+            errorHolder[0] = e;
+            if (!isValidationError(e) && !(e instanceof ConditionalCheckFailedException)) {
+                logger.error("Failed to update item in DDB Table - " + IkkyoneServlet.ddbTableName, e);
+            }
+            return null;
+        } finally {
+            ddbUpdateItemLatency.recordSince(startTimeNS);
+        }
+    }
+
+    // A write that lost the race on its LastUpdateTime condition to a concurrent writer.
+    private static void countConditionalCheckFailure(@NonNull final DynamoDbException e) {
+        if (e instanceof ConditionalCheckFailedException) {
+            ddbConditionalCheckFailureCount.increment();
+        }
+    }
+
+    // Wait before the next write attempt on the item. Returns false without waiting if there is no attempt left or the
+    // retry budget is spent, the write then fails.
+    private static boolean backOffDDBWrite(int attempt) {
+        if (attempt + 1 >= maxRetries || !ddbRetryBudget.tryRetry()) {
+            return false;
+        }
+
+        long backoffMS = getBackoffMS(attempt, retryWaitTimeBaseMS);
+        ddbBackoffCount.increment();
+        ddbBackoffMS.add(backoffMS);
+        try {
+            Thread.sleep(backoffMS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    // Writes, failed writes, DDB calls and retries of a write mode, retries / writes is the average retries per write.
+    private static void registerWriteStatsGauges(@NonNull final String prefix, @NonNull final DDBWriteStats writeStats) {
+        MetricsRegistry.serverMetrics.gauge(prefix + ".writes", writeStats::getWriteCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".failedWrites", writeStats::getFailedWriteCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".ddbCalls", writeStats::getDdbCallCount);
+        MetricsRegistry.serverMetrics.gauge(prefix + ".retries", writeStats::getRetryCount);
+    }
+
+    private static boolean isValidationError(@NonNull final DynamoDbException e) {
+        return e.awsErrorDetails() != null && "ValidationException".equals(e.awsErrorDetails().errorCode());
+    }
+
+    private static Map<String, AttributeValue> toItemKey(@NonNull final String itemPrimaryHashKeyVal,
+                                                         @NonNull final String itemPrimarySortKeyVal) {
+        Map<String, AttributeValue> itemKey = new HashMap<>();
+        itemKey.put(IkkyoneServlet.itemPrimaryHashKey, AttributeValue.builder().s(itemPrimaryHashKeyVal).build());
+        itemKey.put(IkkyoneServlet.itemPrimarySortKey, AttributeValue.builder().s(itemPrimarySortKeyVal).build());
+
+        return itemKey;
+    }
+
+    private static boolean writeToDDBWithReadModifyWrite(@NonNull final List<SkierPOSTRequest> skierRequests) {
+        final SkierPOSTRequest skierRequest = skierRequests.get(0);
         final String itemPrimaryHashKeyVal = Integer.toString(skierRequest.getSkierID());
         final String itemPrimarySortKeyVal = skierRequest.getResortID();
+        final Set<Integer> dayIDs = getDayIDs(skierRequests);
         Long[] oldUpdateTimeHolder = new Long[1];
         Boolean[] itemExistCheckerHolder = new Boolean[1];
 
         // Perform exponential retries in case of race condition.
-        for (int i = 0; i < maxRetries; i++) {
+        int i;
+        ddbRetryBudget.onRequest();
+        for (i = 0; i < maxRetries; i++) {
             // Read from DDB to check if item exists.
             Map<String, AttributeValue> item = prepareDDBItem(itemPrimaryHashKeyVal,
                     itemPrimarySortKeyVal,
-                    skierRequest,
+                    skierRequests,
                     oldUpdateTimeHolder,
                     itemExistCheckerHolder);
 
@@ -233,8 +655,15 @@ public class AWSUtil {
                         item,
                         Optional.of(conditionExpression),
                         logger)) {
-                    sleepExponentially(i, retryWaitTimeBaseMS);
+                    if (!backOffDDBWrite(i)) {
+                        break;
+                    }
                 } else {
+                    onSkierItemWritten(skierRequest.getResortID(),
+                            skierRequest.getSkierID(),
+                            dayIDs,
+                            item);
+                    readModifyWriteStats.recordWrite(true, (i + 1) * 2, i);
                     return true;
                 }
             } else {                                        // Item exists.
@@ -249,11 +678,16 @@ public class AWSUtil {
                 item.forEach((k, v) -> builder.append("#" + k + " = :" + k + ", "));
                 String updateExpression = builder.toString();
 
-                // Build condition expression.
-                String conditionExpression = "#" + itemAttrLastUpdateTime
-                        + " = :" + itemTmpAttrOldUpdateTime;
-                attrValueAliases.put(":" + itemTmpAttrOldUpdateTime,
-                        AttributeValue.builder().n(Long.toString(oldUpdateTimeHolder[0])).build());
+                // Build condition expression. An item without LastUpdateTime, e.g. one an atomic update only created the
+                // DailyTotalVerticals map on, exists but is unversioned, it must still not have one.
+                String conditionExpression;
+                if (oldUpdateTimeHolder[0] == null) {
+                    conditionExpression = "attribute_not_exists(#" + itemAttrLastUpdateTime + ")";
+                } else {
+                    conditionExpression = "#" + itemAttrLastUpdateTime + " = :" + itemTmpAttrOldUpdateTime;
+                    attrValueAliases.put(":" + itemTmpAttrOldUpdateTime,
+                            AttributeValue.builder().n(Long.toString(oldUpdateTimeHolder[0])).build());
+                }
 
                 if (!updateItemDDB(IkkyoneServlet.ddbTableName,
                         IkkyoneServlet.itemPrimaryHashKey,
@@ -265,19 +699,344 @@ public class AWSUtil {
                         attrNameAliases,
                         attrValueAliases,
                         logger)) {
-                    sleepExponentially(i, retryWaitTimeBaseMS);
+                    if (!backOffDDBWrite(i)) {
+                        break;
+                    }
                 } else {
+                    onSkierItemWritten(skierRequest.getResortID(),
+                            skierRequest.getSkierID(),
+                            dayIDs,
+                            item);
+                    readModifyWriteStats.recordWrite(true, (i + 1) * 2, i);
                     return true;
                 }
             }
         }
 
+        int retries = Math.min(i, maxRetries - 1);
+        readModifyWriteStats.recordWrite(false, (retries + 1) * 2, retries);
         return false;
     }
 
+    // Read-modify-write on the compact encoding. The ride is appended to the encoded ride list and the day's vertical is
+    // added in the fixed array, so a write copies two byte arrays instead of rebuilding every set and map. A legacy
+    // DailyTotalVerticals map, left by an earlier encoding or by atomic updates, is folded into the array and removed
+    // in the same conditional write. Legacy lift sets cannot be turned back into rides and are left as they are.
+    private static boolean writeToDDBCompactly(@NonNull final List<SkierPOSTRequest> skierRequests) {
+        final SkierPOSTRequest skierRequest = skierRequests.get(0);
+        final String itemPrimaryHashKeyVal = Integer.toString(skierRequest.getSkierID());
+        final String itemPrimarySortKeyVal = skierRequest.getResortID();
+
+        int i;
+        ddbRetryBudget.onRequest();
+        for (i = 0; i < maxRetries; i++) {
+            Map<String, AttributeValue> item = getItemFromDB(IkkyoneServlet.ddbTableName,
+                    IkkyoneServlet.itemPrimaryHashKey,
+                    itemPrimaryHashKeyVal,
+                    IkkyoneServlet.itemPrimarySortKey,
+                    itemPrimarySortKeyVal,
+                    logger);
+            if (item == null) {
+                if (!backOffDDBWrite(i)) {
+                    break;
+                }
+                continue;
+            }
+
+            byte[] newVerticals = toBytes(item.get(itemAttrCompactVerticals));
+            byte[] newRides = toBytes(item.get(itemAttrCompactRides));
+            AttributeValue legacyDailyVerticals = item.get(IkkyoneServlet.itemAttrDailyTotalVerticals);
+            try {
+                if (legacyDailyVerticals != null && legacyDailyVerticals.m() != null) {
+                    for (Map.Entry<String, AttributeValue> dailyVertical : legacyDailyVerticals.m().entrySet()) {
+                        newVerticals = CompactSkierRecord.addVertical(newVerticals,
+                                Integer.parseInt(dailyVertical.getKey()),
+                                Integer.parseInt(dailyVertical.getValue().n()));
+                    }
+                }
+                for (SkierPOSTRequest ride : skierRequests) {
+                    newVerticals = CompactSkierRecord.addVertical(newVerticals, ride.getDayID(), ride.getLiftID() * 10);
+                    newRides = CompactSkierRecord.appendRide(newRides, ride.getDayID(), ride.getTime(), ride.getLiftID());
+                }
+            } catch (IllegalArgumentException e) {
+                // A day outside the season, from the rides or from a legacy map. Retrying cannot help.
+                logger.error("Failed to encode rides of skier " + itemPrimaryHashKeyVal + " at " + itemPrimarySortKeyVal, e);
+                break;
+            }
+            AttributeValue newUpdateTime = AttributeValue.builder().n(Long.toString(System.currentTimeMillis())).build();
+            AttributeValue newTotalVertical = AttributeValue.builder()
+                    .n(Integer.toString(CompactSkierRecord.getTotalVertical(newVerticals)))
+                    .build();
+
+            boolean isWritten;
+            if (item.isEmpty()) {
+                Map<String, AttributeValue> newItem = toItemKey(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+                newItem.put(itemAttrCompactRides, AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(newRides)).build());
+                newItem.put(itemAttrCompactVerticals, AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(newVerticals)).build());
+                newItem.put(itemAttrLastUpdateTime, newUpdateTime);
+                newItem.put(IkkyoneServlet.itemAttrResortTotalVertical, newTotalVertical);
+
+                isWritten = putItemDDB(IkkyoneServlet.ddbTableName,
+                        newItem,
+                        Optional.of("attribute_not_exists(" + itemAttrLastUpdateTime + ")"),
+                        logger);
+            } else {
+                Map<String, String> attrNameAliases = new HashMap<>();
+                attrNameAliases.put("#" + itemAttrCompactRides, itemAttrCompactRides);
+                attrNameAliases.put("#" + itemAttrCompactVerticals, itemAttrCompactVerticals);
+                attrNameAliases.put("#" + itemAttrLastUpdateTime, itemAttrLastUpdateTime);
+                attrNameAliases.put("#" + IkkyoneServlet.itemAttrResortTotalVertical, IkkyoneServlet.itemAttrResortTotalVertical);
+
+                Map<String, AttributeValue> attrValueAliases = new HashMap<>();
+                attrValueAliases.put(":totalVertical", newTotalVertical);
+                attrValueAliases.put(":rides", AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(newRides)).build());
+                attrValueAliases.put(":verticals", AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(newVerticals)).build());
+                attrValueAliases.put(":now", newUpdateTime);
+                // Same as writeToDDBWithReadModifyWrite, an item without LastUpdateTime is unversioned.
+                AttributeValue oldUpdateTime = item.get(itemAttrLastUpdateTime);
+                String conditionExpression;
+                if (oldUpdateTime == null) {
+                    conditionExpression = "attribute_not_exists(#" + itemAttrLastUpdateTime + ")";
+                } else {
+                    conditionExpression = "#" + itemAttrLastUpdateTime + " = :" + itemTmpAttrOldUpdateTime;
+                    attrValueAliases.put(":" + itemTmpAttrOldUpdateTime, oldUpdateTime);
+                }
+
+                String updateExpression = "SET #" + itemAttrCompactRides + " = :rides, #"
+                        + itemAttrCompactVerticals + " = :verticals, #"
+                        + itemAttrLastUpdateTime + " = :now, #"
+                        + IkkyoneServlet.itemAttrResortTotalVertical + " = :totalVertical";
+                if (legacyDailyVerticals != null) {
+                    attrNameAliases.put("#" + IkkyoneServlet.itemAttrDailyTotalVerticals, IkkyoneServlet.itemAttrDailyTotalVerticals);
+                    updateExpression += " REMOVE #" + IkkyoneServlet.itemAttrDailyTotalVerticals;
+                }
+
+                isWritten = updateItemDDB(IkkyoneServlet.ddbTableName,
+                        IkkyoneServlet.itemPrimaryHashKey,
+                        itemPrimaryHashKeyVal,
+                        IkkyoneServlet.itemPrimarySortKey,
+                        itemPrimarySortKeyVal,
+                        updateExpression,
+                        Optional.of(conditionExpression),
+                        attrNameAliases,
+                        attrValueAliases,
+                        logger);
+            }
+
+            if (isWritten) {
+                Map<Integer, Integer> newDailyTotalVerticals = new HashMap<>();
+                for (SkierPOSTRequest ride : skierRequests) {
+                    newDailyTotalVerticals.put(ride.getDayID(), CompactSkierRecord.getVertical(newVerticals, ride.getDayID()));
+                }
+                IkkyoneServlet.onSkierRidesWritten(skierRequest.getSkierID(),
+                        skierRequest.getResortID(),
+                        newDailyTotalVerticals);
+                readModifyWriteStats.recordWrite(true, (i + 1) * 2, i);
+                return true;
+            }
+            if (!backOffDDBWrite(i)) {
+                break;
+            }
+        }
+
+        int retries = Math.min(i, maxRetries - 1);
+        readModifyWriteStats.recordWrite(false, (retries + 1) * 2, retries);
+        return false;
+    }
+
+    private static byte[] toBytes(AttributeValue attributeValue) {
+        return attributeValue == null || attributeValue.b() == null ? null : attributeValue.b().asByteArrayUnsafe();
+    }
+
+    private static void onSkierItemWritten(@NonNull final String resortID,
+                                           int skierID,
+                                           @NonNull final Collection<Integer> dayIDs,
+                                           @NonNull final Map<String, AttributeValue> writtenAttributes) {
+        // Both encodings, an item switched to another one mid-season carries part of a day's vertical in each.
+        Map<String, Integer> dailyTotalVerticals = toDailyVerticals(writtenAttributes);
+        Map<Integer, Integer> newDailyTotalVerticals = new HashMap<>();
+
+        for (Integer dayID : dayIDs) {
+            Integer dailyTotalVertical = dailyTotalVerticals.get(Integer.toString(dayID));
+
+            if (dailyTotalVertical != null) {
+                newDailyTotalVerticals.put(dayID, dailyTotalVertical);
+            }
+        }
+
+        IkkyoneServlet.onSkierRidesWritten(skierID, resortID, newDailyTotalVerticals);
+    }
+
+    // Returns null if the item could not be read, and an empty map if it doesn't exist.
+    public static Map<String, Integer> getDailyVerticalsFromDB(@NonNull final String itemPrimaryHashKeyVal,
+                                                              @NonNull final String itemPrimarySortKeyVal) {
+        Map<String, AttributeValue> item = getItemFromDB(IkkyoneServlet.ddbTableName,
+                IkkyoneServlet.itemPrimaryHashKey,
+                itemPrimaryHashKeyVal,
+                IkkyoneServlet.itemPrimarySortKey,
+                itemPrimarySortKeyVal,
+                logger);
+
+        return item == null ? null : toDailyVerticals(item);
+    }
+
+    // Same as getDailyVerticalsFromDB on the async client.
+    public static CompletableFuture<Map<String, Integer>> getDailyVerticalsFromDBAsync(@NonNull final String itemPrimaryHashKeyVal,
+                                                                                      @NonNull final String itemPrimarySortKeyVal) {
+        GetItemRequest request = GetItemRequest.builder()
+                .tableName(IkkyoneServlet.ddbTableName)
+                .key(toItemKey(itemPrimaryHashKeyVal, itemPrimarySortKeyVal))
+                .build();
+
+        long startTimeNS = System.nanoTime();
+        return getDynamoDbAsyncClient().getItem(request).handle((response, error) -> {
+            ddbGetItemLatency.recordSince(startTimeNS);
+            if (error != null) {
+                logger.error("Failed to get item from DDB. Key: " + IkkyoneServlet.itemPrimaryHashKey
+                        + " | keyVal: " + itemPrimaryHashKeyVal, error);
+                return null;
+            }
+
+            return toDailyVerticals(response.item());
+        });
+    }
+
+    // Reads only the resort total, so the read no longer grows with the days skied. Returns null if the item could not be
+    // read, and empty if it doesn't exist. An item written before the total was kept is read whole and summed once more,
+    // its next write sets the total.
+    public static Optional<Integer> getResortTotalVerticalFromDB(@NonNull final String itemPrimaryHashKeyVal,
+                                                                 @NonNull final String itemPrimarySortKeyVal) {
+        GetItemRequest request = buildResortTotalVerticalRequest(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+
+        Map<String, AttributeValue> item;
+        long startTimeNS = System.nanoTime();
+        try {
+            item = dynamoDbClient.getItem(request).item();
+        } catch (DynamoDbException e) {
+            logger.error("Failed to get item from DDB. Key: " + IkkyoneServlet.itemPrimaryHashKey
+                    + " | keyVal: " + itemPrimaryHashKeyVal, e);
+            return null;
+        } finally {
+            ddbGetItemLatency.recordSince(startTimeNS);
+        }
+
+        if (item.isEmpty() || item.containsKey(IkkyoneServlet.itemAttrResortTotalVertical)) {
+            return toResortTotalVertical(item);
+        }
+        Map<String, Integer> dailyVerticals = getDailyVerticalsFromDB(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+        return dailyVerticals == null ? null : Optional.of(sumVerticals(dailyVerticals));
+    }
+
+    // Same as getResortTotalVerticalFromDB on the async client.
+    public static CompletableFuture<Optional<Integer>> getResortTotalVerticalFromDBAsync(@NonNull final String itemPrimaryHashKeyVal,
+                                                                                         @NonNull final String itemPrimarySortKeyVal) {
+        GetItemRequest request = buildResortTotalVerticalRequest(itemPrimaryHashKeyVal, itemPrimarySortKeyVal);
+
+        long startTimeNS = System.nanoTime();
+        return getDynamoDbAsyncClient().getItem(request).handle((response, error) -> {
+            ddbGetItemLatency.recordSince(startTimeNS);
+            if (error != null) {
+                logger.error("Failed to get item from DDB. Key: " + IkkyoneServlet.itemPrimaryHashKey
+                        + " | keyVal: " + itemPrimaryHashKeyVal, error);
+                return null;
+            }
+
+            return response.item();
+        }).thenCompose(item -> {
+            if (item == null) {
+                return CompletableFuture.completedFuture(null);
+            } else if (item.isEmpty() || item.containsKey(IkkyoneServlet.itemAttrResortTotalVertical)) {
+                return CompletableFuture.completedFuture(toResortTotalVertical(item));
+            }
+            return getDailyVerticalsFromDBAsync(itemPrimaryHashKeyVal, itemPrimarySortKeyVal)
+                    .thenApply(dailyVerticals -> dailyVerticals == null ? null : Optional.of(sumVerticals(dailyVerticals)));
+        });
+    }
+
+    // LastUpdateTime is projected too, an item without the total still comes back non-empty and is told apart from a
+    // missing one. A projection trims what is sent and parsed, DDB still charges the read by the whole item's size.
+    private static GetItemRequest buildResortTotalVerticalRequest(@NonNull final String itemPrimaryHashKeyVal,
+                                                                  @NonNull final String itemPrimarySortKeyVal) {
+        Map<String, String> attrNameAliases = new HashMap<>();
+        attrNameAliases.put("#" + IkkyoneServlet.itemAttrResortTotalVertical, IkkyoneServlet.itemAttrResortTotalVertical);
+        attrNameAliases.put("#" + itemAttrLastUpdateTime, itemAttrLastUpdateTime);
+
+        return GetItemRequest.builder()
+                .tableName(IkkyoneServlet.ddbTableName)
+                .key(toItemKey(itemPrimaryHashKeyVal, itemPrimarySortKeyVal))
+                .projectionExpression("#" + IkkyoneServlet.itemAttrResortTotalVertical + ", #" + itemAttrLastUpdateTime)
+                .expressionAttributeNames(attrNameAliases)
+                .build();
+    }
+
+    private static Optional<Integer> toResortTotalVertical(@NonNull final Map<String, AttributeValue> item) {
+        AttributeValue totalVertical = item.get(IkkyoneServlet.itemAttrResortTotalVertical);
+
+        return totalVertical == null ? Optional.empty() : Optional.of(Integer.parseInt(totalVertical.n()));
+    }
+
+    private static int sumVerticals(@NonNull final Map<String, Integer> dailyVerticals) {
+        int totalVertical = 0;
+        for (Integer dailyVertical : dailyVerticals.values()) {
+            totalVertical += dailyVertical;
+        }
+
+        return totalVertical;
+    }
+
+    // Reads either encoding. An item mid-migration may carry both, each write lands in exactly one, so they are summed.
+    // Only the verticals array is decoded, never the rides.
+    private static Map<String, Integer> toDailyVerticals(@NonNull final Map<String, AttributeValue> item) {
+        Map<String, Integer> dailyVerticals = new HashMap<>();
+        byte[] compactVerticals = toBytes(item.get(itemAttrCompactVerticals));
+        if (compactVerticals != null) {
+            CompactSkierRecord.addDailyVerticals(compactVerticals, dailyVerticals);
+        }
+
+        AttributeValue dailyVerticalsAttr = item.get(IkkyoneServlet.itemAttrDailyTotalVerticals);
+        if (dailyVerticalsAttr != null && dailyVerticalsAttr.m() != null) {
+            dailyVerticalsAttr.m().forEach((day, vertical) ->
+                    dailyVerticals.merge(day, Integer.parseInt(vertical.n()), Integer::sum));
+        }
+
+        return dailyVerticals;
+    }
+
+    // Overwrite the item with exactly the given rides.
+    public static boolean putMergedRidesToDDB(@NonNull final MergedLiftRides rides) {
+        Map<String, AttributeValue> dailyVerticals = new HashMap<>();
+        rides.getDailyVerticals().forEach((day, vertical) ->
+                dailyVerticals.put(Integer.toString(day), AttributeValue.builder().n(Integer.toString(vertical)).build()));
+
+        Map<String, AttributeValue> item = toItemKey(Integer.toString(rides.getSkierID()), rides.getResortID());
+        item.put(itemAttrLiftTimes, AttributeValue.builder().ns(toNumberStrings(rides.getLiftTimes())).build());
+        item.put(itemAttrLiftIDs, AttributeValue.builder().ns(toNumberStrings(rides.getLiftIDs())).build());
+        item.put(itemAttrLiftDays, AttributeValue.builder().ns(toNumberStrings(rides.getDailyVerticals().keySet())).build());
+        item.put(IkkyoneServlet.itemAttrDailyTotalVerticals, AttributeValue.builder().m(dailyVerticals).build());
+        item.put(IkkyoneServlet.itemAttrResortTotalVertical, AttributeValue.builder().n(Integer.toString(rides.getTotalVertical())).build());
+        item.put(itemAttrLastUpdateTime, AttributeValue.builder().n(Long.toString(System.currentTimeMillis())).build());
+
+        if (!putItemDDB(IkkyoneServlet.ddbTableName, item, Optional.empty(), logger)) {
+            return false;
+        }
+
+        onSkierItemWritten(rides.getResortID(), rides.getSkierID(), rides.getDailyVerticals().keySet(), item);
+        return true;
+    }
+
+    private static Set<Integer> getDayIDs(@NonNull final List<SkierPOSTRequest> skierRequests) {
+        Set<Integer> dayIDs = new HashSet<>();
+        for (SkierPOSTRequest skierRequest : skierRequests) {
+            dayIDs.add(skierRequest.getDayID());
+        }
+
+        return dayIDs;
+    }
+
+    // The rides are all for the same item.
     private static Map<String, AttributeValue> prepareDDBItem(@NonNull final String itemPrimaryHashKeyVal,
                                                               @NonNull final String itemPrimarySortKeyVal,
-                                                              @NonNull final SkierPOSTRequest skierRequest,
+                                                              @NonNull final List<SkierPOSTRequest> skierRequests,
                                                               @NonNull final Long[] oldUpdateTimeHolder,
                                                               @NonNull final Boolean[] itemExistCheckerHolder) {
         Map<String, AttributeValue> item = getItemFromDB(IkkyoneServlet.ddbTableName,
@@ -291,8 +1050,6 @@ public class AWSUtil {
         Set<String> newLiftIDs = new HashSet<>();
         Set<String> newLiftDays = new HashSet<>();
         Map<String, AttributeValue> dailyVerticals = new HashMap<>();
-        String dayIDStr = Integer.toString(skierRequest.getDayID());
-        Integer newlyCumulativeVertical = skierRequest.getLiftID() * 10;
         long newUpdateTime = System.currentTimeMillis();
         Map<String, AttributeValue> newItem = new HashMap<>();
         if (item != null && !item.isEmpty()) {     // Item exists.
@@ -300,34 +1057,22 @@ public class AWSUtil {
             newItem.remove(IkkyoneServlet.itemPrimaryHashKey);
             newItem.remove(IkkyoneServlet.itemPrimarySortKey);
 
-            newLiftTimes = new HashSet<>(item.get(itemAttrLiftTimes).ns());
-            newLiftTimes.add(Integer.toString(skierRequest.getTime()));
-
-            newLiftIDs = new HashSet<>(item.get(itemAttrLiftIDs).ns());
-            newLiftIDs.add(Integer.toString(skierRequest.getLiftID()));
-
-            newLiftDays = new HashSet<>(item.get(itemAttrLiftDays).ns());
-            newLiftDays.add(dayIDStr);
+            // Items written with the compact encoding have none of the attributes below, they are started empty and
+            // the reader sums them with the compact ones.
+            newLiftTimes = toNumberSet(item.get(itemAttrLiftTimes));
+            newLiftIDs = toNumberSet(item.get(itemAttrLiftIDs));
+            newLiftDays = toNumberSet(item.get(itemAttrLiftDays));
 
-            dailyVerticals = new HashMap<>(item.get(IkkyoneServlet.itemAttrDailyTotalVerticals).m());
-            AttributeValue curDailyTotalVertical = dailyVerticals.get(dayIDStr);
-            Integer newDailyTotalVertical;
-            if (curDailyTotalVertical != null) {
-                newDailyTotalVertical = Integer.parseInt(curDailyTotalVertical.n()) + newlyCumulativeVertical;
-            } else {
-                newDailyTotalVertical = newlyCumulativeVertical;
+            AttributeValue curDailyVerticals = item.get(IkkyoneServlet.itemAttrDailyTotalVerticals);
+            if (curDailyVerticals != null && curDailyVerticals.m() != null) {
+                dailyVerticals = new HashMap<>(curDailyVerticals.m());
             }
-            dailyVerticals.put(dayIDStr, AttributeValue.builder().n(Integer.toString(newDailyTotalVertical)).build());
 
-            oldUpdateTimeHolder[0] = Long.parseLong(item.get(itemAttrLastUpdateTime).n());
+            // Null when the item has no LastUpdateTime yet, see writeToDDBWithReadModifyWrite.
+            AttributeValue oldUpdateTime = item.get(itemAttrLastUpdateTime);
+            oldUpdateTimeHolder[0] = oldUpdateTime == null ? null : Long.parseLong(oldUpdateTime.n());
             itemExistCheckerHolder[0] = true;
         } else {                                    // Item doesn't exist.
-            newLiftTimes.add(Integer.toString(skierRequest.getTime()));
-            newLiftIDs.add(Integer.toString(skierRequest.getLiftID()));
-            newLiftDays.add(Integer.toString(skierRequest.getDayID()));
-
-            dailyVerticals.put(dayIDStr, AttributeValue.builder().n(Integer.toString(newlyCumulativeVertical)).build());
-
             // Prepare key attributes only for DDB PutItem request.
             newItem.put(IkkyoneServlet.itemPrimaryHashKey, AttributeValue.builder().s(itemPrimaryHashKeyVal).build());
             newItem.put(IkkyoneServlet.itemPrimarySortKey, AttributeValue.builder().s(itemPrimarySortKeyVal).build());
@@ -335,15 +1080,36 @@ public class AWSUtil {
             itemExistCheckerHolder[0] = false;
         }
 
+        for (SkierPOSTRequest skierRequest : skierRequests) {
+            String dayIDStr = Integer.toString(skierRequest.getDayID());
+            newLiftTimes.add(Integer.toString(skierRequest.getTime()));
+            newLiftIDs.add(Integer.toString(skierRequest.getLiftID()));
+            newLiftDays.add(dayIDStr);
+
+            AttributeValue curDailyTotalVertical = dailyVerticals.get(dayIDStr);
+            int newDailyTotalVertical = skierRequest.getLiftID() * 10;
+            if (curDailyTotalVertical != null) {
+                newDailyTotalVertical += Integer.parseInt(curDailyTotalVertical.n());
+            }
+            dailyVerticals.put(dayIDStr, AttributeValue.builder().n(Integer.toString(newDailyTotalVertical)).build());
+        }
+
         newItem.put(itemAttrLiftTimes, AttributeValue.builder().ns(newLiftTimes).build());
         newItem.put(itemAttrLiftIDs, AttributeValue.builder().ns(newLiftIDs).build());
         newItem.put(itemAttrLiftDays, AttributeValue.builder().ns(newLiftDays).build());
         newItem.put(IkkyoneServlet.itemAttrDailyTotalVerticals, AttributeValue.builder().m(dailyVerticals).build());
         newItem.put(itemAttrLastUpdateTime, AttributeValue.builder().n(Long.toString(newUpdateTime)).build());
+        // Recomputed from every day rather than added to, so an item written before the total was kept gets it here.
+        newItem.put(IkkyoneServlet.itemAttrResortTotalVertical,
+                AttributeValue.builder().n(Integer.toString(sumVerticals(toDailyVerticals(newItem)))).build());
 
         return newItem;
     }
 
+    private static Set<String> toNumberSet(AttributeValue attributeValue) {
+        return attributeValue == null || attributeValue.ns() == null ? new HashSet<>() : new HashSet<>(attributeValue.ns());
+    }
+
     private static String getQueueUrl(@NonNull final String queueName) {
         GetQueueUrlRequest request = GetQueueUrlRequest.builder()
                 .queueName(queueName)
@@ -0,0 +1,196 @@
+package utility;
+
+import lombok.NonNull;
+import model.SkierPOSTRequest;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// Binary encoding of a skier's record at one resort, kept in two binary attributes so each can be read on its own.
+//
+// Verticals: [version:1][firstDayID:int32][dayCount:int32][vertical:int32 x dayCount]
+//   A fixed array over the range of days skied, so one day's vertical is read at a known offset and the season total
+//   is a sum over the array, without touching the rides. Days are limited to the season's 1..366, which bounds the
+//   array whatever days a skier rides on.
+// Rides:     [version:1][rideCount:int32][lastDayID:int32][lastTime:int32][ride...]
+//   Rides in arrival order, each as zigzag varint deltas of day and time from the previous ride, then the lift ID as
+//   a varint. The header carries the last ride, so appending copies the bytes and encodes one more ride.
+//
+// Both are immutable byte arrays, every change returns a new array.
+public class CompactSkierRecord {
+    private final static byte formatVersion = 1;
+    private final static int verticalsHeaderSize = 1 + 4 + 4;
+    private final static int ridesHeaderSize = 1 + 4 + 4 + 4;
+    // Three varints of at most 5 bytes each.
+    private final static int maxEncodedRideSize = 15;
+
+    public interface RideConsumer {
+        void accept(int dayID, int time, int liftID);
+    }
+
+    // Add vertical to the day's total, growing the day range if needed. verticals may be null for a new record.
+    // Throws IllegalArgumentException for a day outside the season.
+    public static byte[] addVertical(byte[] verticals, int dayID, int vertical) {
+        if (dayID < SkierPOSTRequest.minDayID || dayID > SkierPOSTRequest.maxDayID) {
+            throw new IllegalArgumentException("Day out of the season: " + dayID);
+        }
+
+        int firstDayID = dayID;
+        int dayCount = 0;
+        if (verticals != null) {
+            ByteBuffer buffer = readVerticalsHeader(verticals);
+            firstDayID = buffer.getInt(1);
+            dayCount = buffer.getInt(5);
+        }
+
+        int newFirstDayID = Math.min(firstDayID, dayID);
+        int newDayCount = Math.max(firstDayID + dayCount, dayID + 1) - newFirstDayID;
+        ByteBuffer newBuffer = ByteBuffer.allocate(verticalsHeaderSize + newDayCount * 4);
+        newBuffer.put(formatVersion).putInt(newFirstDayID).putInt(newDayCount);
+        if (verticals != null) {
+            System.arraycopy(verticals, verticalsHeaderSize,
+                    newBuffer.array(), verticalsHeaderSize + (firstDayID - newFirstDayID) * 4,
+                    dayCount * 4);
+        }
+
+        int offset = verticalsHeaderSize + (dayID - newFirstDayID) * 4;
+        newBuffer.putInt(offset, newBuffer.getInt(offset) + vertical);
+
+        return newBuffer.array();
+    }
+
+    // Total vertical on the day, 0 if the day was not skied.
+    public static int getVertical(@NonNull final byte[] verticals, int dayID) {
+        ByteBuffer buffer = readVerticalsHeader(verticals);
+        int firstDayID = buffer.getInt(1);
+        int dayCount = buffer.getInt(5);
+
+        if (dayID < firstDayID || dayID >= firstDayID + dayCount) {
+            return 0;
+        }
+
+        return buffer.getInt(verticalsHeaderSize + (dayID - firstDayID) * 4);
+    }
+
+    // Sum over every day.
+    public static int getTotalVertical(@NonNull final byte[] verticals) {
+        ByteBuffer buffer = readVerticalsHeader(verticals);
+        int dayCount = buffer.getInt(5);
+
+        int totalVertical = 0;
+        for (int i = 0; i < dayCount; i++) {
+            totalVertical += buffer.getInt(verticalsHeaderSize + i * 4);
+        }
+
+        return totalVertical;
+    }
+
+    // Add the verticals of every skied day into dailyVerticals, keyed by the day as a string like the DDB map.
+    public static void addDailyVerticals(@NonNull final byte[] verticals, @NonNull final Map<String, Integer> dailyVerticals) {
+        ByteBuffer buffer = readVerticalsHeader(verticals);
+        int firstDayID = buffer.getInt(1);
+        int dayCount = buffer.getInt(5);
+
+        for (int i = 0; i < dayCount; i++) {
+            int vertical = buffer.getInt(verticalsHeaderSize + i * 4);
+            if (vertical != 0) {
+                dailyVerticals.merge(Integer.toString(firstDayID + i), vertical, Integer::sum);
+            }
+        }
+    }
+
+    // Append one ride. rides may be null for a new record.
+    public static byte[] appendRide(byte[] rides, int dayID, int time, int liftID) {
+        int rideCount = 0;
+        int lastDayID = 0;
+        int lastTime = 0;
+        int length = ridesHeaderSize;
+        if (rides != null) {
+            ByteBuffer buffer = readRidesHeader(rides);
+            rideCount = buffer.getInt(1);
+            lastDayID = buffer.getInt(5);
+            lastTime = buffer.getInt(9);
+            length = rides.length;
+        }
+
+        byte[] newRides = new byte[length + maxEncodedRideSize];
+        if (rides != null) {
+            System.arraycopy(rides, ridesHeaderSize, newRides, ridesHeaderSize, length - ridesHeaderSize);
+        }
+        ByteBuffer.wrap(newRides).put(formatVersion).putInt(rideCount + 1).putInt(dayID).putInt(time);
+
+        int end = writeVarint(newRides, length, zigzag(dayID - lastDayID));
+        end = writeVarint(newRides, end, zigzag(time - lastTime));
+        end = writeVarint(newRides, end, liftID);
+
+        byte[] trimmed = new byte[end];
+        System.arraycopy(newRides, 0, trimmed, 0, end);
+        return trimmed;
+    }
+
+    public static int getRideCount(@NonNull final byte[] rides) {
+        return readRidesHeader(rides).getInt(1);
+    }
+
+    // Decode the rides in arrival order.
+    public static void forEachRide(@NonNull final byte[] rides, @NonNull final RideConsumer consumer) {
+        int rideCount = readRidesHeader(rides).getInt(1);
+        int[] posHolder = new int[] {ridesHeaderSize};
+        int dayID = 0;
+        int time = 0;
+
+        for (int i = 0; i < rideCount; i++) {
+            dayID += unzigzag(readVarint(rides, posHolder));
+            time += unzigzag(readVarint(rides, posHolder));
+            consumer.accept(dayID, time, readVarint(rides, posHolder));
+        }
+    }
+
+    private static ByteBuffer readVerticalsHeader(byte[] verticals) {
+        if (verticals.length < verticalsHeaderSize || verticals[0] != formatVersion) {
+            throw new IllegalArgumentException("Unsupported compact verticals format.");
+        }
+
+        return ByteBuffer.wrap(verticals);
+    }
+
+    private static ByteBuffer readRidesHeader(byte[] rides) {
+        if (rides.length < ridesHeaderSize || rides[0] != formatVersion) {
+            throw new IllegalArgumentException("Unsupported compact rides format.");
+        }
+
+        return ByteBuffer.wrap(rides);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Returns the position after the varint.
+    private static int writeVarint(byte[] bytes, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte) value;
+
+        return pos;
+    }
+
+    private static int readVarint(byte[] bytes, int[] posHolder) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = bytes[posHolder[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint in compact rides.");
+    }
+}
@@ -0,0 +1,143 @@
+package utility;
+
+import lombok.NonNull;
+
+import java.util.function.LongFunction;
+
+// Concurrent hash map keyed by primitive longs, so hot lookups don't box keys.
+// The table is split into independently locked stripes, each an open-addressing table with linear probing.
+// Entries are never removed, which keeps probing simple; it backs stores whose keys only accumulate.
+public class ConcurrentLongObjectMap<V> {
+    private final static int stripeCount = 64;
+    private final static float maxLoadFactor = 0.6f;
+
+    private final Stripe<V>[] stripes;
+
+    public ConcurrentLongObjectMap(int expectedSize) {
+        @SuppressWarnings("unchecked")
+        Stripe<V>[] stripes = (Stripe<V>[]) new Stripe<?>[stripeCount];
+        this.stripes = stripes;
+
+        int initialCapacityPerStripe = tableSizeFor((int) (expectedSize / stripeCount / maxLoadFactor) + 1);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe<>(initialCapacityPerStripe);
+        }
+    }
+
+    public V get(long key) {
+        long hash = mix(key);
+        Stripe<V> stripe = this.stripes[(int) (hash >>> 58)];
+
+        synchronized (stripe) {
+            return stripe.get(key, hash);
+        }
+    }
+
+    public V computeIfAbsent(long key, @NonNull final LongFunction<V> mappingFunction) {
+        long hash = mix(key);
+        Stripe<V> stripe = this.stripes[(int) (hash >>> 58)];
+
+        synchronized (stripe) {
+            V value = stripe.get(key, hash);
+            if (value == null) {
+                value = mappingFunction.apply(key);
+                stripe.put(key, hash, value);
+            }
+            return value;
+        }
+    }
+
+    public V put(long key, @NonNull final V value) {
+        long hash = mix(key);
+        Stripe<V> stripe = this.stripes[(int) (hash >>> 58)];
+
+        synchronized (stripe) {
+            return stripe.put(key, hash, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // Spread sequential ids (skier ids) over stripes and slots.
+    private static long mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = 16;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static class Stripe<V> {
+        private long[] keys;
+        private Object[] values;
+        private int size;
+
+        Stripe(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key, long hash) {
+            int mask = this.keys.length - 1;
+            for (int i = (int) hash & mask; this.values[i] != null; i = (i + 1) & mask) {
+                if (this.keys[i] == key) {
+                    return (V) this.values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, long hash, V value) {
+            int mask = this.keys.length - 1;
+            int i = (int) hash & mask;
+            for (; this.values[i] != null; i = (i + 1) & mask) {
+                if (this.keys[i] == key) {
+                    V oldValue = (V) this.values[i];
+                    this.values[i] = value;
+                    return oldValue;
+                }
+            }
+
+            this.keys[i] = key;
+            this.values[i] = value;
+            if (++this.size > this.keys.length * maxLoadFactor) {
+                resize();
+            }
+            return null;
+        }
+
+        private void resize() {
+            long[] oldKeys = this.keys;
+            Object[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = new Object[oldValues.length * 2];
+
+            int mask = this.keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = (int) mix(oldKeys[j]) & mask;
+                    while (this.values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    this.keys[i] = oldKeys[j];
+                    this.values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package utility;
+
+public enum DDBItemEncoding {
+    // Lift times, lift IDs and days as number sets, plus a map of day to daily total vertical.
+    NUMBER_SETS,
+    // Rides as a delta-encoded varint list and the daily verticals as a fixed per-day array, in binary attributes.
+    COMPACT
+}
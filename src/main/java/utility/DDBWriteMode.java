@@ -0,0 +1,8 @@
+package utility;
+
+public enum DDBWriteMode {
+    // Read the item, rebuild it, and write it back guarded by a LastUpdateTime condition.
+    READ_MODIFY_WRITE,
+    // Single UpdateItem with ADD on the number sets and an in-place daily counter, no prior read.
+    ATOMIC_UPDATE
+}
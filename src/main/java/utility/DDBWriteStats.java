@@ -0,0 +1,45 @@
+package utility;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one DDB write mode, used to compare throughput and retries between modes.
+public class DDBWriteStats {
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder failedWriteCount = new LongAdder();
+    private final LongAdder ddbCallCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+
+    public void recordWrite(boolean succeeded, int ddbCalls, int retries) {
+        this.writeCount.increment();
+        if (!succeeded) {
+            this.failedWriteCount.increment();
+        }
+        this.ddbCallCount.add(ddbCalls);
+        this.retryCount.add(retries);
+    }
+
+    public long getWriteCount() {
+        return this.writeCount.sum();
+    }
+
+    public long getFailedWriteCount() {
+        return this.failedWriteCount.sum();
+    }
+
+    public long getDdbCallCount() {
+        return this.ddbCallCount.sum();
+    }
+
+    public long getRetryCount() {
+        return this.retryCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("writes=%d failed=%d ddbCalls=%d retries=%d",
+                getWriteCount(),
+                getFailedWriteCount(),
+                getDdbCallCount(),
+                getRetryCount());
+    }
+}
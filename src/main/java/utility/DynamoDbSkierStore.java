@@ -0,0 +1,104 @@
+package utility;
+
+import lombok.NonNull;
+import model.MergedLiftRides;
+import model.SkierPOSTRequest;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// SkierStore backed by the IkkyoneSkierTable DDB table through AWSUtil.
+public class DynamoDbSkierStore implements SkierStore {
+    private final static Logger logger = Logger.getLogger(DynamoDbSkierStore.class);
+
+    private final ExecutorService batchWriters;
+    // Null when rides are written one by one.
+    private final SkierWriteSequencer writeSequencer;
+
+    public DynamoDbSkierStore(int batchWriterThreadCount) {
+        this(batchWriterThreadCount, 0);
+    }
+
+    // With writeSequencerStripeCount > 0, concurrent updates of the same skier are merged, see SkierWriteSequencer.
+    public DynamoDbSkierStore(int batchWriterThreadCount, int writeSequencerStripeCount) {
+        this.batchWriters = Executors.newFixedThreadPool(batchWriterThreadCount);
+        this.writeSequencer = writeSequencerStripeCount > 0
+                ? new SkierWriteSequencer(writeSequencerStripeCount, AWSUtil::writeToDDB)
+                : null;
+    }
+
+    public SkierWriteSequencer getWriteSequencer() {
+        return this.writeSequencer;
+    }
+
+    @Override
+    public boolean put(@NonNull final MergedLiftRides rides) {
+        return AWSUtil.putMergedRidesToDDB(rides);
+    }
+
+    @Override
+    public boolean update(@NonNull final SkierPOSTRequest skierRequest) {
+        return this.writeSequencer == null
+                ? AWSUtil.writeToDDB(skierRequest)
+                : this.writeSequencer.write(skierRequest);
+    }
+
+    // BatchWriteItem only takes whole-item puts, so the batch is sent as concurrent atomic updates, one per key.
+    @Override
+    public List<MergedLiftRides> batchUpdate(@NonNull final List<MergedLiftRides> rides) {
+        List<Future<Boolean>> writes = new ArrayList<>(rides.size());
+        for (MergedLiftRides ride : rides) {
+            writes.add(this.batchWriters.submit(() -> AWSUtil.writeMergedRidesToDDB(ride)));
+        }
+
+        List<MergedLiftRides> failedRides = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                if (!writes.get(i).get()) {
+                    failedRides.add(rides.get(i));
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                logger.error("Failed to wait for batch write.", e);
+                failedRides.add(rides.get(i));
+            }
+        }
+
+        return failedRides;
+    }
+
+    @Override
+    public Map<String, Integer> getDailyVerticals(@NonNull final String skierID, @NonNull final String resortID) {
+        return AWSUtil.getDailyVerticalsFromDB(skierID, resortID);
+    }
+
+    @Override
+    public Optional<Integer> getResortTotalVertical(@NonNull final String skierID, @NonNull final String resortID) {
+        return AWSUtil.getResortTotalVerticalFromDB(skierID, resortID);
+    }
+
+    // The async path always uses the atomic UpdateItem, a read-modify-write loop would need a chain of futures per retry.
+    @Override
+    public CompletableFuture<Boolean> updateAsync(@NonNull final SkierPOSTRequest skierRequest) {
+        return AWSUtil.writeMergedRidesToDDBAsync(MergedLiftRides.of(skierRequest));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Integer>> getDailyVerticalsAsync(@NonNull final String skierID,
+                                                                        @NonNull final String resortID) {
+        return AWSUtil.getDailyVerticalsFromDBAsync(skierID, resortID);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Integer>> getResortTotalVerticalAsync(@NonNull final String skierID,
+                                                                          @NonNull final String resortID) {
+        return AWSUtil.getResortTotalVerticalFromDBAsync(skierID, resortID);
+    }
+}
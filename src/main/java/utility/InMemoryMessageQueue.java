@@ -0,0 +1,53 @@
+package utility;
+
+import lombok.NonNull;
+import model.QueuedMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// In-process MessageQueue for load tests and local runs without AWS.
+// Messages are handed out once, there is no redelivery, so delete is a no-op.
+public class InMemoryMessageQueue implements MessageQueue {
+    private final BlockingQueue<QueuedMessage> messages;
+
+    public InMemoryMessageQueue(int capacity) {
+        this.messages = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void send(@NonNull final String messageBody) {
+        if (!this.messages.offer(new QueuedMessage(null, messageBody))) {
+            throw new RuntimeException("Failed to send message, in-memory queue is full: " + messageBody);
+        }
+    }
+
+    @Override
+    public List<QueuedMessage> receive(int maxMessages, int waitTimeSeconds) {
+        List<QueuedMessage> result = new ArrayList<>(maxMessages);
+
+        try {
+            QueuedMessage first = this.messages.poll(waitTimeSeconds, TimeUnit.SECONDS);
+            if (first != null) {
+                result.add(first);
+                this.messages.drainTo(result, maxMessages - 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void delete(@NonNull final List<QueuedMessage> messages) {
+    }
+
+    @Override
+    public int getApproximateDepth() {
+        return this.messages.size();
+    }
+}
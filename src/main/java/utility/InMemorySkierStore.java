@@ -0,0 +1,216 @@
+package utility;
+
+import lombok.NonNull;
+import model.MergedLiftRides;
+import model.SkierPOSTRequest;
+import org.apache.log4j.Logger;
+import server.IkkyoneServlet;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-process SkierStore for load tests and local runs without AWS.
+// Records live in a primitive-keyed concurrent map, keyed by skier id and an interned resort index packed in a long.
+// Each record keeps its lift times and lift ids as bit sets, its daily verticals as parallel int arrays and their total.
+// The bit sets are sized by the largest value set, so rides outside SkierPOSTRequest's bounds are refused.
+public class InMemorySkierStore implements SkierStore {
+    private final static Logger logger = Logger.getLogger(InMemorySkierStore.class);
+
+    private final Map<String, Integer> resortIndexes;
+    private final AtomicInteger nextResortIndex;
+    private final ConcurrentLongObjectMap<SkierRecord> records;
+
+    public InMemorySkierStore(int expectedRecordCount) {
+        this.resortIndexes = new ConcurrentHashMap<>();
+        this.nextResortIndex = new AtomicInteger();
+        this.records = new ConcurrentLongObjectMap<>(expectedRecordCount);
+    }
+
+    @Override
+    public boolean put(@NonNull final MergedLiftRides rides) {
+        if (!isInRange(rides)) {
+            return false;
+        }
+
+        SkierRecord record = new SkierRecord();
+        Map<Integer, Integer> newDailyTotalVerticals = record.apply(rides);
+
+        this.records.put(toRecordKey(rides.getSkierID(), getOrCreateResortIndex(rides.getResortID())), record);
+        IkkyoneServlet.onSkierRidesWritten(rides.getSkierID(), rides.getResortID(), newDailyTotalVerticals);
+
+        return true;
+    }
+
+    @Override
+    public boolean update(@NonNull final SkierPOSTRequest skierRequest) {
+        if (SkierPOSTRequest.getRangeError(skierRequest.getDayID(),
+                skierRequest.getSkierID(),
+                skierRequest.getTime(),
+                skierRequest.getLiftID()) != null) {
+            return false;
+        }
+
+        SkierRecord record = getOrCreateRecord(skierRequest.getSkierID(), skierRequest.getResortID());
+
+        int newDailyTotalVertical = record.apply(skierRequest.getDayID(),
+                skierRequest.getTime(),
+                skierRequest.getLiftID(),
+                skierRequest.getLiftID() * 10);
+
+        IkkyoneServlet.onSkierRidesWritten(skierRequest.getSkierID(),
+                skierRequest.getResortID(),
+                Collections.singletonMap(skierRequest.getDayID(), newDailyTotalVertical));
+
+        return true;
+    }
+
+    // Rides out of range can never be written, they are dropped instead of being handed back for a retry.
+    @Override
+    public List<MergedLiftRides> batchUpdate(@NonNull final List<MergedLiftRides> rides) {
+        for (MergedLiftRides ride : rides) {
+            if (!isInRange(ride)) {
+                logger.error("Dropped out of range rides of skier " + ride.getSkierID() + " at " + ride.getResortID());
+                continue;
+            }
+            SkierRecord record = getOrCreateRecord(ride.getSkierID(), ride.getResortID());
+            Map<Integer, Integer> newDailyTotalVerticals = record.apply(ride);
+
+            IkkyoneServlet.onSkierRidesWritten(ride.getSkierID(), ride.getResortID(), newDailyTotalVerticals);
+        }
+
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<String, Integer> getDailyVerticals(@NonNull final String skierID, @NonNull final String resortID) {
+        SkierRecord record = getRecord(skierID, resortID);
+        if (record == null) {
+            return new HashMap<>();
+        }
+
+        return record.getDailyVerticals();
+    }
+
+    @Override
+    public Optional<Integer> getResortTotalVertical(@NonNull final String skierID, @NonNull final String resortID) {
+        SkierRecord record = getRecord(skierID, resortID);
+
+        return record == null ? Optional.empty() : Optional.of(record.getTotalVertical());
+    }
+
+    public int getRecordCount() {
+        return this.records.size();
+    }
+
+    private SkierRecord getRecord(@NonNull final String skierID, @NonNull final String resortID) {
+        Integer resortIndex = this.resortIndexes.get(resortID);
+        int skierIDNum;
+        try {
+            skierIDNum = Integer.parseInt(skierID);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return resortIndex == null ? null : this.records.get(toRecordKey(skierIDNum, resortIndex));
+    }
+
+    private SkierRecord getOrCreateRecord(int skierID, @NonNull final String resortID) {
+        return this.records.computeIfAbsent(toRecordKey(skierID, getOrCreateResortIndex(resortID)), k -> new SkierRecord());
+    }
+
+    private int getOrCreateResortIndex(@NonNull final String resortID) {
+        Integer resortIndex = this.resortIndexes.get(resortID);
+        if (resortIndex != null) {
+            return resortIndex;
+        }
+
+        return this.resortIndexes.computeIfAbsent(resortID, k -> this.nextResortIndex.getAndIncrement());
+    }
+
+    private static boolean isInRange(@NonNull final MergedLiftRides rides) {
+        for (Integer liftTime : rides.getLiftTimes()) {
+            if (liftTime < 0 || liftTime > SkierPOSTRequest.maxTime) {
+                return false;
+            }
+        }
+        for (Integer liftID : rides.getLiftIDs()) {
+            if (liftID < 0 || liftID > SkierPOSTRequest.maxLiftID) {
+                return false;
+            }
+        }
+        for (Integer dayID : rides.getDailyVerticals().keySet()) {
+            if (dayID < SkierPOSTRequest.minDayID || dayID > SkierPOSTRequest.maxDayID) {
+                return false;
+            }
+        }
+
+        return rides.getSkierID() >= 0;
+    }
+
+    private static long toRecordKey(int skierID, int resortIndex) {
+        return ((long) skierID << 32) | (resortIndex & 0xFFFFFFFFL);
+    }
+
+    private static class SkierRecord {
+        private final BitSet liftTimes = new BitSet();
+        private final BitSet liftIDs = new BitSet();
+        private int[] days = new int[1];
+        private int[] dailyVerticals = new int[1];
+        private int dayCount = 0;
+        private int totalVertical = 0;
+
+        // Returns the new daily total vertical.
+        synchronized int apply(int dayID, int liftTime, int liftID, int vertical) {
+            this.liftTimes.set(liftTime);
+            this.liftIDs.set(liftID);
+
+            return addVertical(dayID, vertical);
+        }
+
+        // Returns the new daily total vertical of each day touched.
+        synchronized Map<Integer, Integer> apply(@NonNull final MergedLiftRides rides) {
+            rides.getLiftTimes().forEach(this.liftTimes::set);
+            rides.getLiftIDs().forEach(this.liftIDs::set);
+
+            Map<Integer, Integer> newDailyTotalVerticals = new HashMap<>();
+            rides.getDailyVerticals().forEach((dayID, vertical) ->
+                    newDailyTotalVerticals.put(dayID, addVertical(dayID, vertical)));
+
+            return newDailyTotalVerticals;
+        }
+
+        synchronized Map<String, Integer> getDailyVerticals() {
+            Map<String, Integer> result = new HashMap<>();
+            for (int i = 0; i < this.dayCount; i++) {
+                result.put(Integer.toString(this.days[i]), this.dailyVerticals[i]);
+            }
+
+            return result;
+        }
+
+        synchronized int getTotalVertical() {
+            return this.totalVertical;
+        }
+
+        private int addVertical(int dayID, int vertical) {
+            this.totalVertical += vertical;
+            for (int i = 0; i < this.dayCount; i++) {
+                if (this.days[i] == dayID) {
+                    this.dailyVerticals[i] += vertical;
+                    return this.dailyVerticals[i];
+                }
+            }
+
+            if (this.dayCount == this.days.length) {
+                this.days = Arrays.copyOf(this.days, this.dayCount * 2);
+                this.dailyVerticals = Arrays.copyOf(this.dailyVerticals, this.dayCount * 2);
+            }
+            this.days[this.dayCount] = dayID;
+            this.dailyVerticals[this.dayCount] = vertical;
+            this.dayCount++;
+
+            return vertical;
+        }
+    }
+}
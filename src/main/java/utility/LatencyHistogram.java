@@ -0,0 +1,170 @@
+package utility;
+
+import lombok.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Fixed-size log-linear latency histogram, in the style of HdrHistogram.
+// Values are nanoseconds. Every power of two range is split into 128 linear sub-buckets, so a reported percentile is
+// within 1% or 1 microsecond of the recorded value, whichever is larger, up to about 73 minutes. Larger values land in
+// the top bucket.
+// The counts array is allocated once, so recording and percentile queries never allocate. Not thread safe, see
+// LatencyRecorder for concurrent use.
+public class LatencyHistogram {
+    // Values below 2^unitShift ns (~1 us) share the first buckets.
+    private final static int unitShift = 10;
+    private final static int subBucketBits = 8;
+    private final static int subBucketCount = 1 << subBucketBits;
+    private final static int subBucketHalfCount = subBucketCount >> 1;
+    private final static int highestTrackableBits = 42;
+    private final static int bucketCount = highestTrackableBits - unitShift - subBucketBits + 1;
+    final static int countsLength = subBucketCount + (bucketCount - 1) * subBucketHalfCount;
+
+    private final long[] counts = new long[countsLength];
+    private long totalCount;
+    private long totalValue;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+
+    public void recordValue(long valueNS) {
+        long value = Math.max(0, valueNS);
+
+        this.counts[indexOf(value)]++;
+        this.totalCount++;
+        this.totalValue += value;
+        this.minValue = Math.min(this.minValue, value);
+        this.maxValue = Math.max(this.maxValue, value);
+    }
+
+    public void add(@NonNull final LatencyHistogram other) {
+        for (int i = 0; i < countsLength; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.totalValue += other.totalValue;
+        this.minValue = Math.min(this.minValue, other.minValue);
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+    }
+
+    // Adds counts recorded elsewhere with the same bucket layout, see MetricsRegistry.Timer.
+    void add(long[] counts, long totalValue, long minValue, long maxValue) {
+        for (int i = 0; i < countsLength; i++) {
+            this.counts[i] += counts[i];
+            this.totalCount += counts[i];
+        }
+        this.totalValue += totalValue;
+        this.minValue = Math.min(this.minValue, minValue);
+        this.maxValue = Math.max(this.maxValue, maxValue);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.totalValue = 0;
+        this.minValue = Long.MAX_VALUE;
+        this.maxValue = 0;
+    }
+
+    // Writes the non-empty buckets only, so a histogram of similar latencies takes a few hundred bytes.
+    public void writeTo(@NonNull final DataOutput out) throws IOException {
+        int usedBucketCount = 0;
+        for (long count : this.counts) {
+            if (count != 0) {
+                usedBucketCount++;
+            }
+        }
+
+        out.writeLong(this.totalCount);
+        out.writeLong(this.totalValue);
+        out.writeLong(this.minValue);
+        out.writeLong(this.maxValue);
+        out.writeInt(usedBucketCount);
+        for (int i = 0; i < countsLength; i++) {
+            if (this.counts[i] != 0) {
+                out.writeInt(i);
+                out.writeLong(this.counts[i]);
+            }
+        }
+    }
+
+    public static LatencyHistogram readFrom(@NonNull final DataInput in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.totalCount = in.readLong();
+        histogram.totalValue = in.readLong();
+        histogram.minValue = in.readLong();
+        histogram.maxValue = in.readLong();
+        int usedBucketCount = in.readInt();
+        for (int i = 0; i < usedBucketCount; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= countsLength) {
+                throw new IOException("Invalid histogram bucket " + index);
+            }
+            histogram.counts[index] = in.readLong();
+        }
+
+        return histogram;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public double getMean() {
+        return this.totalCount == 0 ? 0.0 : (double) this.totalValue / this.totalCount;
+    }
+
+    public long getMin() {
+        return this.totalCount == 0 ? 0 : this.minValue;
+    }
+
+    public long getMax() {
+        return this.maxValue;
+    }
+
+    // Smallest bucket bound that at least percentile% of the values are at or below, capped by the max value.
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * this.totalCount));
+        long runningCount = 0;
+        for (int i = 0; i < countsLength; i++) {
+            runningCount += this.counts[i];
+            if (runningCount >= targetCount) {
+                return Math.min(highestValueAt(i), this.maxValue);
+            }
+        }
+
+        return this.maxValue;
+    }
+
+    static int indexOf(long value) {
+        long units = value >>> unitShift;
+        if (units < subBucketCount) {
+            return (int) units;
+        }
+
+        int bucket = 63 - Long.numberOfLeadingZeros(units) - (subBucketBits - 1);
+        if (bucket >= bucketCount) {
+            return countsLength - 1;
+        }
+        int subBucket = (int) (units >>> bucket);
+
+        return subBucketCount + (bucket - 1) * subBucketHalfCount + (subBucket - subBucketHalfCount);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < subBucketCount) {
+            return ((long) (index + 1) << unitShift) - 1;
+        }
+
+        int bucket = (index - subBucketCount) / subBucketHalfCount + 1;
+        long subBucket = (index - subBucketCount) % subBucketHalfCount + subBucketHalfCount;
+
+        return ((subBucket + 1) << (bucket + unitShift)) - 1;
+    }
+}
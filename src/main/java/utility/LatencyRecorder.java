@@ -0,0 +1,105 @@
+package utility;
+
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Per-thread latency histograms for a fixed set of request types.
+// Each recording thread gets its own histograms on first use, so threads never contend with each other. Recording
+// takes no lock: a thread writes into its active set of histograms between two counters it alone bumps. A reader swaps
+// in the thread's spare set, waits for a record that started on the old set to finish, then folds the old set into
+// what it has accumulated for the thread. Readers merge across threads at the end of a run or at intervals while it
+// runs. Memory is three LatencyHistograms per (thread, request type), independent of request count.
+public class LatencyRecorder {
+    private final int requestTypeCount;
+    private final List<ThreadHistograms> threadHistograms;
+    private final ThreadLocal<ThreadHistograms> localHistograms;
+
+    public LatencyRecorder(int requestTypeCount) {
+        this.requestTypeCount = requestTypeCount;
+        this.threadHistograms = new CopyOnWriteArrayList<>();
+        this.localHistograms = ThreadLocal.withInitial(() -> {
+            ThreadHistograms histograms = new ThreadHistograms(this.requestTypeCount);
+            this.threadHistograms.add(histograms);
+            return histograms;
+        });
+    }
+
+    public void record(int requestType, long latencyNS) {
+        ThreadHistograms histograms = this.localHistograms.get();
+
+        // Single writer, so the counters need no atomic increment. The volatile writes order the record between them.
+        histograms.startedRecordCount++;
+        try {
+            histograms.active[requestType].recordValue(latencyNS);
+        } finally {
+            histograms.finishedRecordCount++;
+        }
+    }
+
+    // Add every thread's histogram of the request type into target.
+    public synchronized void mergeInto(int requestType, @NonNull final LatencyHistogram target) {
+        for (ThreadHistograms histograms : this.threadHistograms) {
+            histograms.drain();
+            target.add(histograms.accumulated[requestType]);
+        }
+    }
+
+    // Like mergeInto, and clears the thread histograms so that the next merge only sees values recorded after it.
+    public synchronized void mergeIntervalInto(int requestType, @NonNull final LatencyHistogram target) {
+        for (ThreadHistograms histograms : this.threadHistograms) {
+            histograms.drain();
+            target.add(histograms.accumulated[requestType]);
+            histograms.accumulated[requestType].reset();
+        }
+    }
+
+    public LatencyHistogram getMerged(int requestType) {
+        LatencyHistogram merged = new LatencyHistogram();
+        mergeInto(requestType, merged);
+
+        return merged;
+    }
+
+    // active is written by the owning thread only. spare and accumulated belong to readers, who hold the recorder's lock.
+    private static class ThreadHistograms {
+        private volatile LatencyHistogram[] active;
+        private LatencyHistogram[] spare;
+        private final LatencyHistogram[] accumulated;
+        private volatile long startedRecordCount;
+        private volatile long finishedRecordCount;
+
+        ThreadHistograms(int requestTypeCount) {
+            this.active = newHistograms(requestTypeCount);
+            this.spare = newHistograms(requestTypeCount);
+            this.accumulated = newHistograms(requestTypeCount);
+        }
+
+        // Move everything recorded so far into accumulated. A record that read the old active set bumped
+        // startedRecordCount before the swap, so it is waited for; a later one already sees the new set.
+        void drain() {
+            LatencyHistogram[] drained = this.active;
+            this.active = this.spare;
+            long startedRecordCount = this.startedRecordCount;
+            while (this.finishedRecordCount < startedRecordCount) {
+                Thread.yield();
+            }
+
+            for (int i = 0; i < drained.length; i++) {
+                this.accumulated[i].add(drained[i]);
+                drained[i].reset();
+            }
+            this.spare = drained;
+        }
+
+        private static LatencyHistogram[] newHistograms(int requestTypeCount) {
+            LatencyHistogram[] histograms = new LatencyHistogram[requestTypeCount];
+            for (int i = 0; i < requestTypeCount; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+
+            return histograms;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package utility;
+
+import lombok.NonNull;
+import model.RequestType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+// Reports throughput, requests in flight, error rate and per request type p50/p99 latency for every interval of a
+// load run, on the console and as one CSV row per interval:
+//   time,elapsedSeconds,rps,inFlight,errorRate,<type>Count,<type>P50(ms),<type>P99(ms),...
+// Counts are deltas of the client's running counters and latencies are drained from an interval LatencyRecorder, so
+// the request threads are never held up by the reporter. Without a recorder the latency columns are left out.
+public class LiveStatsReporter implements Closeable {
+    private final BufferedWriter writer;
+    private final long intervalMS;
+    private final LongSupplier completedCount;
+    private final LongSupplier failedCount;
+    private final IntSupplier inFlightCount;
+    private final LatencyRecorder intervalRecorder;
+    private final LatencyHistogram[] intervalHistograms;
+    private final ScheduledExecutorService reportScheduler;
+
+    private long startTimeNS;
+    private long lastReportTimeNS;
+    private long lastCompletedCount;
+    private long lastFailedCount;
+
+    // completedCount and failedCount are running totals of finished requests.
+    public LiveStatsReporter(@NonNull final String outputFilePath,
+                             long intervalMS,
+                             @NonNull final LongSupplier completedCount,
+                             @NonNull final LongSupplier failedCount,
+                             @NonNull final IntSupplier inFlightCount,
+                             final LatencyRecorder intervalRecorder) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFilePath), StandardCharsets.UTF_8));
+        this.intervalMS = intervalMS;
+        this.completedCount = completedCount;
+        this.failedCount = failedCount;
+        this.inFlightCount = inFlightCount;
+        this.intervalRecorder = intervalRecorder;
+        this.intervalHistograms = new LatencyHistogram[intervalRecorder == null ? 0 : RequestType.values().length];
+        for (int i = 0; i < this.intervalHistograms.length; i++) {
+            this.intervalHistograms[i] = new LatencyHistogram();
+        }
+        this.reportScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "live-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() throws IOException {
+        StringBuilder header = new StringBuilder("time,elapsedSeconds,rps,inFlight,errorRate");
+        for (int i = 0; i < this.intervalHistograms.length; i++) {
+            String label = RequestType.values()[i].getLabel();
+            header.append(',').append(label).append("Count,")
+                    .append(label).append("P50(ms),")
+                    .append(label).append("P99(ms)");
+        }
+        this.writer.write(header.toString());
+        this.writer.newLine();
+
+        this.startTimeNS = System.nanoTime();
+        this.lastReportTimeNS = this.startTimeNS;
+        this.lastCompletedCount = this.completedCount.getAsLong();
+        this.lastFailedCount = this.failedCount.getAsLong();
+
+        this.reportScheduler.scheduleAtFixedRate(this::reportSafely, this.intervalMS, this.intervalMS, TimeUnit.MILLISECONDS);
+    }
+
+    // Reports the last partial interval and closes the file.
+    @Override
+    public void close() throws IOException {
+        this.reportScheduler.shutdown();
+        try {
+            this.reportScheduler.awaitTermination(this.intervalMS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        report();
+        this.writer.close();
+    }
+
+    private void reportSafely() {
+        try {
+            report();
+        } catch (Exception e) {
+            // An exception would cancel the scheduled reports, so never let one escape.
+            System.out.printf("Failed to write live stats, with error: %s\n", e);
+        }
+    }
+
+    private synchronized void report() throws IOException {
+        long now = System.nanoTime();
+        double intervalSeconds = (now - this.lastReportTimeNS) / 1e9;
+        if (intervalSeconds <= 0) {
+            return;
+        }
+
+        long completedCount = this.completedCount.getAsLong();
+        long failedCount = this.failedCount.getAsLong();
+        long completedDelta = completedCount - this.lastCompletedCount;
+        long failedDelta = failedCount - this.lastFailedCount;
+        double rps = completedDelta / intervalSeconds;
+        double errorRate = completedDelta == 0 ? 0.0 : (double) failedDelta / completedDelta;
+        int inFlightCount = this.inFlightCount.getAsInt();
+        double elapsedSeconds = (now - this.startTimeNS) / 1e9;
+
+        this.lastReportTimeNS = now;
+        this.lastCompletedCount = completedCount;
+        this.lastFailedCount = failedCount;
+
+        StringBuilder row = new StringBuilder();
+        row.append(System.currentTimeMillis()).append(',')
+                .append(String.format("%.3f,%.1f,%d,%.4f", elapsedSeconds, rps, inFlightCount, errorRate));
+        StringBuilder line = new StringBuilder(String.format("[Live %7.1fs] %8.1f rps | in-flight %5d | errors %6.2f%%",
+                elapsedSeconds, rps, inFlightCount, errorRate * 100));
+
+        for (int i = 0; i < this.intervalHistograms.length; i++) {
+            LatencyHistogram histogram = this.intervalHistograms[i];
+            histogram.reset();
+            this.intervalRecorder.mergeIntervalInto(i, histogram);
+
+            double p50MS = toMillis(histogram.getValueAtPercentile(50));
+            double p99MS = toMillis(histogram.getValueAtPercentile(99));
+            row.append(String.format(",%d,%.3f,%.3f", histogram.getTotalCount(), p50MS, p99MS));
+            if (histogram.getTotalCount() > 0) {
+                line.append(String.format(" | %s p50 %.1f ms p99 %.1f ms", RequestType.values()[i].getLabel(), p50MS, p99MS));
+            }
+        }
+
+        this.writer.write(row.toString());
+        this.writer.newLine();
+        this.writer.flush();
+        System.out.println(line);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
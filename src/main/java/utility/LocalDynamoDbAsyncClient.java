@@ -0,0 +1,65 @@
+package utility;
+
+import lombok.NonNull;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Async view of a LocalDynamoDbClient. Requests are applied to the same in-memory table, and the futures complete
+// after the same latency on a small scheduler, so no thread is held while a call is "on the wire".
+public class LocalDynamoDbAsyncClient implements DynamoDbAsyncClient {
+    private final LocalDynamoDbClient table;
+    private final ScheduledExecutorService completionScheduler;
+
+    public LocalDynamoDbAsyncClient(@NonNull final LocalDynamoDbClient table, int completionThreadCount) {
+        this.table = table;
+        this.completionScheduler = Executors.newScheduledThreadPool(completionThreadCount, r -> {
+            Thread thread = new Thread(r, "local-ddb-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return completeLater(() -> this.table.applyUpdateItem(request));
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return completeLater(() -> this.table.applyGetItem(request));
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return completeLater(() -> this.table.applyPutItem(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        this.completionScheduler.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> completeLater(@NonNull final Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.completionScheduler.schedule(() -> {
+            try {
+                future.complete(call.get());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }, this.table.getLatencyMS(), TimeUnit.MILLISECONDS);
+
+        return future;
+    }
+}
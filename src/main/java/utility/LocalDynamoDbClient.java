@@ -0,0 +1,187 @@
+package utility;
+
+import lombok.NonNull;
+import server.IkkyoneServlet;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process stand-in for the skier table, for load testing the DDB code paths without AWS.
+// Every call blocks for a fixed latency to mimic the network round trip, then applies the request to an in-memory
+// copy of the DailyTotalVerticals and ResortTotalVertical attributes. It understands the requests AWSUtil builds: the
+// atomic UpdateItem with its per-day counters, GetItem with or without the resort total projection, and PutItem. The
+// lift sets are not kept and conditions are not checked, every item here carries its resort total. With a write
+// capacity set, writes past it fail with ProvisionedThroughputExceededException like a provisioned table would.
+public class LocalDynamoDbClient implements DynamoDbClient {
+    private final long latencyMS;
+    private final Map<String, LocalItem> items;
+
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+    // Null for unlimited.
+    private volatile TokenBucket writeCapacity;
+
+    public LocalDynamoDbClient(long latencyMS) {
+        this.latencyMS = latencyMS;
+        this.items = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        simulateLatency();
+        return applyUpdateItem(request);
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        simulateLatency();
+        return applyGetItem(request);
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        simulateLatency();
+        return applyPutItem(request);
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long getLatencyMS() {
+        return this.latencyMS;
+    }
+
+    public long getCallCount() {
+        return this.callCount.sum();
+    }
+
+    // Write capacity units per second, with a second's worth of burst. 0 is unlimited.
+    public void setWriteCapacity(double writeCapacityUnits) {
+        this.writeCapacity = writeCapacityUnits > 0 ? new TokenBucket(writeCapacityUnits, writeCapacityUnits) : null;
+    }
+
+    public long getThrottledCount() {
+        return this.throttledCount.sum();
+    }
+
+    UpdateItemResponse applyUpdateItem(@NonNull final UpdateItemRequest request) {
+        this.callCount.increment();
+        consumeWriteCapacity();
+        LocalItem item = this.items.computeIfAbsent(toKey(request.key()), key -> new LocalItem());
+
+        // Day names are aliased as #day<N>, their increments as :vertical<N>. The resort total is added to by the atomic
+        // update, other updates leave it as it is.
+        Map<String, AttributeValue> updatedDailyVerticals = new HashMap<>();
+        AttributeValue totalVertical = request.updateExpression().startsWith("ADD")
+                ? request.expressionAttributeValues().get(":totalVertical")
+                : null;
+        int newTotalVertical;
+        synchronized (item) {
+            request.expressionAttributeNames().forEach((alias, day) -> {
+                AttributeValue vertical = alias.startsWith("#day")
+                        ? request.expressionAttributeValues().get(":vertical" + day)
+                        : null;
+                if (vertical != null) {
+                    int newVertical = item.dailyVerticals.merge(day, Integer.parseInt(vertical.n()), Integer::sum);
+                    updatedDailyVerticals.put(day, AttributeValue.builder().n(Integer.toString(newVertical)).build());
+                }
+            });
+            if (totalVertical != null) {
+                item.totalVertical += Integer.parseInt(totalVertical.n());
+            }
+            newTotalVertical = item.totalVertical;
+        }
+
+        Map<String, AttributeValue> attributes = new HashMap<>();
+        attributes.put(IkkyoneServlet.itemAttrDailyTotalVerticals, AttributeValue.builder().m(updatedDailyVerticals).build());
+        attributes.put(IkkyoneServlet.itemAttrResortTotalVertical,
+                AttributeValue.builder().n(Integer.toString(newTotalVertical)).build());
+
+        return UpdateItemResponse.builder()
+                .attributes(attributes)
+                .build();
+    }
+
+    GetItemResponse applyGetItem(@NonNull final GetItemRequest request) {
+        this.callCount.increment();
+        LocalItem item = this.items.get(toKey(request.key()));
+        if (item == null) {
+            return GetItemResponse.builder().build();
+        }
+
+        // A projection only ever asks for the resort total here.
+        Map<String, AttributeValue> result = new HashMap<>();
+        boolean isProjected = request.projectionExpression() != null;
+        synchronized (item) {
+            if (!isProjected) {
+                Map<String, AttributeValue> dailyVerticalsAttr = new HashMap<>();
+                item.dailyVerticals.forEach((day, vertical) ->
+                        dailyVerticalsAttr.put(day, AttributeValue.builder().n(Integer.toString(vertical)).build()));
+                result.putAll(request.key());
+                result.put(IkkyoneServlet.itemAttrDailyTotalVerticals, AttributeValue.builder().m(dailyVerticalsAttr).build());
+            }
+            result.put(IkkyoneServlet.itemAttrResortTotalVertical,
+                    AttributeValue.builder().n(Integer.toString(item.totalVertical)).build());
+        }
+
+        return GetItemResponse.builder()
+                .item(result)
+                .build();
+    }
+
+    PutItemResponse applyPutItem(@NonNull final PutItemRequest request) {
+        this.callCount.increment();
+        consumeWriteCapacity();
+        LocalItem item = new LocalItem();
+        AttributeValue dailyVerticalsAttr = request.item().get(IkkyoneServlet.itemAttrDailyTotalVerticals);
+        if (dailyVerticalsAttr != null && dailyVerticalsAttr.m() != null) {
+            dailyVerticalsAttr.m().forEach((day, vertical) -> item.dailyVerticals.put(day, Integer.parseInt(vertical.n())));
+        }
+        AttributeValue totalVerticalAttr = request.item().get(IkkyoneServlet.itemAttrResortTotalVertical);
+        if (totalVerticalAttr != null) {
+            item.totalVertical = Integer.parseInt(totalVerticalAttr.n());
+        }
+        this.items.put(toKey(request.item()), item);
+
+        return PutItemResponse.builder().build();
+    }
+
+    private void consumeWriteCapacity() {
+        TokenBucket writeCapacity = this.writeCapacity;
+        if (writeCapacity != null && writeCapacity.tryAcquire(1) > 0) {
+            this.throttledCount.increment();
+            throw ProvisionedThroughputExceededException.builder()
+                    .message("The level of configured provisioned throughput for the table was exceeded.")
+                    .build();
+        }
+    }
+
+    private void simulateLatency() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(this.latencyMS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String toKey(@NonNull final Map<String, AttributeValue> item) {
+        return item.get(IkkyoneServlet.itemPrimaryHashKey).s() + "|" + item.get(IkkyoneServlet.itemPrimarySortKey).s();
+    }
+
+    // Guarded by its own monitor.
+    private static class LocalItem {
+        private final Map<String, Integer> dailyVerticals = new HashMap<>();
+        private int totalVertical;
+    }
+}
@@ -0,0 +1,177 @@
+package utility;
+
+import lombok.NonNull;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process stand-in for SQS, for running the queue consumer without AWS.
+// Supports the calls the consumer relies on: long-polling batched receives, visibility timeout, batched deletes and
+// the approximate queue depth attribute. API calls are counted so that polling behaviour can be compared.
+public class LocalSqsClient implements SqsClient {
+    private final static int maxBatchSize = 10;
+
+    private final long visibilityTimeoutMS;
+    private final BlockingQueue<Message> visibleMessages;
+    private final Map<String, InFlightMessage> inFlightMessages;
+    private final AtomicLong idGenerator;
+
+    private final LongAdder receiveCallCount = new LongAdder();
+    private final LongAdder emptyReceiveCount = new LongAdder();
+    private final LongAdder deleteCallCount = new LongAdder();
+
+    public LocalSqsClient(long visibilityTimeoutMS) {
+        this.visibilityTimeoutMS = visibilityTimeoutMS;
+        this.visibleMessages = new LinkedBlockingQueue<>();
+        this.inFlightMessages = new ConcurrentHashMap<>();
+        this.idGenerator = new AtomicLong();
+    }
+
+    @Override
+    public GetQueueUrlResponse getQueueUrl(GetQueueUrlRequest request) {
+        return GetQueueUrlResponse.builder()
+                .queueUrl("local://" + request.queueName())
+                .build();
+    }
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        String messageId = Long.toString(this.idGenerator.incrementAndGet());
+        this.visibleMessages.offer(Message.builder()
+                .messageId(messageId)
+                .body(request.messageBody())
+                .build());
+
+        return SendMessageResponse.builder()
+                .messageId(messageId)
+                .build();
+    }
+
+    @Override
+    public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+        this.receiveCallCount.increment();
+        restoreExpiredMessages();
+
+        int maxMessages = request.maxNumberOfMessages() == null ? 1 : Math.min(request.maxNumberOfMessages(), maxBatchSize);
+        long waitTimeMS = request.waitTimeSeconds() == null ? 0 : TimeUnit.SECONDS.toMillis(request.waitTimeSeconds());
+
+        List<Message> messages = new ArrayList<>(maxMessages);
+        try {
+            // Block for the first message up to the wait time, like SQS long polling does.
+            Message first = this.visibleMessages.poll(waitTimeMS, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                messages.add(first);
+                this.visibleMessages.drainTo(messages, maxMessages - 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (messages.isEmpty()) {
+            this.emptyReceiveCount.increment();
+        }
+
+        List<Message> received = new ArrayList<>(messages.size());
+        long visibleAgainTime = System.currentTimeMillis() + this.visibilityTimeoutMS;
+        for (Message message : messages) {
+            String receiptHandle = message.messageId() + "-" + this.idGenerator.incrementAndGet();
+            this.inFlightMessages.put(receiptHandle, new InFlightMessage(message, visibleAgainTime));
+            received.add(message.toBuilder().receiptHandle(receiptHandle).build());
+        }
+
+        return ReceiveMessageResponse.builder()
+                .messages(received)
+                .build();
+    }
+
+    @Override
+    public DeleteMessageResponse deleteMessage(DeleteMessageRequest request) {
+        this.deleteCallCount.increment();
+        this.inFlightMessages.remove(request.receiptHandle());
+
+        return DeleteMessageResponse.builder().build();
+    }
+
+    @Override
+    public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+        this.deleteCallCount.increment();
+
+        List<DeleteMessageBatchResultEntry> successful = new ArrayList<>();
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (DeleteMessageBatchRequestEntry entry : request.entries()) {
+            if (this.inFlightMessages.remove(entry.receiptHandle()) != null) {
+                successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+            } else {
+                failed.add(BatchResultErrorEntry.builder()
+                        .id(entry.id())
+                        .code("ReceiptHandleIsInvalid")
+                        .senderFault(true)
+                        .build());
+            }
+        }
+
+        return DeleteMessageBatchResponse.builder()
+                .successful(successful)
+                .failed(failed)
+                .build();
+    }
+
+    @Override
+    public GetQueueAttributesResponse getQueueAttributes(GetQueueAttributesRequest request) {
+        restoreExpiredMessages();
+
+        Map<QueueAttributeName, String> attributes = new HashMap<>();
+        attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, Integer.toString(this.visibleMessages.size()));
+        attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, Integer.toString(this.inFlightMessages.size()));
+
+        return GetQueueAttributesResponse.builder()
+                .attributes(attributes)
+                .build();
+    }
+
+    public long getReceiveCallCount() {
+        return this.receiveCallCount.sum();
+    }
+
+    public long getEmptyReceiveCount() {
+        return this.emptyReceiveCount.sum();
+    }
+
+    public long getDeleteCallCount() {
+        return this.deleteCallCount.sum();
+    }
+
+    @Override
+    public String serviceName() {
+        return "sqs";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Messages that were received but not deleted in time become visible again.
+    private void restoreExpiredMessages() {
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, InFlightMessage> entry : this.inFlightMessages.entrySet()) {
+            if (entry.getValue().visibleAgainTime <= now && this.inFlightMessages.remove(entry.getKey()) != null) {
+                this.visibleMessages.offer(entry.getValue().message);
+            }
+        }
+    }
+
+    private static class InFlightMessage {
+        private final Message message;
+        private final long visibleAgainTime;
+
+        InFlightMessage(@NonNull final Message message, long visibleAgainTime) {
+            this.message = message;
+            this.visibleAgainTime = visibleAgainTime;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package utility;
+
+import model.QueuedMessage;
+
+import java.util.List;
+
+// Queue for deferring lift ride processing to IkkyoneQueueProcessor.
+public interface MessageQueue {
+    void send(String messageBody);
+
+    // Waits up to waitTimeSeconds for at least one message.
+    List<QueuedMessage> receive(int maxMessages, int waitTimeSeconds);
+
+    // Acknowledge processed messages so they are not delivered again.
+    void delete(List<QueuedMessage> messages);
+
+    int getApproximateDepth();
+}
@@ -0,0 +1,241 @@
+package utility;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Named counters, gauges and latency timers for the server, readable as plain text and over JMX.
+// Call sites look their metrics up once and keep them in static fields, so the hot path never touches the maps:
+// a counter is a LongAdder, a timer records into one of a fixed number of histogram stripes picked by thread ID with
+// atomic adds, so recording takes no lock and threads sharing a stripe only share its cache lines. Stripes bound the
+// memory however many container threads record. Values are cumulative since the process started.
+public class MetricsRegistry {
+    private final static Logger logger = Logger.getLogger(MetricsRegistry.class);
+
+    // Twice the cores rounded up to a power of two, at most 16.
+    private final static int timerStripeCount = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1));
+
+    // The server's metrics, shared by the servlet, the stores and AWSUtil.
+    public final static MetricsRegistry serverMetrics = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public Counter counter(@NonNull final String name) {
+        return this.counters.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public Timer timer(@NonNull final String name) {
+        return this.timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    // Read whenever the metrics are, the supplier must be cheap and thread safe. A later gauge of the same name wins.
+    public void gauge(@NonNull final String name, @NonNull final LongSupplier supplier) {
+        this.gauges.put(name, supplier);
+    }
+
+    // Every value by name, sorted. A timer contributes <name>.count, .meanMS, .p50MS, .p99MS and .maxMS.
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+
+        this.counters.forEach((name, counter) -> values.put(name, counter.get()));
+        this.gauges.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+        this.timers.forEach((name, timer) -> {
+            LatencyHistogram histogram = timer.getMerged();
+            values.put(name + ".count", histogram.getTotalCount());
+            values.put(name + ".meanMS", toMillis(histogram.getMean()));
+            values.put(name + ".p50MS", toMillis(histogram.getValueAtPercentile(50)));
+            values.put(name + ".p99MS", toMillis(histogram.getValueAtPercentile(99)));
+            values.put(name + ".maxMS", toMillis(histogram.getMax()));
+        });
+
+        return values;
+    }
+
+    // One "name value" line per value.
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        snapshot().forEach((name, value) -> {
+            builder.append(name).append(' ');
+            if (value instanceof Double) {
+                builder.append(String.format("%.3f", value.doubleValue()));
+            } else {
+                builder.append(value);
+            }
+            builder.append('\n');
+        });
+
+        return builder.toString();
+    }
+
+    // Exposes every value as a read-only attribute of the MBean, replacing an earlier registration of the same name,
+    // e.g. from a previous deployment of the servlet.
+    public void registerMBean(@NonNull final String objectName) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(new MetricsMBean(), name);
+        } catch (JMException e) {
+            logger.error("Failed to register metrics MBean " + objectName, e);
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            this.value.increment();
+        }
+
+        public void decrement() {
+            this.value.decrement();
+        }
+
+        public void add(long delta) {
+            this.value.add(delta);
+        }
+
+        public long get() {
+            return this.value.sum();
+        }
+    }
+
+    public static class Timer {
+        private final TimerStripe[] stripes = new TimerStripe[timerStripeCount];
+
+        private Timer() {
+            for (int i = 0; i < timerStripeCount; i++) {
+                this.stripes[i] = new TimerStripe();
+            }
+        }
+
+        public void record(long latencyNS) {
+            this.stripes[(int) Thread.currentThread().getId() & (timerStripeCount - 1)].record(latencyNS);
+        }
+
+        // startTimeNS is a System.nanoTime() reading.
+        public void recordSince(long startTimeNS) {
+            record(System.nanoTime() - startTimeNS);
+        }
+
+        // Values recorded while merging may be missing from some of the summary values, the next merge has them.
+        public LatencyHistogram getMerged() {
+            LatencyHistogram merged = new LatencyHistogram();
+            long[] counts = new long[LatencyHistogram.countsLength];
+            for (TimerStripe stripe : this.stripes) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = stripe.counts.get(i);
+                }
+                merged.add(counts, stripe.totalValue.get(), stripe.minValue.get(), stripe.maxValue.get());
+            }
+
+            return merged;
+        }
+    }
+
+    // LatencyHistogram's buckets as atomics. The total count is the sum of the buckets, so a value costs two atomic
+    // adds, and a min or max update only when it is a new min or max.
+    private static class TimerStripe {
+        private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.countsLength);
+        private final AtomicLong totalValue = new AtomicLong();
+        private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxValue = new AtomicLong();
+
+        void record(long latencyNS) {
+            long value = Math.max(0, latencyNS);
+
+            this.counts.getAndIncrement(LatencyHistogram.indexOf(value));
+            this.totalValue.addAndGet(value);
+            long minValue;
+            while (value < (minValue = this.minValue.get()) && !this.minValue.compareAndSet(minValue, value)) {
+                // Lost to a concurrent update, check again.
+            }
+            long maxValue;
+            while (value > (maxValue = this.maxValue.get()) && !this.maxValue.compareAndSet(maxValue, value)) {
+                // Lost to a concurrent update, check again.
+            }
+        }
+    }
+
+    // Attributes are whatever the registry holds when they are read, so metrics created later show up too.
+    private class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = snapshot();
+            AttributeList attributeList = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    attributeList.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+
+            return attributeList;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Number> values = snapshot();
+            MBeanAttributeInfo[] attributeInfos = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> value : values.entrySet()) {
+                attributeInfos[i++] = new MBeanAttributeInfo(value.getKey(),
+                        value.getValue().getClass().getName(),
+                        value.getKey(),
+                        true,
+                        false,
+                        false);
+            }
+
+            return new MBeanInfo(MetricsRegistry.class.getName(),
+                    "Ikkyone server metrics",
+                    attributeInfos,
+                    null,
+                    null,
+                    null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+            throw new MBeanException(new UnsupportedOperationException(actionName));
+        }
+    }
+}
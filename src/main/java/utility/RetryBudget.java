@@ -0,0 +1,69 @@
+package utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounds retries to a fraction of the requests across every caller that shares it, so retrying cannot multiply the
+// load on a backend that is already throttling. Each request deposits retryRatio of a retry and each retry withdraws a
+// whole one; a small per-second allowance keeps retries possible at low traffic. Saved retries are capped, a quiet
+// period cannot bank a burst of them.
+public class RetryBudget {
+    // The balance is kept in thousandths of a retry.
+    private final static long unit = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+    // Null without a per-second allowance.
+    private final TokenBucket minRetries;
+
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    public RetryBudget(double retryRatio, int minRetriesPerSecond, int maxSavedRetries) {
+        this.depositPerRequest = (long) (retryRatio * unit);
+        this.maxBalance = maxSavedRetries * unit;
+        this.balance = new AtomicLong(this.maxBalance);
+        this.minRetries = minRetriesPerSecond > 0 ? new TokenBucket(minRetriesPerSecond, minRetriesPerSecond) : null;
+    }
+
+    // Called once per request, not per attempt.
+    public void onRequest() {
+        if (this.balance.get() < this.maxBalance) {
+            this.balance.getAndAccumulate(this.depositPerRequest, (balance, deposit) -> Math.min(this.maxBalance, balance + deposit));
+        }
+    }
+
+    // Returns whether the caller may retry, taking one retry from the budget if so.
+    public boolean tryRetry() {
+        long balance;
+        do {
+            balance = this.balance.get();
+            if (balance < unit) {
+                if (this.minRetries != null && this.minRetries.tryAcquire(1) == 0) {
+                    this.retryCount.increment();
+                    return true;
+                }
+                this.exhaustedCount.increment();
+                return false;
+            }
+        } while (!this.balance.compareAndSet(balance, balance - unit));
+
+        this.retryCount.increment();
+        return true;
+    }
+
+    // Whole retries available right now, the per-second allowance not included.
+    public long getBalance() {
+        return this.balance.get() / unit;
+    }
+
+    public long getRetryCount() {
+        return this.retryCount.sum();
+    }
+
+    // Retries that were refused.
+    public long getExhaustedCount() {
+        return this.exhaustedCount.sum();
+    }
+}
@@ -14,6 +14,8 @@ public class SkierCmdLineHelper {
     public static int defaultSkiLiftCount = 40;
     public static int defaultSkiDay = 1;
     public static final String defaultResortName = "SilverMt";
+    public static final String defaultStatLogFormat = "csv";
+    public static long defaultStatLogMaxFileMB = 256;
 
     public static class CommandLineArgs {
         @Option(name = "-serverAddr", usage = "server ip or dns", aliases = "--serverAddr")
@@ -39,6 +41,81 @@ public class SkierCmdLineHelper {
 
         @Option(name = "-resortID", usage = "name of resort", aliases = "--resortID")
         public String resortName = defaultResortName;
+
+        @Option(name = "-statLogFormat", usage = "request stat log format, csv or binary", aliases = "--statLogFormat")
+        public String statLogFormat = defaultStatLogFormat;
+
+        @Option(name = "-statLogMaxFileMB", usage = "size at which the request stat log rolls to a new file", aliases = "--statLogMaxFileMB")
+        public long statLogMaxFileMB = defaultStatLogMaxFileMB;
+
+        @Option(name = "-openLoopRPS", usage = "send at this rate regardless of response times instead of the phases, 0 is off", aliases = "--openLoopRPS")
+        public double openLoopRPS = 0;
+
+        @Option(name = "-openLoopStartRPS", usage = "rate at the start of the open-loop ramp, defaults to openLoopRPS", aliases = "--openLoopStartRPS")
+        public double openLoopStartRPS = -1;
+
+        @Option(name = "-openLoopRampSeconds", usage = "seconds to ramp from openLoopStartRPS to openLoopRPS", aliases = "--openLoopRampSeconds")
+        public long openLoopRampSeconds = 0;
+
+        @Option(name = "-openLoopDurationSeconds", usage = "seconds to hold openLoopRPS after the ramp", aliases = "--openLoopDurationSeconds")
+        public long openLoopDurationSeconds = 60;
+
+        @Option(name = "-openLoopGetPercent", usage = "percentage of open-loop requests sent as GETs", aliases = "--openLoopGetPercent")
+        public int openLoopGetPercent = 0;
+
+        @Option(name = "-skierDistribution", usage = "how skiers are drawn for rides, uniform or zipf", aliases = "--skierDistribution")
+        public String skierDistribution = "uniform";
+
+        @Option(name = "-zipfExponent", usage = "skew of the zipf skier distribution", aliases = "--zipfExponent")
+        public double zipfExponent = 0.99;
+
+        @Option(name = "-liftBias", usage = "zipf skew towards the first lifts, 0 is uniform", aliases = "--liftBias")
+        public double liftBias = 0;
+
+        @Option(name = "-arrivalCurve", usage = "spread of ride times over the day, flat or peaked", aliases = "--arrivalCurve")
+        public String arrivalCurve = "flat";
+
+        @Option(name = "-resortCount", usage = "number of resorts rides are spread over", aliases = "--resortCount")
+        public int resortCount = 1;
+
+        @Option(name = "-dayCount", usage = "number of days rides are spread over, from skiDay on", aliases = "--dayCount")
+        public int dayCount = 1;
+
+        @Option(name = "-workloadSeed", usage = "seed of the generated workload, 0 is random", aliases = "--workloadSeed")
+        public long workloadSeed = 0;
+
+        @Option(name = "-replayPath", usage = "replay this traffic capture instead of generating requests", aliases = "--replayPath")
+        public String replayPath = null;
+
+        @Option(name = "-replaySpeed", usage = "replay speed relative to the capture, 0 sends as fast as possible", aliases = "--replaySpeed")
+        public double replaySpeed = 1.0;
+
+        @Option(name = "-replayConcurrency", usage = "most replayed requests in flight, defaults to maxThreadCount", aliases = "--replayConcurrency")
+        public int replayConcurrency = 0;
+
+        @Option(name = "-liveReportIntervalMS", usage = "interval of the live throughput and latency report, 0 is off", aliases = "--liveReportIntervalMS")
+        public long liveReportIntervalMS = 1000;
+
+        @Option(name = "-workers", usage = "worker processes the coordinator splits the load across", aliases = "--workers")
+        public int workerCount = 2;
+
+        @Option(name = "-coordinatorPort", usage = "local port the coordinator listens on for workers", aliases = "--coordinatorPort")
+        public int coordinatorPort = 7070;
+
+        @Option(name = "-workerTimeoutSeconds", usage = "longest a worker may run a phase plan before the coordinator gives up on it", aliases = "--workerTimeoutSeconds")
+        public long workerTimeoutSeconds = 3600;
+
+        @Option(name = "-externalWorkers", usage = "wait for workers started separately instead of starting them", aliases = "--externalWorkers")
+        public boolean hasExternalWorkers = false;
+
+        @Option(name = "-phasePlan", usage = "json phase plan file, defaults to the bundled plan", aliases = "--phasePlan")
+        public String phasePlanPath = null;
+
+        @Option(name = "-requestEngine", usage = "http client engine, blocking or nio", aliases = "--requestEngine")
+        public String requestEngine = "blocking";
+
+        @Option(name = "-ioThreads", usage = "event loop threads for the nio engine, 0 uses two per core", aliases = "--ioThreads")
+        public int ioThreadCount = 0;
     }
 
     public static CommandLineArgs parseCommandLineArgs(String[] argv) throws CmdLineException {
@@ -0,0 +1,42 @@
+package utility;
+
+import model.MergedLiftRides;
+import model.SkierPOSTRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+// Storage backend for skier lift ride records, keyed by (SkierID, ResortID).
+public interface SkierStore {
+    // Replace the whole record with exactly the given rides.
+    boolean put(MergedLiftRides rides);
+
+    // Apply one lift ride on top of the existing record, creating it if needed.
+    boolean update(SkierPOSTRequest skierRequest);
+
+    // Apply several merged rides, returns the ones that could not be written.
+    List<MergedLiftRides> batchUpdate(List<MergedLiftRides> rides);
+
+    // Daily total verticals keyed by day, empty if there is no record, null if the store could not be read.
+    Map<String, Integer> getDailyVerticals(String skierID, String resortID);
+
+    // Sum of the daily total verticals, kept up to date by the writes. Empty if there is no record, null if the store
+    // could not be read.
+    Optional<Integer> getResortTotalVertical(String skierID, String resortID);
+
+    // Non-blocking variants for the async servlet mode. Stores without a non-blocking client run the blocking call, a
+    // throw from it fails the returned future.
+    default CompletableFuture<Boolean> updateAsync(SkierPOSTRequest skierRequest) {
+        return CompletableFuture.supplyAsync(() -> update(skierRequest), Runnable::run);
+    }
+
+    default CompletableFuture<Map<String, Integer>> getDailyVerticalsAsync(String skierID, String resortID) {
+        return CompletableFuture.supplyAsync(() -> getDailyVerticals(skierID, resortID), Runnable::run);
+    }
+
+    default CompletableFuture<Optional<Integer>> getResortTotalVerticalAsync(String skierID, String resortID) {
+        return CompletableFuture.supplyAsync(() -> getResortTotalVertical(skierID, resortID), Runnable::run);
+    }
+}
@@ -0,0 +1,150 @@
+package utility;
+
+import lombok.NonNull;
+import model.SkierPOSTRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serializes writes per (SkierID, ResortID) on this node, so two request threads never race each other on the item's
+// LastUpdateTime condition. The first ride for a key is written right away. Rides that arrive while it is in flight
+// queue up in one pending batch, the first of them waits for the write to finish and then writes the whole batch as a
+// single read-modify-write, the others just wait for its result. Keys are spread over independently locked stripes, a
+// lock is only held to look up or hand over a batch, never across a write.
+public class SkierWriteSequencer {
+    private final Stripe[] stripes;
+    private final BatchWriter batchWriter;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder rideCount = new LongAdder();
+    private final LongAdder mergedRideCount = new LongAdder();
+    private final LongAdder queuedBatchCount = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+    // stripeCount is rounded up to a power of two.
+    public SkierWriteSequencer(int stripeCount, @NonNull final BatchWriter batchWriter) {
+        this.stripes = new Stripe[Math.max(1, Integer.highestOneBit(stripeCount - 1) << 1)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.batchWriter = batchWriter;
+    }
+
+    // Blocks until the batch holding the ride is written, returns whether it was.
+    public boolean write(@NonNull final SkierPOSTRequest skierRequest) {
+        String key = skierRequest.getSkierID() + "/" + skierRequest.getResortID();
+        Stripe stripe = this.stripes[spread(key.hashCode()) & (this.stripes.length - 1)];
+        this.rideCount.increment();
+
+        Batch batch;
+        Batch previousBatch;
+        boolean isMerged;
+        synchronized (stripe) {
+            Batch lastBatch = stripe.lastBatches.get(key);
+            isMerged = lastBatch != null && !lastBatch.isSealed;
+            if (isMerged) {
+                lastBatch.rides.add(skierRequest);
+                batch = lastBatch;
+                previousBatch = null;
+            } else {
+                batch = new Batch(skierRequest);
+                // Nothing in flight, write right away without taking more rides.
+                batch.isSealed = lastBatch == null;
+                stripe.lastBatches.put(key, batch);
+                previousBatch = lastBatch;
+            }
+        }
+
+        if (isMerged) {
+            this.mergedRideCount.increment();
+            return batch.result.join();
+        }
+
+        if (previousBatch != null) {
+            this.queuedBatchCount.increment();
+            previousBatch.result.join();
+        }
+
+        List<SkierPOSTRequest> rides;
+        synchronized (stripe) {
+            batch.isSealed = true;
+            rides = batch.rides;
+        }
+
+        boolean isWritten = false;
+        try {
+            this.batchCount.increment();
+            this.maxBatchSize.accumulate(rides.size());
+            isWritten = this.batchWriter.write(rides);
+        } finally {
+            synchronized (stripe) {
+                if (stripe.lastBatches.get(key) == batch) {
+                    stripe.lastBatches.remove(key);
+                }
+            }
+            batch.result.complete(isWritten);
+        }
+
+        return isWritten;
+    }
+
+    public long getBatchCount() {
+        return this.batchCount.sum();
+    }
+
+    public long getRideCount() {
+        return this.rideCount.sum();
+    }
+
+    // Rides that were written as part of another ride's batch.
+    public long getMergedRideCount() {
+        return this.mergedRideCount.sum();
+    }
+
+    // Batches that had to wait for an earlier write of the same key.
+    public long getQueuedBatchCount() {
+        return this.queuedBatchCount.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return this.maxBatchSize.get();
+    }
+
+    public String getStatsSummary() {
+        return String.format("rides=%d batches=%d merged=%d queued=%d maxBatchSize=%d",
+                getRideCount(),
+                getBatchCount(),
+                getMergedRideCount(),
+                getQueuedBatchCount(),
+                getMaxBatchSize());
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public interface BatchWriter {
+        // The rides all have the same SkierID and ResortID.
+        boolean write(List<SkierPOSTRequest> rides);
+    }
+
+    private static class Stripe {
+        // Last batch per key, sealed once its write started. Removed when the last batch is written.
+        private final Map<String, Batch> lastBatches = new HashMap<>();
+    }
+
+    private static class Batch {
+        private final List<SkierPOSTRequest> rides = new ArrayList<>(2);
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private boolean isSealed;
+
+        Batch(SkierPOSTRequest firstRide) {
+            this.rides.add(firstRide);
+        }
+    }
+}
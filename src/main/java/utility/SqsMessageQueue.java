@@ -0,0 +1,124 @@
+package utility;
+
+import lombok.NonNull;
+import model.QueuedMessage;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// MessageQueue backed by an SQS queue, or by LocalSqsClient when running without AWS.
+public class SqsMessageQueue implements MessageQueue {
+    private final static Logger logger = Logger.getLogger(SqsMessageQueue.class);
+
+    private final static int maxBatchSize = 10;
+
+    // Shared with the SQS calls in AWSUtil.
+    private final static MetricsRegistry.Timer sendLatency = MetricsRegistry.serverMetrics.timer("sqs.send");
+    private final static MetricsRegistry.Timer receiveLatency = MetricsRegistry.serverMetrics.timer("sqs.receive");
+    private final static MetricsRegistry.Timer deleteLatency = MetricsRegistry.serverMetrics.timer("sqs.delete");
+
+    private final SqsClient sqsClient;
+    private final String queueName;
+    private volatile String queueUrl;
+
+    public SqsMessageQueue(@NonNull final SqsClient sqsClient, @NonNull final String queueName) {
+        this.sqsClient = sqsClient;
+        this.queueName = queueName;
+    }
+
+    @Override
+    public void send(@NonNull final String messageBody) {
+        long startTimeNS = System.nanoTime();
+        try {
+            this.sqsClient.sendMessage(SendMessageRequest.builder()
+                    .queueUrl(getQueueUrl())
+                    .messageBody(messageBody)
+                    .build());
+        } catch (SqsException e) {
+            throw new RuntimeException(String.format("Failed to send message %s to queue %s",
+                    messageBody,
+                    this.queueName), e);
+        } finally {
+            sendLatency.recordSince(startTimeNS);
+        }
+    }
+
+    @Override
+    public List<QueuedMessage> receive(int maxMessages, int waitTimeSeconds) {
+        long startTimeNS = System.nanoTime();
+        List<Message> messages;
+        try {
+            messages = this.sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                    .queueUrl(getQueueUrl())
+                    .maxNumberOfMessages(Math.min(maxMessages, maxBatchSize))
+                    .waitTimeSeconds(waitTimeSeconds)
+                    .build())
+                    .messages();
+        } finally {
+            receiveLatency.recordSince(startTimeNS);
+        }
+
+        List<QueuedMessage> result = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            result.add(new QueuedMessage(message.receiptHandle(), message.body()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void delete(@NonNull final List<QueuedMessage> messages) {
+        for (int i = 0; i < messages.size(); i += maxBatchSize) {
+            List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(maxBatchSize);
+            for (int j = i; j < Math.min(messages.size(), i + maxBatchSize); j++) {
+                entries.add(DeleteMessageBatchRequestEntry.builder()
+                        .id(Integer.toString(j))
+                        .receiptHandle(messages.get(j).getReceiptHandle())
+                        .build());
+            }
+
+            long startTimeNS = System.nanoTime();
+            DeleteMessageBatchResponse response;
+            try {
+                response = this.sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                        .queueUrl(getQueueUrl())
+                        .entries(entries)
+                        .build());
+            } finally {
+                deleteLatency.recordSince(startTimeNS);
+            }
+
+            for (BatchResultErrorEntry failedEntry : response.failed()) {
+                logger.error(String.format("Failed to delete message from queue %s: %s %s",
+                        this.queueName,
+                        failedEntry.code(),
+                        failedEntry.message()));
+            }
+        }
+    }
+
+    @Override
+    public int getApproximateDepth() {
+        GetQueueAttributesResponse response = this.sqsClient.getQueueAttributes(GetQueueAttributesRequest.builder()
+                .queueUrl(getQueueUrl())
+                .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+                .build());
+
+        return Integer.parseInt(response.attributes().get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES));
+    }
+
+    // Resolved lazily, so that creating the queue doesn't call SQS.
+    private String getQueueUrl() {
+        if (this.queueUrl == null) {
+            this.queueUrl = this.sqsClient.getQueueUrl(GetQueueUrlRequest.builder()
+                    .queueName(this.queueName)
+                    .build())
+                    .queueUrl();
+        }
+
+        return this.queueUrl;
+    }
+}
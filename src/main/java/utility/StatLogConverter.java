@@ -0,0 +1,64 @@
+package utility;
+
+import java.io.*;
+import java.util.Arrays;
+
+// Converts binary stat log files written by StatLogWriter into the RequestResponseStat CSV schema.
+// Usage: StatLogConverter outputCsvPath inputBinaryPath...
+// Rolled files are passed in order, e.g. testRecords.bin testRecords.1.bin, and are appended to one CSV.
+public class StatLogConverter {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: StatLogConverter outputCsvPath inputBinaryPath...");
+            return;
+        }
+
+        long recordCount = convert(Arrays.copyOfRange(args, 1, args.length), args[0]);
+        System.out.printf("Converted %d records into %s\n", recordCount, args[0]);
+    }
+
+    public static long convert(String[] inputPaths, String outputPath) throws IOException {
+        long recordCount = 0;
+        StringBuilder lineBuilder = new StringBuilder(64);
+
+        try (Writer out = new BufferedWriter(new FileWriter(outputPath))) {
+            for (String inputPath : inputPaths) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(inputPath)))) {
+                    readHeader(in, inputPath);
+
+                    while (true) {
+                        long startTime;
+                        try {
+                            startTime = in.readLong();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        long latencyNS = in.readLong();
+                        short responseCode = in.readShort();
+                        byte requestType = in.readByte();
+
+                        lineBuilder.setLength(0);
+                        StatLogWriter.appendCsvLine(lineBuilder, startTime, latencyNS, responseCode, requestType);
+                        out.append(lineBuilder);
+                        recordCount++;
+                    }
+                } catch (EOFException e) {
+                    // A run that crashed mid-record leaves a partial record at the end, everything before it is kept.
+                    System.out.printf("Ignored truncated record at the end of %s\n", inputPath);
+                }
+            }
+        }
+
+        return recordCount;
+    }
+
+    private static void readHeader(DataInputStream in, String inputPath) throws IOException {
+        byte[] magic = new byte[StatLogWriter.binaryMagic.length];
+        in.readFully(magic);
+        byte version = in.readByte();
+
+        if (!Arrays.equals(magic, StatLogWriter.binaryMagic) || version != StatLogWriter.binaryVersion) {
+            throw new IOException("Not a binary stat log: " + inputPath);
+        }
+    }
+}
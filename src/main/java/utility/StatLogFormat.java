@@ -0,0 +1,8 @@
+package utility;
+
+public enum StatLogFormat {
+    // One line per request, same columns as the RequestResponseStat CSV schema.
+    CSV,
+    // Fixed size binary records, see StatLogWriter. StatLogConverter turns them into CSV.
+    BINARY
+}
@@ -0,0 +1,245 @@
+package utility;
+
+import lombok.NonNull;
+import model.RequestType;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Streams per-request stat records to disk while a load test runs.
+// Each recording thread writes into its own fixed-size ring buffer of primitive columns, and a background thread
+// drains the rings into a buffered file every flushIntervalMS. Memory stays constant however long the run is, and a
+// crash loses at most one flush interval. Files roll over once they reach maxFileBytes: records.csv, records.1.csv, ...
+// A thread that finds its ring full waits for the writer to catch up rather than dropping records.
+//
+// CSV lines follow the RequestResponseStat schema, whose columns Jackson orders alphabetically:
+//   latency,requestType,responseCode,startTime
+// Binary files start with the magic bytes "IKST" and a version byte, followed by big-endian records of
+//   startTime:int64 (epoch ms), latency:int64 (ns), responseCode:int16, requestType:int8 (RequestType ordinal)
+public class StatLogWriter implements Closeable {
+    private final static Logger logger = Logger.getLogger(StatLogWriter.class);
+
+    public final static byte[] binaryMagic = "IKST".getBytes(StandardCharsets.US_ASCII);
+    public final static byte binaryVersion = 1;
+    public final static int binaryRecordSize = 8 + 8 + 2 + 1;
+
+    private final static int ringCapacity = 1 << 13;
+    private final static int outputBufferSize = 1 << 16;
+
+    private final String basePath;
+    private final StatLogFormat format;
+    private final long maxFileBytes;
+    private final long flushIntervalMS;
+    private final List<Ring> rings;
+    private final ThreadLocal<Ring> localRing;
+    private final Thread writerThread;
+    private final StringBuilder lineBuilder;
+    private final byte[] lineBytes;
+    private volatile boolean isRunning;
+
+    private DataOutputStream out;
+    private long fileBytes;
+    private int fileIndex;
+
+    private final LongAdder writtenRecordCount = new LongAdder();
+    private final LongAdder producerWaitCount = new LongAdder();
+    private final LongAdder droppedRecordCount = new LongAdder();
+
+    public StatLogWriter(@NonNull final String basePath,
+                         @NonNull final StatLogFormat format,
+                         long maxFileBytes,
+                         long flushIntervalMS) throws IOException {
+        this.basePath = basePath;
+        this.format = format;
+        this.maxFileBytes = maxFileBytes;
+        this.flushIntervalMS = flushIntervalMS;
+        this.rings = new CopyOnWriteArrayList<>();
+        this.localRing = ThreadLocal.withInitial(() -> {
+            Ring ring = new Ring(Thread.currentThread());
+            this.rings.add(ring);
+            return ring;
+        });
+        this.lineBuilder = new StringBuilder(64);
+        // Longest line: 19 digit latency and start time, the longest label, a 5 digit code and separators.
+        this.lineBytes = new byte[128];
+
+        openNextFile();
+
+        this.isRunning = true;
+        this.writerThread = new Thread(this::drainLoop, "stat-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void record(long startTime, long latencyNS, int responseCode, @NonNull final RequestType requestType) {
+        Ring ring = this.localRing.get();
+        long head = ring.head.get();
+
+        // The ring is full, wait for the writer instead of dropping the record. Only a writer that died on an I/O
+        // error makes records get dropped.
+        if (head - ring.tail.get() >= ringCapacity) {
+            this.producerWaitCount.increment();
+            while (head - ring.tail.get() >= ringCapacity) {
+                if (!this.writerThread.isAlive()) {
+                    this.droppedRecordCount.increment();
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+
+        int slot = (int) head & (ringCapacity - 1);
+        ring.startTimes[slot] = startTime;
+        ring.latencies[slot] = latencyNS;
+        ring.responseCodes[slot] = (short) responseCode;
+        ring.requestTypes[slot] = (byte) requestType.ordinal();
+        // Publishes the slot to the writer.
+        ring.head.lazySet(head + 1);
+    }
+
+    public long getWrittenRecordCount() {
+        return this.writtenRecordCount.sum();
+    }
+
+    public long getProducerWaitCount() {
+        return this.producerWaitCount.sum();
+    }
+
+    public long getDroppedRecordCount() {
+        return this.droppedRecordCount.sum();
+    }
+
+    // Drain everything recorded so far and close the file.
+    @Override
+    public void close() throws IOException {
+        this.isRunning = false;
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        drainAll();
+        this.out.close();
+    }
+
+    private void drainLoop() {
+        while (this.isRunning) {
+            try {
+                if (drainAll() == 0) {
+                    this.out.flush();
+                    TimeUnit.MILLISECONDS.sleep(this.flushIntervalMS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                logger.error("Failed to write stat records to " + this.basePath, e);
+                this.isRunning = false;
+            }
+        }
+    }
+
+    private int drainAll() throws IOException {
+        int drained = 0;
+
+        for (Ring ring : this.rings) {
+            long tail = ring.tail.get();
+            long head = ring.head.get();
+
+            for (long i = tail; i < head; i++) {
+                int slot = (int) i & (ringCapacity - 1);
+                writeRecord(ring.startTimes[slot], ring.latencies[slot], ring.responseCodes[slot], ring.requestTypes[slot]);
+            }
+            ring.tail.lazySet(head);
+            drained += (int) (head - tail);
+
+            // Rings of finished threads are dropped once empty, so thread churn doesn't grow memory.
+            if (!ring.owner.isAlive() && ring.head.get() == head) {
+                this.rings.remove(ring);
+            }
+        }
+        this.writtenRecordCount.add(drained);
+
+        return drained;
+    }
+
+    private void writeRecord(long startTime, long latencyNS, short responseCode, byte requestType) throws IOException {
+        if (this.fileBytes >= this.maxFileBytes) {
+            this.out.close();
+            openNextFile();
+        }
+
+        if (this.format == StatLogFormat.BINARY) {
+            this.out.writeLong(startTime);
+            this.out.writeLong(latencyNS);
+            this.out.writeShort(responseCode);
+            this.out.writeByte(requestType);
+            this.fileBytes += binaryRecordSize;
+        } else {
+            this.lineBuilder.setLength(0);
+            appendCsvLine(this.lineBuilder, startTime, latencyNS, responseCode, requestType);
+            // Lines are ASCII, so chars are copied as bytes and written in one call.
+            int length = this.lineBuilder.length();
+            for (int i = 0; i < length; i++) {
+                this.lineBytes[i] = (byte) this.lineBuilder.charAt(i);
+            }
+            this.out.write(this.lineBytes, 0, length);
+            this.fileBytes += length;
+        }
+    }
+
+    // Shared with StatLogConverter so both produce the same lines. Latency is reported in ms like the original CSV.
+    static void appendCsvLine(StringBuilder builder, long startTime, long latencyNS, int responseCode, int requestType) {
+        builder.append(TimeUnit.NANOSECONDS.toMillis(latencyNS)).append(',')
+                .append(RequestType.values()[requestType].getLabel()).append(',')
+                .append(responseCode).append(',')
+                .append(startTime).append('\n');
+    }
+
+    private void openNextFile() throws IOException {
+        String path = rolledPath(this.basePath, this.fileIndex++);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), outputBufferSize));
+        this.fileBytes = 0;
+
+        if (this.format == StatLogFormat.BINARY) {
+            this.out.write(binaryMagic);
+            this.out.writeByte(binaryVersion);
+            this.fileBytes += binaryMagic.length + 1;
+        }
+    }
+
+    // records.csv, records.1.csv, records.2.csv, ...
+    public static String rolledPath(@NonNull final String basePath, int fileIndex) {
+        if (fileIndex == 0) {
+            return basePath;
+        }
+
+        int extensionStart = basePath.lastIndexOf('.');
+        if (extensionStart <= basePath.lastIndexOf(File.separatorChar)) {
+            return basePath + "." + fileIndex;
+        }
+
+        return basePath.substring(0, extensionStart) + "." + fileIndex + basePath.substring(extensionStart);
+    }
+
+    // Single producer (the owner thread), single consumer (the writer thread).
+    private static class Ring {
+        private final Thread owner;
+        private final long[] startTimes = new long[ringCapacity];
+        private final long[] latencies = new long[ringCapacity];
+        private final short[] responseCodes = new short[ringCapacity];
+        private final byte[] requestTypes = new byte[ringCapacity];
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Ring(Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rate limiter holding up to burstTokens tokens, refilled at tokensPerSecond.
+// Kept as the time at which the bucket would be full again (the generic cell rate algorithm), so taking tokens is a
+// single compare-and-set on one long, with no refill thread and no lock.
+public class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    // The bucket is full from this System.nanoTime() on.
+    private final AtomicLong fullAtNS;
+
+    public TokenBucket(double tokensPerSecond, double burstTokens) {
+        if (tokensPerSecond <= 0 || burstTokens < 1) {
+            throw new IllegalArgumentException(String.format("Invalid token bucket: %f tokens/s, burst of %f",
+                    tokensPerSecond,
+                    burstTokens));
+        }
+
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = (long) (this.nanosPerToken * burstTokens);
+        this.fullAtNS = new AtomicLong(System.nanoTime());
+    }
+
+    // Returns 0 if the tokens were taken, otherwise how many ns until they will be available, without taking any.
+    public long tryAcquire(int tokens) {
+        long costNS = tokens * this.nanosPerToken;
+
+        while (true) {
+            long nowNS = System.nanoTime();
+            long fullAtNS = this.fullAtNS.get();
+            long newFullAtNS = Math.max(fullAtNS, nowNS) + costNS;
+
+            long excessNS = newFullAtNS - nowNS - this.burstNanos;
+            if (excessNS > 0) {
+                return excessNS;
+            }
+            if (this.fullAtNS.compareAndSet(fullAtNS, newFullAtNS)) {
+                return 0;
+            }
+        }
+    }
+
+    // Gives back tokens taken for work that was not done.
+    public void release(int tokens) {
+        long costNS = tokens * this.nanosPerToken;
+        this.fullAtNS.getAndUpdate(fullAtNS -> Math.max(System.nanoTime(), fullAtNS - costNS));
+    }
+}
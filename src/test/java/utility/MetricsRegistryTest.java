@@ -0,0 +1,127 @@
+package utility;
+
+import model.SkierGETRequest;
+import org.junit.Test;
+import server.SkierRouter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+    private final static int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private final static int iterations = 500_000;
+    private final static int runCount = 3;
+    // Generous, the registry's counter and timer measure well under the cost of the two clock reads around a request.
+    private final static double maxOverheadRatio = 2.0;
+
+    // Keeps the measured loops from being optimized away.
+    private static volatile long sink;
+
+    private final static String[][] requests = {
+            {"/resort/day/top10vert", "resort=SilverMt&dayID=1"},
+            {"/skiers/12345/vertical", "resort=SilverMt"},
+            {"/skiers/SilverMt/days/1/skiers/12345", null},
+            {"/skiers/54321/vertical", "resort=SilverMt"}
+    };
+
+    @Test
+    public void timerCountsEveryValueRecordedConcurrently() throws InterruptedException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Timer timer = metrics.timer("test");
+
+        runThreads(() -> {
+            for (int i = 0; i < iterations; i++) {
+                timer.record(TimeUnit.MICROSECONDS.toNanos(1 + i % 1000));
+            }
+        });
+
+        LatencyHistogram merged = timer.getMerged();
+        assertEquals((long) threadCount * iterations, merged.getTotalCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), merged.getMin());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), merged.getMax());
+        assertEquals((long) threadCount * iterations, metrics.snapshot().get("test.count").longValue());
+    }
+
+    // The request path's metrics, an in-flight counter and a route timer, against the clock reads they need anyway.
+    // Both sides run the same threads on the same cores, so the ratio holds on a busy or a single core machine.
+    @Test
+    public void requestMetricsOverheadIsSmallNextToTheClock() throws InterruptedException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Counter inFlightRequests = metrics.counter("http.inFlight");
+        MetricsRegistry.Timer[] routeLatencies = new MetricsRegistry.Timer[SkierRouter.routeCount];
+        for (int i = 0; i < SkierRouter.routeCount; i++) {
+            routeLatencies[i] = metrics.timer("http." + SkierRouter.getRouteName(i));
+        }
+
+        Runnable clockOnly = () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                String[] request = requests[i & 3];
+                long startTimeNS = System.nanoTime();
+                sum += SkierRouter.routeGET(request[0], request[1], new SkierGETRequest());
+                sum += (System.nanoTime() - startTimeNS) & 1;
+            }
+            sink = sum;
+        };
+        Runnable metered = () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                String[] request = requests[i & 3];
+                long startTimeNS = System.nanoTime();
+                inFlightRequests.increment();
+                int route = SkierRouter.routeGET(request[0], request[1], new SkierGETRequest());
+                routeLatencies[route].recordSince(startTimeNS);
+                inFlightRequests.decrement();
+                sum += route;
+            }
+            sink = sum;
+        };
+
+        // Warm up both, then keep the best run of each so that a stray pause does not decide the outcome.
+        runThreads(clockOnly);
+        runThreads(metered);
+        long clockOnlyNS = Long.MAX_VALUE;
+        long meteredNS = Long.MAX_VALUE;
+        for (int i = 0; i < runCount; i++) {
+            clockOnlyNS = Math.min(clockOnlyNS, runThreads(clockOnly));
+            meteredNS = Math.min(meteredNS, runThreads(metered));
+        }
+
+        double ratio = (double) meteredNS / clockOnlyNS;
+        System.out.printf("%d threads: clock only %.1f ns/op, with metrics %.1f ns/op, ratio %.2f\n",
+                threadCount,
+                (double) clockOnlyNS / threadCount / iterations,
+                (double) meteredNS / threadCount / iterations,
+                ratio);
+        assertTrue("Request metrics cost " + ratio + "x the clock-only run", ratio <= maxOverheadRatio);
+        assertEquals(0, inFlightRequests.get());
+    }
+
+    // Returns the wall time of task run once on each of threadCount threads started together.
+    private static long runThreads(Runnable task) throws InterruptedException {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run();
+            });
+            threads[t].start();
+        }
+
+        long startTimeNS = System.nanoTime();
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return System.nanoTime() - startTimeNS;
+    }
+}